@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2024 Mike Cowan.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+
+package io.blt.gregbot.core.plugin;
+
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Renders templates of a varying number of secret tokens, both with the secrets cached and from a new renderer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class SecretRendererBenchmark {
+
+    @Param({"1", "10", "100"})
+    int tokens;
+
+    final TestableSecretPlugin plugin = new TestableSecretPlugin();
+
+    SecretRenderer renderer;
+
+    String template;
+
+    @Setup
+    public void setup() throws SecretRenderException {
+        template = IntStream.range(0, tokens)
+                .mapToObj(i -> "x-header-" + i + ": [benchmark/" + i % 10 + "/secret-key]")
+                .collect(Collectors.joining("\n"));
+
+        renderer = new SecretRenderer(plugin);
+        renderer.render(template);
+    }
+
+    @Benchmark
+    public String renderCached() throws SecretRenderException {
+        return renderer.render(template);
+    }
+
+    @Benchmark
+    public String renderWithNewRenderer() throws SecretRenderException {
+        return new SecretRenderer(plugin).render(template);
+    }
+
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2024 Mike Cowan.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+
+package io.blt.gregbot.core.project;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the first load of a small project in a fresh JVM, which includes building the deserializers and validator.
+ * Each fork measures a single load, so run it on its own with more forks rather than iterations e.g.
+ * {@code -Djmh.args="ProjectColdStartBenchmark -f 20 -wi 0 -i 1"}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(10)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+public class ProjectColdStartBenchmark {
+
+    @Param({"handwritten", ProjectValidator.ANNOTATIONS})
+    String validation;
+
+    byte[] json;
+
+    @Setup
+    public void setup() {
+        System.setProperty(ProjectValidator.MODE_PROPERTY, validation);
+        json = ProjectLoadBenchmark.generateProject(10).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public Project loadFromJson() throws IOException {
+        return Project.loadFromJson(new ByteArrayInputStream(json));
+    }
+
+}
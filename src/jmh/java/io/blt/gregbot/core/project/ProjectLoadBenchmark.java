@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2024 Mike Cowan.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+
+package io.blt.gregbot.core.project;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Loads generated projects with a single collection of a varying number of requests, laid out in folders of 100.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ProjectLoadBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    int requests;
+
+    byte[] json;
+
+    @Setup
+    public void setup() {
+        json = generateProject(requests).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public Project loadFromJson() throws IOException {
+        return Project.loadFromJson(new ByteArrayInputStream(json));
+    }
+
+    @Benchmark
+    public Project loadFromJsonBySection() throws IOException {
+        return ProjectLoader.loadFromJson(new ByteArrayInputStream(json), new ProjectLoader.Listener() {}).project();
+    }
+
+    static String generateProject(int requests) {
+        var json = new StringBuilder("""
+                {
+                  "client": {
+                    "version": "HTTP_1_1",
+                    "redirect": "NORMAL",
+                    "connectionTimeout": 30,
+                    "requestTimeout": 60
+                  },
+                  "collections": {
+                    "Benchmark": {
+                      "requests": {
+                """);
+
+        for (var i = 0; i < requests; i++) {
+            json.append(i == 0 ? "" : ",\n")
+                    .append("\"request-").append(i).append("\": {")
+                    .append("\"headers\": { \"x-api-key\": \"{{api_key}}\" },")
+                    .append("\"verb\": \"GET\",")
+                    .append("\"path\": \"{{host}}/items/").append(i).append("\"}");
+        }
+
+        json.append("}, \"layout\": { \"requests\": [], \"folders\": {");
+
+        for (var folder = 0; folder * 100 < requests; folder++) {
+            json.append(folder == 0 ? "" : ",\n")
+                    .append("\"folder-").append(folder).append("\": { \"folders\": {}, \"requests\": [");
+            for (var i = folder * 100; i < Math.min(requests, (folder + 1) * 100); i++) {
+                json.append(i == folder * 100 ? "" : ",").append("\"request-").append(i).append("\"");
+            }
+            json.append("]}");
+        }
+
+        return json.append("}}}}}").toString();
+    }
+
+}
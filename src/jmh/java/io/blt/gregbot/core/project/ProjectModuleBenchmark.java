@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2024 Mike Cowan.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+
+package io.blt.gregbot.core.project;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Deserializes a folder tree with and without {@link ProjectModule}, showing the cost of its unmodifiable wrapping.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ProjectModuleBenchmark {
+
+    @Param({"10", "1000"})
+    int folders;
+
+    final ObjectMapper withModule = JsonMapper.builder().addModule(new ProjectModule()).build();
+
+    final ObjectMapper withoutModule = JsonMapper.builder().build();
+
+    byte[] json;
+
+    @Setup
+    public void setup() {
+        var folder = new StringBuilder("{ \"requests\": [\"root\"], \"folders\": {");
+        for (var i = 0; i < folders; i++) {
+            folder.append(i == 0 ? "" : ",")
+                    .append("\"folder-").append(i).append("\": { \"requests\": [")
+                    .append("\"request-1\", \"request-2\", \"request-3\"")
+                    .append("], \"folders\": {} }");
+        }
+        json = folder.append("}}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public Project.Collection.Folder deserializeWithProjectModule() throws IOException {
+        return withModule.readValue(json, Project.Collection.Folder.class);
+    }
+
+    @Benchmark
+    public Project.Collection.Folder deserializeWithoutProjectModule() throws IOException {
+        return withoutModule.readValue(json, Project.Collection.Folder.class);
+    }
+
+}
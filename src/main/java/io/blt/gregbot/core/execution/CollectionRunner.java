@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2024 Mike Cowan.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+
+package io.blt.gregbot.core.execution;
+
+import io.blt.gregbot.core.project.Project.Collection;
+import io.blt.gregbot.core.project.Project.Collection.Folder;
+import io.blt.gregbot.core.utils.ThreadUtils;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static java.util.Objects.isNull;
+
+/**
+ * Executes every request referenced by a {@link Folder} tree concurrently using a {@link RequestExecutor}.
+ * <p>
+ * Concurrency is bounded globally, the limit being shared by all runs made through the same instance, and per origin
+ * by the executor's {@link io.blt.gregbot.core.project.Project.Client#maxConcurrentStreams()}. A request waiting for
+ * its origin does not count towards the global limit, so a busy origin never holds up requests to the others.
+ * Results are passed to the caller as each request completes rather than once the run has finished.
+ * </p>
+ * <p>
+ * A request referenced from several folders is executed once.
+ * </p>
+ */
+public class CollectionRunner {
+
+    /**
+     * The outcome of running a single request, holding either an {@link Execution} or the error that prevented it.
+     *
+     * @param name      name of the request within the collection
+     * @param execution the execution if the request was sent, otherwise {@code null}
+     * @param error     the error if the request could not be sent, otherwise {@code null}
+     */
+    public record Result(String name, Execution execution, Exception error) {
+
+        public Optional<Execution> getExecution() {
+            return Optional.ofNullable(execution);
+        }
+
+        public boolean isSent() {
+            return isNull(error);
+        }
+    }
+
+    private final RequestExecutor executor;
+    private final Semaphore concurrency;
+
+    /**
+     * Creates a runner sending requests through {@code executor}.
+     *
+     * @param executor    the executor to send requests with, which also limits the requests in flight to each origin
+     * @param concurrency maximum number of requests in flight across all origins
+     */
+    public CollectionRunner(RequestExecutor executor, int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be positive");
+        }
+        this.executor = executor;
+        this.concurrency = new Semaphore(concurrency, true);
+    }
+
+    /**
+     * Executes all requests referenced by {@code folder} and its nested folders, blocking until all have completed.
+     * <p>
+     *     {@code consumer} is called from worker threads as each request completes, so must be thread-safe.
+     * </p>
+     *
+     * @param collection the collection containing the requests
+     * @param folder     the folder tree to execute, e.g. {@link Collection#layout()}
+     * @param variables  values for any {@code {{variable}}} tokens in the requests
+     * @param consumer   receives a {@link Result} for each request as it completes
+     * @throws InterruptedException if interrupted while waiting, in which case in-flight requests are cancelled
+     */
+    public void run(Collection collection, Folder folder, Map<String, String> variables, Consumer<Result> consumer)
+            throws InterruptedException {
+        var pool = ThreadUtils.newTaskExecutor();
+
+        try {
+            for (var name : requestNames(folder, new LinkedHashSet<>())) {
+                concurrency.acquire();
+                try {
+                    pool.execute(() -> {
+                        try {
+                            consumer.accept(execute(collection, name, variables));
+                        } finally {
+                            concurrency.release();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    concurrency.release();
+                    throw e;
+                }
+            }
+
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            // Tasks that never started still hold the permit acquired for them, which is shared with other runs
+            concurrency.release(pool.shutdownNow().size());
+            throw e;
+        }
+    }
+
+    private Result execute(Collection collection, String name, Map<String, String> variables) {
+        var request = collection.requests().get(name);
+        if (isNull(request)) {
+            return new Result(name, null, new NoSuchElementException("Cannot find request '%s'".formatted(name)));
+        }
+
+        try {
+            return new Result(name, executor.execute(request, variables, concurrency), null);
+        } catch (RequestExecutionException e) {
+            return new Result(name, null, e);
+        }
+    }
+
+    private static Set<String> requestNames(Folder folder, Set<String> names) {
+        names.addAll(folder.requests());
+        folder.folders().values().forEach(f -> requestNames(f, names));
+        return names;
+    }
+
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2024 Mike Cowan.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+
+package io.blt.gregbot.core.execution;
+
+import io.blt.gregbot.core.project.Project.Collection.Request;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * The outcome of sending a single {@link Request}, including the raw response and how long each phase took.
+ *
+ * @param request  the request that was executed
+ * @param response the response as received from the server, whose body is {@code null} unless it was
+ *                 {@link RequestExecutor.ResponseBody#BUFFER buffered}
+ * @param bodyFile the file the body was written to when sent with {@link RequestExecutor.ResponseBody#FILE},
+ *                 otherwise {@code null}
+ * @param timings  timings recorded while executing
+ */
+public record Execution(
+        Request request,
+        HttpResponse<byte[]> response,
+        Path bodyFile,
+        Timings timings) {
+
+    /**
+     * Timings for a single execution.
+     * <p>
+     * The JDK {@link java.net.http.HttpClient} does not expose DNS resolution or connection establishment separately,
+     * so {@code firstByte} includes any time spent resolving and connecting. When a pooled connection is reused this
+     * phase collapses to the server processing time, which is the saving the shared client is designed to make.
+     * </p>
+     *
+     * @param started   when the request was handed to the client
+     * @param firstByte time from sending until the response status and headers were received
+     * @param total     time from sending until the response body was fully received
+     */
+    public record Timings(
+            Instant started,
+            Duration firstByte,
+            Duration total) {
+
+        /**
+         * Returns the time spent receiving the response body, after the headers arrived.
+         *
+         * @return body download time
+         */
+        public Duration download() {
+            return total.minus(firstByte);
+        }
+    }
+
+}
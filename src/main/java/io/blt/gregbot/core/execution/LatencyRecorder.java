@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2024 Mike Cowan.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+
+package io.blt.gregbot.core.execution;
+
+import java.util.concurrent.TimeUnit;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Records request latencies corrected for coordinated omission.
+ * <p>
+ * When a runner falls behind its schedule, measuring from the moment a request was actually sent hides the time it
+ * spent waiting to be sent, under-reporting high percentiles. Each sample is therefore recorded twice:
+ * <ul>
+ *     <li>corrected - from the time the request was intended to be sent until it completed</li>
+ *     <li>uncorrected - from the time the request was actually sent until it completed (the service time)</li>
+ * </ul>
+ * When a request is sent on schedule both values are the same.
+ * </p>
+ * <p>
+ * Recording is wait-free, so any number of threads may record concurrently without contending on a lock. Histograms
+ * are in microseconds and hold samples recorded since the previous call for the same histogram.
+ * </p>
+ */
+public class LatencyRecorder {
+
+    private final Recorder corrected = new Recorder(3);
+    private final Recorder uncorrected = new Recorder(3);
+
+    /**
+     * Records a single request using {@link System#nanoTime()} timestamps.
+     *
+     * @param intended  when the request should have been sent according to the schedule
+     * @param sent      when the request was actually sent
+     * @param completed when the response was fully received
+     */
+    public void record(long intended, long sent, long completed) {
+        corrected.recordValue(toMicros(completed - Math.min(intended, sent)));
+        uncorrected.recordValue(toMicros(completed - sent));
+    }
+
+    /**
+     * Records a request that was never sent, e.g. as too many were already in flight, using {@link System#nanoTime()}
+     * timestamps. It only has a corrected latency, as there is no service time.
+     *
+     * @param intended  when the request should have been sent according to the schedule
+     * @param abandoned when the request was given up on, e.g. the end of the run
+     */
+    public void recordUnsent(long intended, long abandoned) {
+        corrected.recordValue(toMicros(abandoned - intended));
+    }
+
+    /**
+     * Returns latencies measured from the intended send time, recorded since this method was last called.
+     *
+     * @return histogram of corrected latencies in microseconds
+     */
+    public Histogram intervalCorrected() {
+        return corrected.getIntervalHistogram();
+    }
+
+    /**
+     * Returns latencies measured from the actual send time, recorded since this method was last called.
+     *
+     * @return histogram of uncorrected latencies in microseconds
+     */
+    public Histogram intervalUncorrected() {
+        return uncorrected.getIntervalHistogram();
+    }
+
+    private static long toMicros(long nanos) {
+        return Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+}
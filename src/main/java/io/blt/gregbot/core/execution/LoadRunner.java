@@ -0,0 +1,370 @@
+/*
+ * Copyright (c) 2024 Mike Cowan.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+
+package io.blt.gregbot.core.execution;
+
+import io.blt.gregbot.core.project.Project.Collection.Request;
+import io.blt.gregbot.core.services.IdentityService;
+import io.blt.gregbot.core.services.IdentityServiceException;
+import io.blt.gregbot.core.utils.ThreadUtils;
+import java.net.http.HttpRequest;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Drives sustained load against a single {@link Request} for a fixed duration, recording latency and throughput.
+ * <p>
+ * The request is rendered once before the run starts, so variables (including any authentication provided by an
+ * identity) are resolved once and then reused for every request sent.
+ * </p>
+ * <p>
+ * Two load models are supported, see {@link Profile}:
+ * <ul>
+ *     <li>{@link Profile.Model#OPEN} - requests are started at a constant arrival rate regardless of how quickly the
+ *     server responds, up to {@link Profile#maxInFlight()} at once</li>
+ *     <li>{@link Profile.Model#CLOSED} - a fixed number of workers each send a request as soon as their previous
+ *     request completes</li>
+ * </ul>
+ * </p>
+ */
+public class LoadRunner {
+
+    /**
+     * Describes the load to apply.
+     * <p>
+     * For {@link Model#OPEN}, a request due while {@code maxInFlight} requests are already in flight is not sent and
+     * is counted as {@link Report#dropped() dropped}, so a server that stops responding cannot exhaust threads.
+     * Its latency is still recorded, from when it was due until the run ended, so dropping requests does not hide how
+     * far the server fell behind.
+     * </p>
+     *
+     * @param model       the load model
+     * @param load        requests per second for {@link Model#OPEN}, otherwise the number of workers
+     * @param duration    how long to apply load for
+     * @param maxInFlight most requests in flight at once for {@link Model#OPEN}, ignored for {@link Model#CLOSED}
+     */
+    public record Profile(Model model, int load, Duration duration, int maxInFlight) {
+
+        public static final int DEFAULT_MAX_IN_FLIGHT = 1000;
+
+        public enum Model {
+            OPEN,
+            CLOSED
+        }
+
+        public Profile {
+            if (load < 1) {
+                throw new IllegalArgumentException("'load' must be positive");
+            }
+            if (duration.isNegative() || duration.isZero()) {
+                throw new IllegalArgumentException("'duration' must be positive");
+            }
+            if (maxInFlight < 1) {
+                throw new IllegalArgumentException("'maxInFlight' must be positive");
+            }
+        }
+
+        public Profile(Model model, int load, Duration duration) {
+            this(model, load, duration, DEFAULT_MAX_IN_FLIGHT);
+        }
+
+        public static Profile constantRate(int requestsPerSecond, Duration duration) {
+            return new Profile(Model.OPEN, requestsPerSecond, duration);
+        }
+
+        public static Profile constantRate(int requestsPerSecond, Duration duration, int maxInFlight) {
+            return new Profile(Model.OPEN, requestsPerSecond, duration, maxInFlight);
+        }
+
+        public static Profile workers(int workers, Duration duration) {
+            return new Profile(Model.CLOSED, workers, duration);
+        }
+    }
+
+    /**
+     * The results of a run.
+     * <p>
+     * A request counts as an error if it could not be sent or the response status was {@code 4xx} or {@code 5xx}.
+     * </p>
+     * <p>
+     * Percentiles are taken from {@code latencies}, which is corrected for coordinated omission (see
+     * {@link LatencyRecorder}). For the {@link Profile.Model#CLOSED} model each worker intends to send its next
+     * request as soon as its previous one completes, so {@code latencies} only exceed {@code serviceTimes} when a
+     * worker is held up between requests, e.g. by a garbage collection pause.
+     * </p>
+     * <p>
+     * A {@code dropped} request is recorded in {@code latencies} as taking from when it was due until the last request
+     * completed, the least it would have taken had it been queued, but not in {@code serviceTimes} as it was never
+     * sent. So {@code latencies} holds {@code requests + dropped} samples.
+     * </p>
+     * <p>
+     * Requests in flight when the duration ends are waited for. Those completing afterwards are counted in
+     * {@code requests} and {@code drained}, but not in {@code throughput}, which only covers the duration.
+     * </p>
+     *
+     * @param latencies    histogram of latencies from the intended send time, including dropped requests, in
+     *                     microseconds
+     * @param serviceTimes histogram of latencies from the actual send time, in microseconds
+     * @param requests     total number of requests completed
+     * @param errors       number of requests that were errors
+     * @param dropped      number of requests never sent as {@link Profile#maxInFlight()} were already in flight
+     * @param throughput   number of requests completed during each second of the run
+     * @param drained      number of requests completed after the duration ended
+     * @param elapsed      time from the first request being started to the last completing
+     */
+    public record Report(
+            Histogram latencies,
+            Histogram serviceTimes,
+            long requests,
+            long errors,
+            long dropped,
+            long[] throughput,
+            long drained,
+            Duration elapsed) {
+
+        public Report {
+            throughput = throughput.clone();
+        }
+
+        @Override
+        public long[] throughput() {
+            return throughput.clone();
+        }
+
+        public Duration p50() {
+            return percentile(50.0);
+        }
+
+        public Duration p90() {
+            return percentile(90.0);
+        }
+
+        public Duration p99() {
+            return percentile(99.0);
+        }
+
+        public Duration p999() {
+            return percentile(99.9);
+        }
+
+        public Duration max() {
+            return Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(latencies.getMaxValue()));
+        }
+
+        public Duration percentile(double percentile) {
+            return Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(latencies.getValueAtPercentile(percentile)));
+        }
+
+        public double errorRate() {
+            return requests == 0 ? 0.0 : (double) errors / requests;
+        }
+
+        public double meanThroughput() {
+            return elapsed.isZero() ? 0.0 : requests / (elapsed.toNanos() / 1e9);
+        }
+    }
+
+    private final RequestExecutor executor;
+
+    public LoadRunner(RequestExecutor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Applies load to {@code request} authenticated as {@code identity}.
+     * The identity variables are resolved once, before the run starts.
+     *
+     * @param identities  service used to resolve identity variables
+     * @param identity    name of the identity to send requests as
+     * @param environment environment variables, overridden by identity variables of the same name
+     * @param request     the request to send
+     * @param profile     the load to apply
+     * @return the results of the run
+     * @throws IdentityServiceException  if the identity variables cannot be resolved
+     * @throws RequestExecutionException if the request cannot be rendered
+     * @throws InterruptedException      if interrupted while applying load
+     */
+    public Report run(IdentityService identities, String identity, Map<String, String> environment,
+                      Request request, Profile profile)
+            throws IdentityServiceException, RequestExecutionException, InterruptedException {
+        var variables = new HashMap<>(environment);
+        variables.putAll(identities.variablesFor(identity));
+        return run(request, variables, profile);
+    }
+
+    /**
+     * Applies load to {@code request}.
+     *
+     * @param request   the request to send
+     * @param variables values for any {@code {{variable}}} tokens in the request
+     * @param profile   the load to apply
+     * @return the results of the run
+     * @throws RequestExecutionException if the request cannot be rendered
+     * @throws InterruptedException      if interrupted while applying load
+     */
+    public Report run(Request request, Map<String, String> variables, Profile profile)
+            throws RequestExecutionException, InterruptedException {
+        var run = new Run(request, executor.prepare(request, variables), profile);
+        return switch (profile.model()) {
+            case OPEN -> run.open();
+            case CLOSED -> run.closed();
+        };
+    }
+
+    private class Run {
+        private final Request request;
+        private final HttpRequest httpRequest;
+        private final Profile profile;
+
+        private final LatencyRecorder recorder = new LatencyRecorder();
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder dropped = new LongAdder();
+        private final LongAdder drained = new LongAdder();
+        private final AtomicLongArray throughput;
+
+        // Only added to by the thread scheduling requests, and read once the run has ended
+        private long[] droppedAt = new long[16];
+        private int droppedCount;
+
+        private long start;
+        private long end;
+
+        Run(Request request, HttpRequest httpRequest, Profile profile) {
+            this.request = request;
+            this.httpRequest = httpRequest;
+            this.profile = profile;
+            this.throughput = new AtomicLongArray((int) Math.ceil(profile.duration().toMillis() / 1000.0));
+        }
+
+        Report open() throws InterruptedException {
+            var interval = TimeUnit.SECONDS.toNanos(1) / profile.load();
+
+            return apply(ThreadUtils.newBoundedTaskExecutor(profile.maxInFlight()), pool -> {
+                for (long next = start; next < end; next += interval) {
+                    sleepUntil(next);
+                    var intended = next;
+                    try {
+                        pool.execute(() -> sendAndRecord(intended));
+                    } catch (RejectedExecutionException e) {
+                        drop(intended);
+                    }
+                }
+            });
+        }
+
+        Report closed() throws InterruptedException {
+            return apply(ThreadUtils.newTaskExecutor(), pool -> {
+                for (int i = 0; i < profile.load(); i++) {
+                    pool.execute(() -> {
+                        var intended = System.nanoTime();
+                        while (System.nanoTime() < end && !Thread.currentThread().isInterrupted()) {
+                            intended = sendAndRecord(intended);
+                        }
+                    });
+                }
+            });
+        }
+
+        private Report apply(ExecutorService pool, Schedule schedule) throws InterruptedException {
+            start = System.nanoTime();
+            end = start + profile.duration().toNanos();
+
+            try {
+                schedule.accept(pool);
+                pool.shutdown();
+                pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                pool.shutdownNow();
+                throw e;
+            }
+
+            var finished = System.nanoTime();
+            for (int i = 0; i < droppedCount; i++) {
+                recorder.recordUnsent(droppedAt[i], finished);
+            }
+
+            var counts = new long[throughput.length()];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = throughput.get(i);
+            }
+
+            return new Report(
+                    recorder.intervalCorrected(),
+                    recorder.intervalUncorrected(),
+                    requests.sum(),
+                    errors.sum(),
+                    dropped.sum(),
+                    counts,
+                    drained.sum(),
+                    Duration.ofNanos(finished - start));
+        }
+
+        private void drop(long intended) {
+            if (droppedCount == droppedAt.length) {
+                droppedAt = Arrays.copyOf(droppedAt, droppedCount * 2);
+            }
+            droppedAt[droppedCount++] = intended;
+            dropped.increment();
+        }
+
+        /**
+         * Sends the request and records it against the time it was {@code intended} to be sent.
+         *
+         * @return when the request completed, which is when a closed model worker intends to send its next request
+         */
+        private long sendAndRecord(long intended) {
+            var sent = System.nanoTime();
+
+            try {
+                var status = executor.send(request, httpRequest, RequestExecutor.ResponseBody.DISCARD)
+                        .response()
+                        .statusCode();
+                if (status >= 400) {
+                    errors.increment();
+                }
+            } catch (RequestExecutionException e) {
+                errors.increment();
+            }
+
+            var completed = System.nanoTime();
+
+            recorder.record(intended, sent, completed);
+            requests.increment();
+
+            if (completed < end) {
+                throughput.incrementAndGet((int) TimeUnit.NANOSECONDS.toSeconds(completed - start));
+            } else {
+                drained.increment();
+            }
+
+            return completed;
+        }
+    }
+
+    private static void sleepUntil(long deadline) throws InterruptedException {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            TimeUnit.NANOSECONDS.sleep(remaining);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Schedule {
+        void accept(ExecutorService pool) throws InterruptedException;
+    }
+
+}
@@ -0,0 +1,21 @@
+/*
+ * Copyright (c) 2024 Mike Cowan.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+
+package io.blt.gregbot.core.execution;
+
+public class RequestExecutionException extends Exception {
+
+    public RequestExecutionException(String message) {
+        super(message);
+    }
+
+    public RequestExecutionException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+}
@@ -0,0 +1,457 @@
+/*
+ * Copyright (c) 2024 Mike Cowan.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+
+package io.blt.gregbot.core.execution;
+
+import io.blt.gregbot.core.execution.Execution.Timings;
+import io.blt.gregbot.core.project.Project;
+import io.blt.gregbot.core.project.Project.Collection.Request;
+import io.blt.gregbot.core.template.Template;
+import io.blt.gregbot.core.template.TemplateException;
+import io.blt.gregbot.plugin.connector.ContentEncoding;
+import io.blt.gregbot.plugin.connector.TransferMetrics;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static io.blt.util.Ex.throwIf;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * Sends {@link Request}s using a single long-lived {@link HttpClient} built from {@link Project.Client}.
+ * <p>
+ * The client is created once per distinct {@link Project.Client} profile and shared by every executor built from it,
+ * so connections (and their TLS sessions) are pooled and reused rather than opened per request or per run.
+ * When {@link Project.Client#executorThreads()} is set the client runs on its own bounded pool of up to that many
+ * threads, which exit once idle, otherwise on the JDK's default executor. Clients are kept for at most
+ * {@value #MAX_CLIENTS} profiles, beyond which they are all dropped and built again as used; a dropped client is
+ * released once no executor still uses it. An instance is safe to use from many threads.
+ * </p>
+ * <p>
+ * Both {@link Project.Client#connectionTimeout()} and {@link Project.Client#requestTimeout()} are in seconds.
+ * When {@link Project.Client#maxConcurrentStreams()} is set, no more than that many requests are in flight to the same
+ * origin at once; over HTTP/2 this bounds the streams multiplexed on the shared connection.
+ * </p>
+ * <p>
+ * {@link #metrics()} reports, per origin, how many requests are queued waiting for a stream and how many are in flight.
+ * Requests piling up in the queue mean the client limit is the bottleneck, whereas requests in flight for longer mean
+ * the server is.
+ * </p>
+ * <p>
+ * When {@link Project.Client#compression()} is set, requests accept {@code gzip} and {@code deflate} responses, which
+ * are decoded as they arrive so {@link Execution#response()} always holds the decoded body. {@link #transferMetrics()}
+ * then shows the bytes received on the wire against the bytes once decoded. Discarded bodies are never decoded, so
+ * are not included.
+ * </p>
+ * <p>
+ * Response bodies are held in memory unless sent with another {@link ResponseBody}, e.g. to discard them when only the
+ * status and timings matter, or to write large bodies to a file as they arrive.
+ * </p>
+ */
+public class RequestExecutor {
+
+    /**
+     * Most requests whose templates are kept compiled, beyond which they are all discarded and compiled again as used.
+     */
+    static final int MAX_COMPILED = 10_000;
+
+    /**
+     * Most client profiles whose clients are kept for reuse, e.g. as a project's client settings are edited.
+     */
+    static final int MAX_CLIENTS = 16;
+
+    private record Compiled(Template path, Map<String, Template> headers) {}
+
+    /**
+     * Looks up a {@link Request} by identity, rather than hashing and comparing its path and every header.
+     */
+    private record RequestKey(Request request) {
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof RequestKey key && key.request == request;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(request);
+        }
+    }
+
+    /**
+     * How a response body is received.
+     */
+    public enum ResponseBody {
+        /** Held in memory as the body of {@link Execution#response()}. */
+        BUFFER,
+        /** Read and dropped as it arrives, for when only the status and timings matter. */
+        DISCARD,
+        /** Written to a temporary file as it arrives, {@link Execution#bodyFile()}, which the caller must delete. */
+        FILE
+    }
+
+    private static final Map<Project.Client, HttpClient> CLIENTS = new ConcurrentHashMap<>();
+
+    private final Project.Client config;
+    private final HttpClient client;
+    private final Map<String, Origin> origins = new ConcurrentHashMap<>();
+    private final TransferMetrics transferMetrics = new TransferMetrics();
+    private final Map<RequestKey, Compiled> compiled = new ConcurrentHashMap<>();
+
+    public RequestExecutor(Project.Client config) {
+        this.config = Objects.requireNonNull(config, "'config' must not be null");
+        this.client = clientFor(config);
+    }
+
+    /**
+     * Renders and sends {@code request}, blocking until the full response has been received.
+     *
+     * @param request   the request to send
+     * @param variables values for any {@code {{variable}}} tokens in the request path and headers
+     * @return the response and its timings
+     * @throws RequestExecutionException if the request cannot be rendered or sent
+     */
+    public Execution execute(Request request, Map<String, String> variables) throws RequestExecutionException {
+        return send(request, prepare(request, variables));
+    }
+
+    /**
+     * Sends a previously {@link #prepare(Request, Map) prepared} request, blocking until the full response has been
+     * received. A prepared request may be sent any number of times, avoiding rendering the same request repeatedly.
+     *
+     * @param request     the request that {@code httpRequest} was prepared from
+     * @param httpRequest the prepared request to send
+     * @return the response and its timings
+     * @throws RequestExecutionException if the request cannot be sent
+     */
+    public Execution send(Request request, HttpRequest httpRequest) throws RequestExecutionException {
+        return send(request, httpRequest, ResponseBody.BUFFER, null);
+    }
+
+    /**
+     * Sends a previously {@link #prepare(Request, Map) prepared} request as {@link #send(Request, HttpRequest)},
+     * receiving the response body as {@code body} says rather than holding it in memory.
+     *
+     * @param request     the request that {@code httpRequest} was prepared from
+     * @param httpRequest the prepared request to send
+     * @param body        how to receive the response body
+     * @return the response and its timings
+     * @throws RequestExecutionException if the request cannot be sent, or the body cannot be written to a file
+     */
+    public Execution send(Request request, HttpRequest httpRequest, ResponseBody body)
+            throws RequestExecutionException {
+        return send(request, httpRequest, body, null);
+    }
+
+    /**
+     * Renders and sends {@code request} as {@link #execute(Request, Map)}, whilst the caller holds a permit from
+     * {@code concurrency}. Should the request have to queue for a stream to its origin, the permit is released while it
+     * waits and acquired again before it is sent, so requests to other origins are not held up behind it.
+     *
+     * @param request     the request to send
+     * @param variables   values for any {@code {{variable}}} tokens in the request path and headers
+     * @param concurrency the limiter the caller holds a permit from, and still holds once this returns
+     * @return the response and its timings
+     * @throws RequestExecutionException if the request cannot be rendered or sent
+     */
+    Execution execute(Request request, Map<String, String> variables, Semaphore concurrency)
+            throws RequestExecutionException {
+        return send(request, prepare(request, variables), ResponseBody.BUFFER, concurrency);
+    }
+
+    private Execution send(Request request, HttpRequest httpRequest, ResponseBody body, Semaphore concurrency)
+            throws RequestExecutionException {
+        var bodyFile = body == ResponseBody.FILE ? createBodyFile() : null;
+        var firstByte = new AtomicLong();
+        HttpResponse.BodyHandler<byte[]> received = info -> {
+            firstByte.set(System.nanoTime());
+            return subscriberFor(body, bodyFile);
+        };
+        // A discarded body is thrown away as it arrives, so there is no point decoding it first
+        var handler = config.compression() && body != ResponseBody.DISCARD
+                ? ContentEncoding.decoding(received, transferMetrics)
+                : received;
+
+        var origin = originFor(httpRequest.uri());
+
+        var succeeded = false;
+        try {
+            origin.acquire(concurrency);
+
+            try {
+                var started = Instant.now();
+                var start = System.nanoTime();
+
+                var response = client.send(httpRequest, handler);
+                var end = System.nanoTime();
+                succeeded = true;
+
+                return new Execution(request, response, bodyFile, new Timings(
+                        started,
+                        Duration.ofNanos(firstByte.get() - start),
+                        Duration.ofNanos(end - start)));
+            } finally {
+                origin.release(succeeded);
+            }
+        } catch (IOException e) {
+            throw new RequestExecutionException("Failed to send request to " + httpRequest.uri(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RequestExecutionException("Interrupted sending request to " + httpRequest.uri(), e);
+        } finally {
+            if (!succeeded && nonNull(bodyFile)) {
+                deleteQuietly(bodyFile);
+            }
+        }
+    }
+
+    private static HttpResponse.BodySubscriber<byte[]> subscriberFor(ResponseBody body, Path bodyFile) {
+        return switch (body) {
+            case BUFFER -> HttpResponse.BodySubscribers.ofByteArray();
+            case DISCARD -> HttpResponse.BodySubscribers.replacing(null);
+            case FILE -> HttpResponse.BodySubscribers.mapping(
+                    HttpResponse.BodySubscribers.ofFile(bodyFile), file -> null);
+        };
+    }
+
+    private static Path createBodyFile() throws RequestExecutionException {
+        try {
+            return Files.createTempFile("gregbot-response", ".body");
+        } catch (IOException e) {
+            throw new RequestExecutionException("Failed to create file for response body", e);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // Left for the temporary directory to be cleaned up
+        }
+    }
+
+    /**
+     * Renders {@code request} into an {@link HttpRequest} ready to {@link #send(Request, HttpRequest) send}.
+     *
+     * @param request   the request to render
+     * @param variables values for any {@code {{variable}}} tokens in the request path and headers
+     * @return the rendered request
+     * @throws RequestExecutionException if the request cannot be rendered
+     */
+    public HttpRequest prepare(Request request, Map<String, String> variables) throws RequestExecutionException {
+        var templates = compile(request);
+        var resolver = resolverFor(variables);
+        var uri = toUri(templates.path().render(resolver));
+
+        try {
+            var builder = HttpRequest.newBuilder()
+                    .uri(uri)
+                    .timeout(Duration.ofSeconds(config.requestTimeout()))
+                    .method(request.verb().name(), HttpRequest.BodyPublishers.noBody());
+
+            for (var header : templates.headers().entrySet()) {
+                builder.header(header.getKey(), header.getValue().render(resolver));
+            }
+
+            if (config.compression() && !hasHeader(request, "Accept-Encoding")) {
+                builder.header("Accept-Encoding", ContentEncoding.ACCEPT);
+            }
+
+            return builder.build();
+        } catch (IllegalArgumentException e) {
+            throw new RequestExecutionException("Failed to build request for path: " + uri, e);
+        }
+    }
+
+    /**
+     * Returns a live snapshot of each origin this executor has sent requests to.
+     *
+     * @return metrics keyed by origin, e.g. {@code https://example.com:8443}, in origin order
+     */
+    public Map<String, HostMetrics> metrics() {
+        var metrics = new TreeMap<String, HostMetrics>();
+        origins.forEach((name, origin) -> metrics.put(name, origin.metrics()));
+        return metrics;
+    }
+
+    /**
+     * Returns the response body bytes received on the wire and once decoded, recorded when compression is enabled.
+     *
+     * @return live transfer metrics
+     */
+    public TransferMetrics transferMetrics() {
+        return transferMetrics;
+    }
+
+    /**
+     * Requests sent to a single origin.
+     *
+     * @param queued       requests waiting for a stream, i.e. held back by {@link Project.Client#maxConcurrentStreams()}
+     * @param inFlight     requests sent and awaiting their full response
+     * @param peakInFlight most requests that have been in flight at once
+     * @param completed    requests that received a response
+     * @param failed       requests that failed to send or receive a response
+     */
+    public record HostMetrics(int queued, int inFlight, int peakInFlight, long completed, long failed) {}
+
+    private static boolean hasHeader(Request request, String name) {
+        return request.headers().keySet().stream().anyMatch(name::equalsIgnoreCase);
+    }
+
+    private Origin originFor(URI uri) {
+        return origins.computeIfAbsent(uri.getScheme() + "://" + uri.getAuthority(), o -> {
+            var limit = config.maxConcurrentStreams();
+            return new Origin(isNull(limit) ? null : new Semaphore(limit, true));
+        });
+    }
+
+    private Compiled compile(Request request) throws RequestExecutionException {
+        var key = new RequestKey(request);
+        var templates = compiled.get(key);
+        if (isNull(templates)) {
+            try {
+                var headers = new LinkedHashMap<String, Template>();
+                for (var header : request.headers().entrySet()) {
+                    headers.put(header.getKey(), Template.compile(header.getValue(), Template.Token.VARIABLE));
+                }
+                templates = new Compiled(Template.compile(request.path(), Template.Token.VARIABLE), headers);
+            } catch (TemplateException e) {
+                throw new RequestExecutionException("Failed to compile request templates", e);
+            }
+            if (compiled.size() >= MAX_COMPILED) {
+                compiled.clear();
+            }
+            compiled.put(key, templates);
+        }
+        return templates;
+    }
+
+    private static Template.VariableResolver<RequestExecutionException> resolverFor(Map<String, String> variables) {
+        return name -> throwIf(variables.get(name), Objects::isNull,
+                () -> new RequestExecutionException("No value for variable : " + name));
+    }
+
+    private static URI toUri(String path) throws RequestExecutionException {
+        try {
+            return URI.create(path);
+        } catch (IllegalArgumentException e) {
+            throw new RequestExecutionException("Failed to build request for path: " + path, e);
+        }
+    }
+
+    private static HttpClient clientFor(Project.Client config) {
+        var client = CLIENTS.get(config);
+        if (isNull(client)) {
+            if (CLIENTS.size() >= MAX_CLIENTS) {
+                CLIENTS.clear();
+            }
+            client = CLIENTS.computeIfAbsent(config, RequestExecutor::buildClient);
+        }
+        return client;
+    }
+
+    private static HttpClient buildClient(Project.Client config) {
+        var builder = HttpClient.newBuilder()
+                .version(httpVersion(config.version()))
+                .followRedirects(HttpClient.Redirect.valueOf(config.redirect().name()))
+                .connectTimeout(Duration.ofSeconds(config.connectionTimeout()));
+
+        if (nonNull(config.executorThreads())) {
+            var threads = config.executorThreads();
+            var executor = new ThreadPoolExecutor(
+                    threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), daemonThreads());
+            // Idle threads exit, so a client kept for a profile that is no longer used holds no threads
+            executor.allowCoreThreadTimeOut(true);
+            builder.executor(executor);
+        }
+
+        return builder.build();
+    }
+
+    private static ThreadFactory daemonThreads() {
+        var count = new AtomicInteger();
+        return r -> {
+            var thread = new Thread(r, "http-client-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static HttpClient.Version httpVersion(Project.Client.Version version) {
+        return switch (version) {
+            case HTTP_1_1 -> HttpClient.Version.HTTP_1_1;
+            case HTTP_2, HTTP_2_PRIOR_KNOWLEDGE -> HttpClient.Version.HTTP_2;
+        };
+    }
+
+    private static final class Origin {
+
+        private final Semaphore streams;
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger peakInFlight = new AtomicInteger();
+        private final LongAdder completed = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+
+        Origin(Semaphore streams) {
+            this.streams = streams;
+        }
+
+        void acquire(Semaphore held) throws InterruptedException {
+            if (nonNull(streams) && !streams.tryAcquire()) {
+                queued.incrementAndGet();
+                if (nonNull(held)) {
+                    held.release();
+                }
+                try {
+                    streams.acquire();
+                } finally {
+                    queued.decrementAndGet();
+                    if (nonNull(held)) {
+                        held.acquireUninterruptibly();
+                    }
+                }
+            }
+            peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        }
+
+        void release(boolean succeeded) {
+            inFlight.decrementAndGet();
+            (succeeded ? completed : failed).increment();
+            if (nonNull(streams)) {
+                streams.release();
+            }
+        }
+
+        HostMetrics metrics() {
+            return new HostMetrics(queued.get(), inFlight.get(), peakInFlight.get(), completed.sum(), failed.sum());
+        }
+
+    }
+
+}
@@ -12,21 +12,66 @@ import io.blt.gregbot.core.project.Project;
 import io.blt.gregbot.plugin.Plugin;
 import io.blt.gregbot.plugin.PluginException;
 import io.blt.util.Obj;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
-import java.util.ServiceLoader;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.jar.JarFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import static io.blt.util.stream.SingletonCollectors.toOptional;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
 
 /**
  * A facility to load implementations of {@code Plugin}.
+ * <p>
+ *     Plugins are registered using the standard {@code META-INF/services} provider files, found on the class path and
+ *     in each jar in the plugins directory ({@code plugins} within the {@code gregbot.home} directory). A registry of
+ *     plugin type to provider is built once per plugin interface by reading those files, without loading any class, so
+ *     a plugin class is only loaded when first used. Each plugin jar is given its own class loader, created on first
+ *     use of one of its plugins.
+ * </p>
+ * <p>
+ *     A plugin may also be referred to by an alias, e.g. {@code io.blt.gregbot.plugin.VaultOidc}, declared in a
+ *     {@value #ALIASES} properties file of alias to plugin type.
+ * </p>
  */
 public class PluginLoader<T extends Plugin> {
 
-    private final ServiceLoader<T> loader;
+    public static final String ALIASES = "META-INF/gregbot/plugins.properties";
+
+    private static final Map<Class<?>, Registry> REGISTRIES = new ConcurrentHashMap<>();
+    private static final Map<Path, ClassLoader> JAR_CLASS_LOADERS = new ConcurrentHashMap<>();
+
+    private final Class<T> type;
+    private final Registry registry;
 
     public PluginLoader(Class<T> type) {
-        this.loader = ServiceLoader.load(type);
+        this.type = type;
+        this.registry = REGISTRIES.computeIfAbsent(type, t -> new Registry(t, defaultPluginsDirectory()));
+    }
+
+    PluginLoader(Class<T> type, Path pluginsDirectory) {
+        this.type = type;
+        this.registry = new Registry(type, pluginsDirectory);
     }
 
     /**
@@ -34,12 +79,12 @@ public class PluginLoader<T extends Plugin> {
      *
      * @param plugin the plugin properties
      * @return a new loaded plugin instance
-     * @throws PluginException        if there is an error loading the plugin
+     * @throws PluginException        if there is an error creating or loading the plugin
      * @throws NoSuchElementException if no plugin matches the properties
      * @throws NullPointerException   if {@code plugin} is {@code null}
      */
     public T load(Project.Plugin plugin) throws PluginException {
-        return Obj.poke(findPluginOrThrow(plugin), p -> p.load(plugin.properties()));
+        return Obj.poke(create(plugin), p -> p.load(plugin.properties()));
     }
 
     /**
@@ -48,22 +93,153 @@ public class PluginLoader<T extends Plugin> {
      * @return list of plugin types
      */
     public List<String> plugins() {
-        return loader.stream()
-                .map(this::providerType)
-                .toList();
+        return registry.types();
+    }
+
+    private T create(Project.Plugin plugin) throws PluginException {
+        var provider = registry.find(plugin.type());
+        if (isNull(provider)) {
+            throw new NoSuchElementException("Cannot find plugin '%s'".formatted(plugin.type()));
+        }
+
+        try {
+            return Class.forName(provider.type(), true, provider.classLoader().get())
+                    .asSubclass(type)
+                    .getDeclaredConstructor()
+                    .newInstance();
+        } catch (ReflectiveOperationException | ClassCastException | LinkageError | UncheckedIOException e) {
+            throw new PluginException("Failed to create plugin '%s'".formatted(plugin.type()), e);
+        }
     }
 
-    private T findPluginOrThrow(Project.Plugin plugin) {
-        return loader.stream()
-                .filter(p -> providerType(p).equals(plugin.type()))
-                .map(ServiceLoader.Provider::get)
-                .collect(toOptional())
-                .orElseThrow(() -> new NoSuchElementException(
-                        "Cannot find plugin '%s'".formatted(plugin.type())));
+    private static Path defaultPluginsDirectory() {
+        var home = System.getProperty("gregbot.home", System.getProperty("user.home") + "/.gregbot");
+        return Path.of(home, "plugins");
     }
 
-    private String providerType(ServiceLoader.Provider<T> provider) {
-        return provider.type().getName();
+    private static ClassLoader jarClassLoader(Path jar) {
+        return JAR_CLASS_LOADERS.computeIfAbsent(jar, j -> {
+            try {
+                return new URLClassLoader(
+                        "plugin " + j.getFileName(),
+                        new URL[]{j.toUri().toURL()},
+                        PluginLoader.class.getClassLoader());
+            } catch (MalformedURLException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * A plugin type, and where to load it from.
+     */
+    private record Provider(String type, Supplier<ClassLoader> classLoader) {}
+
+    /**
+     * Plugin types and aliases of a plugin interface, read from the provider and alias files.
+     */
+    private static final class Registry {
+
+        private final Logger log = LoggerFactory.getLogger(PluginLoader.class);
+
+        private final Map<String, Provider> providers = new LinkedHashMap<>();
+        private final Map<String, String> aliases = new HashMap<>();
+        private final List<String> types;
+
+        Registry(Class<?> type, Path pluginsDirectory) {
+            var services = "META-INF/services/" + type.getName();
+
+            var classLoader = Objects.requireNonNullElse(
+                    Thread.currentThread().getContextClassLoader(), PluginLoader.class.getClassLoader());
+            Supplier<ClassLoader> classPath = () -> classLoader;
+            try {
+                for (var url : Collections.list(classLoader.getResources(services))) {
+                    try (var stream = url.openStream()) {
+                        register(stream, classPath);
+                    }
+                }
+                for (var url : Collections.list(classLoader.getResources(ALIASES))) {
+                    try (var stream = url.openStream()) {
+                        alias(stream);
+                    }
+                }
+            } catch (IOException e) {
+                log.warn("Failed to read {} plugins from the class path", type.getSimpleName(), e);
+            }
+
+            for (var jar : jarsIn(pluginsDirectory)) {
+                try (var file = new JarFile(jar.toFile())) {
+                    var entry = file.getJarEntry(services);
+                    if (nonNull(entry)) {
+                        try (var stream = file.getInputStream(entry)) {
+                            register(stream, () -> jarClassLoader(jar));
+                        }
+                    }
+                    var aliasEntry = file.getJarEntry(ALIASES);
+                    if (nonNull(aliasEntry)) {
+                        try (var stream = file.getInputStream(aliasEntry)) {
+                            alias(stream);
+                        }
+                    }
+                } catch (IOException e) {
+                    log.warn("Ignoring unreadable plugin jar {}", jar, e);
+                }
+            }
+
+            this.types = List.copyOf(providers.keySet());
+        }
+
+        List<String> types() {
+            return types;
+        }
+
+        /**
+         * Returns the provider of {@code type}, which may be an alias, or {@code null} if there is none.
+         */
+        Provider find(String type) {
+            var provider = providers.get(type);
+            if (isNull(provider) && aliases.containsKey(type)) {
+                provider = providers.get(aliases.get(type));
+            }
+            return provider;
+        }
+
+        /**
+         * Registers each type in a provider file, keeping the first registration of a type.
+         */
+        private void register(InputStream stream, Supplier<ClassLoader> classLoader) throws IOException {
+            var reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8));
+            for (var line = reader.readLine(); nonNull(line); line = reader.readLine()) {
+                var comment = line.indexOf('#');
+                var name = (comment < 0 ? line : line.substring(0, comment)).trim();
+                if (!name.isEmpty()) {
+                    providers.putIfAbsent(name, new Provider(name, classLoader));
+                }
+            }
+        }
+
+        private void alias(InputStream stream) throws IOException {
+            var properties = new Properties();
+            properties.load(new InputStreamReader(stream, StandardCharsets.UTF_8));
+            properties.stringPropertyNames()
+                    .forEach(alias -> aliases.putIfAbsent(alias, properties.getProperty(alias).trim()));
+        }
+
+        private List<Path> jarsIn(Path directory) {
+            if (isNull(directory) || !Files.isDirectory(directory)) {
+                return List.of();
+            }
+
+            try (var files = Files.list(directory)) {
+                return files.filter(f -> f.getFileName().toString().endsWith(".jar"))
+                        .sorted()
+                        .toList();
+            } catch (IOException e) {
+                log.warn("Failed to list plugin jars in {}", directory, e);
+                return List.of();
+            }
+        }
+
     }
 
 }
@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2024 Mike Cowan.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+
+package io.blt.gregbot.core.plugin;
+
+import io.blt.gregbot.plugin.secrets.LeasedSecrets;
+import io.blt.gregbot.plugin.secrets.SecretException;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * A thread-safe cache of secrets keyed by path.
+ * <p>
+ *     Each entry expires after the lease reported by the plugin or, when there is no lease, after the default TTL.
+ *     Concurrent requests for a path that is not cached share a single load, so an expired secret causes one call to
+ *     the plugin rather than one per caller.
+ *     When the cache holds more than {@code maximumSize} entries the least recently used are evicted.
+ * </p>
+ */
+public class SecretCache {
+
+    public static final Duration DEFAULT_TTL = Duration.ofMinutes(10);
+    public static final int DEFAULT_MAXIMUM_SIZE = 1_000;
+
+    private final long defaultTtl;
+    private final int maximumSize;
+    private final LongSupplier clock;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder loadTime = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public SecretCache() {
+        this(DEFAULT_TTL, DEFAULT_MAXIMUM_SIZE);
+    }
+
+    public SecretCache(Duration defaultTtl, int maximumSize) {
+        this(defaultTtl, maximumSize, System::nanoTime);
+    }
+
+    SecretCache(Duration defaultTtl, int maximumSize, LongSupplier clock) {
+        if (defaultTtl.isNegative() || defaultTtl.isZero()) {
+            throw new IllegalArgumentException("defaultTtl must be positive but was " + defaultTtl);
+        }
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("maximumSize must be at least 1 but was " + maximumSize);
+        }
+
+        this.defaultTtl = defaultTtl.toNanos();
+        this.maximumSize = maximumSize;
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the secrets for {@code path}, calling {@code loader} if they are not cached or have expired.
+     * If another thread is already loading {@code path} this waits for, and shares, its result.
+     *
+     * @param path   path of the secrets
+     * @param loader loads the secrets when required
+     * @return secret values keyed by name
+     * @throws SecretException if the secrets are loaded and the loader fails
+     */
+    public Map<String, String> get(String path, Loader loader) throws SecretException {
+        var now = clock.getAsLong();
+
+        var entry = entries.get(path);
+        if (nonNull(entry) && entry.isValid(now)) {
+            hits.increment();
+            entry.accessedAt = now;
+            return entry.value.join().secrets();
+        }
+
+        var candidate = new Entry(now);
+        entry = entries.compute(path, (k, e) -> isNull(e) || e.isExpired(now) ? candidate : e);
+
+        if (entry == candidate) {
+            misses.increment();
+            load(path, candidate, loader);
+            evictIfRequired();
+        } else {
+            hits.increment();
+            entry.accessedAt = now;
+        }
+
+        return await(path, entry).secrets();
+    }
+
+    /**
+     * Stores {@code secrets} for {@code path}, replacing any cached value.
+     *
+     * @param path    path of the secrets
+     * @param secrets secrets to cache
+     */
+    public void put(String path, LeasedSecrets secrets) {
+        var now = clock.getAsLong();
+        var entry = new Entry(now);
+        entry.expiresAt = now + ttlFor(secrets);
+        entry.value.complete(secrets);
+        entries.put(path, entry);
+        evictIfRequired();
+    }
+
+    /**
+     * Returns {@code true} if secrets for {@code path} are cached, or being loaded, and have not expired.
+     *
+     * @param path path of the secrets
+     * @return {@code true} if a call to {@link #get(String, Loader)} would not call the loader
+     */
+    public boolean contains(String path) {
+        var entry = entries.get(path);
+        return nonNull(entry) && !entry.isExpired(clock.getAsLong());
+    }
+
+    public void invalidate(String path) {
+        entries.remove(path);
+    }
+
+    public void invalidateAll() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public Stats stats() {
+        return new Stats(
+                hits.sum(),
+                misses.sum(),
+                loadFailures.sum(),
+                Duration.ofNanos(loadTime.sum()),
+                evictions.sum());
+    }
+
+    private void load(String path, Entry entry, Loader loader) throws SecretException {
+        var start = clock.getAsLong();
+        try {
+            var secrets = loader.load(path);
+            var loaded = clock.getAsLong();
+            loadTime.add(loaded - start);
+            entry.expiresAt = loaded + ttlFor(secrets);
+            entry.value.complete(secrets);
+        } catch (Throwable e) {
+            // Includes errors, so callers waiting on this load are released and the path can be loaded again
+            loadTime.add(clock.getAsLong() - start);
+            loadFailures.increment();
+            entries.remove(path, entry);
+            entry.value.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private LeasedSecrets await(String path, Entry entry) throws SecretException {
+        try {
+            return entry.value.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SecretException cause) {
+                throw cause;
+            }
+            throw new SecretException("Failed to load secrets for path: " + path, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SecretException("Interrupted waiting for secrets for path: " + path, e);
+        }
+    }
+
+    private long ttlFor(LeasedSecrets secrets) {
+        var lease = secrets.lease();
+        return nonNull(lease) && !lease.isNegative() && !lease.isZero() ? lease.toNanos() : defaultTtl;
+    }
+
+    private void evictIfRequired() {
+        while (entries.size() > maximumSize) {
+            var eldest = entries.entrySet().stream()
+                    .filter(e -> e.getValue().value.isDone())
+                    .min(Comparator.comparingLong(e -> e.getValue().accessedAt));
+
+            if (eldest.isEmpty() || !entries.remove(eldest.get().getKey(), eldest.get().getValue())) {
+                return;
+            }
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Loads secrets for a path that is not cached.
+     */
+    @FunctionalInterface
+    public interface Loader {
+        LeasedSecrets load(String path) throws SecretException;
+    }
+
+    /**
+     * Counters accumulated since the cache was created.
+     *
+     * @param hits         lookups served from the cache, including those that waited on another thread's load
+     * @param misses       lookups that loaded from the plugin
+     * @param loadFailures loads that threw
+     * @param loadTime     total time spent loading
+     * @param evictions    entries removed to stay within the maximum size
+     */
+    public record Stats(long hits, long misses, long loadFailures, Duration loadTime, long evictions) {
+
+        public double hitRate() {
+            var requests = hits + misses;
+            return requests == 0 ? 0 : (double) hits / requests;
+        }
+
+        public Duration averageLoadTime() {
+            return misses == 0 ? Duration.ZERO : loadTime.dividedBy(misses);
+        }
+
+    }
+
+    private static final class Entry {
+
+        private final CompletableFuture<LeasedSecrets> value = new CompletableFuture<>();
+        private volatile long expiresAt;
+        private volatile long accessedAt;
+
+        private Entry(long now) {
+            this.accessedAt = now;
+        }
+
+        private boolean isValid(long now) {
+            return value.isDone() && !value.isCompletedExceptionally() && now - expiresAt < 0;
+        }
+
+        private boolean isExpired(long now) {
+            return value.isCompletedExceptionally() || (value.isDone() && now - expiresAt >= 0);
+        }
+
+    }
+
+}
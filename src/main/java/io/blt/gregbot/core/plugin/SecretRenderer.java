@@ -8,54 +8,124 @@
 
 package io.blt.gregbot.core.plugin;
 
+import io.blt.gregbot.core.template.Template;
+import io.blt.gregbot.core.template.TemplateException;
+import io.blt.gregbot.plugin.secrets.LeasedSecrets;
+import io.blt.gregbot.plugin.secrets.LeasingSecretPlugin;
 import io.blt.gregbot.plugin.secrets.SecretException;
 import io.blt.gregbot.plugin.secrets.SecretPlugin;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Objects;
-import java.util.regex.Pattern;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
-import static io.blt.util.Ctr.computeIfAbsent;
+import static io.blt.util.Ctr.transformValues;
 import static io.blt.util.Ex.throwIf;
+import static java.util.Objects.isNull;
 
 /**
  * Manage rendering secret templates including calling SecretPlugin.
- * Results from calling {@code SecretPlugin} are cached where possible for performance reasons.
+ * Templates are compiled once and results from calling {@code SecretPlugin} are cached in a {@link SecretCache} for
+ * performance reasons. Secrets from a {@link LeasingSecretPlugin} are cached for the lease it reports.
  */
 public class SecretRenderer {
 
+    /**
+     * Most compiled templates kept, beyond which they are all discarded and compiled again as they are rendered.
+     */
+    static final int MAX_TEMPLATES = 10_000;
+
     private final SecretPlugin plugin;
 
-    private final Pattern pattern = Pattern.compile("\\[(.+?)]");
+    private final Map<String, Template> templates = new ConcurrentHashMap<>();
+
+    private final SecretCache cache;
 
-    private final Map<String, Map<String, String>> cache = new HashMap<>();
+    private final Template.SecretResolver<SecretRenderException> resolver = this::renderSecretFor;
 
     public SecretRenderer(SecretPlugin plugin) {
+        this(plugin, new SecretCache());
+    }
+
+    public SecretRenderer(SecretPlugin plugin, SecretCache cache) {
         this.plugin = plugin;
+        this.cache = cache;
+    }
+
+    public SecretCache.Stats cacheStats() {
+        return cache.stats();
+    }
+
+    public SecretPlugin plugin() {
+        return plugin;
     }
 
     public String render(String template) throws SecretRenderException {
-        var matcher = pattern.matcher(template);
-        var result = new StringBuilder();
-        while (matcher.find()) {
-            var token = matcher.group(1);
-            var value = renderSecretFor(token);
-            matcher.appendReplacement(result, value);
+        return compile(template).render(resolver);
+    }
+
+    /**
+     * Fetches every secret referenced by {@code templates} that is not already cached, before rendering starts.
+     * <p>
+     *     All missing paths are passed to {@link SecretPlugin#secretsForPaths(java.util.Set)} together, allowing the plugin to
+     *     fetch them concurrently or in a single round trip rather than one at a time as they are rendered.
+     * </p>
+     *
+     * @param templates templates that will later be rendered
+     * @throws SecretRenderException if a template is malformed or the secrets cannot be fetched
+     */
+    public void prefetch(Collection<String> templates) throws SecretRenderException {
+        var paths = new LinkedHashSet<String>();
+        for (var template : templates) {
+            for (var path : compile(template).secretPaths()) {
+                if (!cache.contains(path)) {
+                    paths.add(path);
+                }
+            }
+        }
+
+        if (paths.isEmpty()) {
+            return;
+        }
+
+        try {
+            fetchAll(paths).forEach(cache::put);
+        } catch (SecretException e) {
+            throw new SecretRenderException("Failed to prefetch secrets for paths : " + paths, e);
         }
-        matcher.appendTail(result);
-        return result.toString();
     }
 
-    private String renderSecretFor(String token) throws SecretRenderException {
-        int index = throwIf(token.lastIndexOf('/'), i -> i == -1,
-                () -> new SecretRenderException("Token must be of the form '[path/key]'. Missing '/' : " + token));
-        var path = throwIf(token.substring(0, index), String::isEmpty,
-                () -> new SecretRenderException("Token must be of the form '[path/key]'. Missing 'path/' : " + token));
-        var key = throwIf(token.substring(index + 1), String::isEmpty,
-                () -> new SecretRenderException("Token must be of the form '[path/key]'. Missing '/key' : " + token));
+    /**
+     * Returns {@code template} compiled for secret tokens of the form {@code [path/key]}.
+     * Compiled templates are cached, so repeated calls for the same template are cheap.
+     *
+     * @param template the template to compile
+     * @return the compiled template
+     * @throws SecretRenderException if the template contains a malformed token
+     */
+    public Template compile(String template) throws SecretRenderException {
+        var compiled = templates.get(template);
+        if (isNull(compiled)) {
+            try {
+                compiled = Template.compile(template, Template.Token.SECRET);
+            } catch (TemplateException e) {
+                throw new SecretRenderException(e.getMessage(), e);
+            }
+            if (templates.size() >= MAX_TEMPLATES) {
+                templates.clear();
+            }
+            templates.put(template, compiled);
+        }
+        return compiled;
+    }
+
+    private String renderSecretFor(String path, String key) throws SecretRenderException {
+        var token = path + "/" + key;
 
         try {
-            var secrets = computeIfAbsent(cache, path, plugin::secretsForPath);
+            var secrets = cache.get(path, this::fetch);
             return throwIf(secrets.get(key), Objects::isNull,
                     () -> new SecretRenderException("Context does not contain a value for token : " + token));
         } catch (SecretException e) {
@@ -63,4 +133,16 @@ public class SecretRenderer {
         }
     }
 
+    private LeasedSecrets fetch(String path) throws SecretException {
+        return plugin instanceof LeasingSecretPlugin leasing
+                ? leasing.leasedSecretsForPath(path)
+                : new LeasedSecrets(plugin.secretsForPath(path), null);
+    }
+
+    private Map<String, LeasedSecrets> fetchAll(Set<String> paths) throws SecretException {
+        return plugin instanceof LeasingSecretPlugin leasing
+                ? leasing.leasedSecretsForPaths(paths)
+                : transformValues(plugin.secretsForPaths(paths), secrets -> new LeasedSecrets(secrets, null));
+    }
+
 }
@@ -13,10 +13,7 @@ import com.fasterxml.jackson.databind.MapperFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.PropertyNamingStrategies;
 import com.fasterxml.jackson.databind.json.JsonMapper;
-import jakarta.validation.ConstraintViolation;
 import jakarta.validation.Valid;
-import jakarta.validation.Validation;
-import jakarta.validation.Validator;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
@@ -25,7 +22,6 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 /**
  * Represents all data of the system with non-null and immutable guarantees.
@@ -42,6 +38,9 @@ import java.util.stream.Collectors;
  *     <li>Perform validation, throwing on failure</li>
  * </ol>
  * </p>
+ * <p>
+ * Large projects may instead be loaded section by section using {@link ProjectLoader}.
+ * </p>
  */
 public record Project(
         @Valid @NotNull Client client,
@@ -54,10 +53,33 @@ public record Project(
             @NotNull Version version,
             @NotNull Redirect redirect,
             @Positive int connectionTimeout,
-            @Positive int requestTimeout) {
+            @Positive int requestTimeout,
+            @Positive Integer maxConcurrentStreams,
+            @Positive Integer executorThreads,
+            boolean compression) {
+
+        public Client(
+                Version version,
+                Redirect redirect,
+                int connectionTimeout,
+                int requestTimeout,
+                Integer maxConcurrentStreams) {
+            this(version, redirect, connectionTimeout, requestTimeout, maxConcurrentStreams, null, false);
+        }
 
+        /**
+         * HTTP protocol version to prefer.
+         * <p>
+         * Both {@code HTTP_2} variants multiplex concurrent requests to the same origin over a single connection.
+         * Over TLS the version is negotiated using ALPN, so {@code HTTP_2_PRIOR_KNOWLEDGE} behaves exactly as
+         * {@code HTTP_2}; over cleartext the JDK client can only negotiate using an {@code Upgrade} and will fall back to
+         * {@code HTTP_1_1} when the server does not accept it.
+         * </p>
+         */
         public enum Version {
-            HTTP_1_1
+            HTTP_1_1,
+            HTTP_2,
+            HTTP_2_PRIOR_KNOWLEDGE
         }
 
         public enum Redirect {
@@ -113,8 +135,7 @@ public record Project(
             @Valid @NotNull Map<@NotEmpty String, String> properties) {
     }
 
-    private static final ObjectMapper MAPPER = buildMapper();
-    private static final Validator VALIDATOR = buildValidator();
+    static final ObjectMapper MAPPER = buildMapper();
 
     /**
      * Returns an instance of {@link Project} created from a JSON resource file.
@@ -148,22 +169,15 @@ public record Project(
     }
 
     private static Project validateAndReturn(Project project) throws IOException {
-        var violations = VALIDATOR.validate(project)
-                .stream()
-                .map(Project::describeViolation)
-                .collect(Collectors.joining(", "));
+        var violations = ProjectValidator.validate("", project);
 
         if (!violations.isEmpty()) {
-            throw new IOException("Failed validation because " + violations);
+            throw new IOException("Failed validation because " + String.join(", ", violations));
         }
 
         return project;
     }
 
-    private static <T> String describeViolation(ConstraintViolation<T> violation) {
-        return String.format("'%s' %s", violation.getPropertyPath(), violation.getMessage());
-    }
-
     private static ObjectMapper buildMapper() {
         return JsonMapper.builder()
                 .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
@@ -172,10 +186,4 @@ public record Project(
                 .addModule(new ProjectModule())
                 .build();
     }
-
-    private static Validator buildValidator() {
-        try (var factory = Validation.buildDefaultValidatorFactory()) {
-            return factory.getValidator();
-        }
-    }
 }
@@ -0,0 +1,298 @@
+/*
+ * Copyright (c) 2024 Mike Cowan.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+
+package io.blt.gregbot.core.project;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectReader;
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static io.blt.gregbot.core.project.Project.Client;
+import static io.blt.gregbot.core.project.Project.Collection;
+import static io.blt.gregbot.core.project.Project.Environment;
+import static io.blt.gregbot.core.project.Project.Identity;
+import static io.blt.gregbot.core.project.Project.MAPPER;
+import static io.blt.gregbot.core.project.Project.Secret;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * Loads a {@link Project} one section at a time, for projects too large to bind and validate in a single pass.
+ * <p>
+ * Where {@link Project#loadFromJson(InputStream)} binds the whole file before validating the whole graph, this:
+ *     <ol>
+ *         <li>Streams the top level sections, binding each as it is reached</li>
+ *         <li>Validates each collection as soon as it is bound and passes it to the {@link Listener}</li>
+ *         <li>Validates the remaining sections once the file has been read, throwing on failure</li>
+ *     </ol>
+ * So collections can be shown before the secrets, environments and identities have been validated.
+ * Validation failures are described exactly as by {@link Project#loadFromJson(InputStream)}.
+ * </p>
+ */
+public final class ProjectLoader {
+
+    public static final String CLIENT = "client";
+    public static final String SECRETS = "secrets";
+    public static final String ENVIRONMENTS = "environments";
+    public static final String IDENTITIES = "identities";
+    public static final String COLLECTIONS = "collections";
+
+    private static final ObjectReader CLIENT_READER = MAPPER.readerFor(Client.class);
+    private static final ObjectReader COLLECTION_READER = MAPPER.readerFor(Collection.class);
+    private static final ObjectReader SECRETS_READER = mapReaderFor(Secret.class);
+    private static final ObjectReader ENVIRONMENTS_READER = mapReaderFor(Environment.class);
+    private static final ObjectReader IDENTITIES_READER = mapReaderFor(Identity.class);
+
+    /**
+     * A minimal project with every section, loaded by {@link #prepare()}.
+     */
+    private static final String WARM_UP_PROJECT = """
+            {
+              "client": { "version": "HTTP_2", "redirect": "NORMAL", "connectionTimeout": 1, "requestTimeout": 1 },
+              "secrets": { "s": { "plugin": { "type": "s", "properties": { "k": "v" } } } },
+              "environments": { "e": { "variables": { "k": "v" } } },
+              "identities": {
+                "i": { "secrets": "s", "variables": { "k": "v" }, "plugin": { "type": "i", "properties": {} } }
+              },
+              "collections": {
+                "c": {
+                  "requests": { "r": { "headers": { "k": "v" }, "verb": "GET", "path": "/" } },
+                  "layout": { "requests": [ "r" ], "folders": { "f": { "requests": [], "folders": {} } } }
+                }
+              }
+            }
+            """;
+
+    private ProjectLoader() {
+        throw new IllegalAccessError("Utility class should be accessed statically and never constructed");
+    }
+
+    /**
+     * Returns an instance of {@link Project} created from a JSON resource file, loaded section by section.
+     *
+     * @param stream   resource file to load
+     * @param listener notified as each collection and section is loaded
+     * @return instance of {@link Project} with the time taken to load each section
+     * @throws IOException if the stream cannot be read or there is a validation failure
+     */
+    public static Loaded loadFromJson(InputStream stream, Listener listener) throws IOException {
+        return new Load(listener).run(stream);
+    }
+
+    /**
+     * Warms up loading ahead of the first load, e.g. on a background thread while starting.
+     * Calling this is optional, as otherwise the first load does the same work.
+     * <p>
+     * Warms up:
+     *     <ul>
+     *         <li>{@link Project#MAPPER} with {@link ProjectModule} registered, built as {@link Project} is
+     *         initialised</li>
+     *         <li>the reader for each section and with it its deserializers, built as this class is initialised</li>
+     *         <li>the JSON parser, the binding of every section and {@link ProjectValidator}, by loading a minimal
+     *         project that uses each reader</li>
+     *     </ul>
+     * </p>
+     */
+    public static void prepare() {
+        try {
+            loadFromJson(new ByteArrayInputStream(WARM_UP_PROJECT.getBytes(StandardCharsets.UTF_8)), new Listener() {});
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to load the warm up project", e);
+        }
+    }
+
+    /**
+     * Overload of {@link ProjectLoader#loadFromJson(InputStream, Listener)} that loads from a file.
+     *
+     * @param filename file to load
+     * @param listener notified as each collection and section is loaded
+     * @return instance of {@link Project} with the time taken to load each section
+     * @throws IOException if the file cannot be read or there is a validation failure
+     */
+    public static Loaded loadFromJson(String filename, Listener listener) throws IOException {
+        try (var stream = new FileInputStream(filename)) {
+            return loadFromJson(stream, listener);
+        }
+    }
+
+    /**
+     * Notified from the loading thread as the project is loaded.
+     */
+    public interface Listener {
+
+        /**
+         * Called once {@code collection} has been bound and validated, in the order they appear in the file.
+         *
+         * @param name       collection name
+         * @param collection the validated collection
+         */
+        default void collectionLoaded(String name, Collection collection) {}
+
+        /**
+         * Called once {@code section} has been bound and validated.
+         *
+         * @param section name of the section e.g. {@link ProjectLoader#COLLECTIONS}
+         * @param elapsed time taken to bind and validate the section
+         */
+        default void sectionLoaded(String section, Duration elapsed) {}
+
+    }
+
+    /**
+     * A loaded project with the time taken.
+     *
+     * @param project  the loaded project
+     * @param sections time taken to bind and validate each section present in the file, in the order they appear
+     * @param elapsed  time taken to load the whole project
+     */
+    public record Loaded(Project project, Map<String, Duration> sections, Duration elapsed) {}
+
+    private static final class Load {
+
+        private final Listener listener;
+        private final Map<String, Long> nanos = new LinkedHashMap<>();
+
+        private Client client;
+        private Map<String, Secret> secrets = Map.of();
+        private Map<String, Environment> environments = Map.of();
+        private Map<String, Identity> identities = Map.of();
+        private Map<String, Collection> collections = Map.of();
+
+        Load(Listener listener) {
+            this.listener = listener;
+        }
+
+        Loaded run(InputStream stream) throws IOException {
+            var start = System.nanoTime();
+
+            try (var parser = MAPPER.createParser(stream)) {
+                if (parser.nextToken() != JsonToken.START_OBJECT) {
+                    throw new JsonParseException(parser, "Expected project to be a JSON object");
+                }
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    var section = parser.currentName();
+                    parser.nextToken();
+                    readSection(parser, section);
+                }
+            }
+
+            var violations = new ArrayList<String>();
+            if (isNull(client)) {
+                violations.add("'client' must not be null");
+            }
+            validateSection(CLIENT, () -> violations.addAll(ProjectValidator.validate(CLIENT, client)));
+            validateSection(SECRETS, () -> validateEntries(SECRETS, secrets, violations));
+            validateSection(ENVIRONMENTS, () -> validateEntries(ENVIRONMENTS, environments, violations));
+            validateSection(IDENTITIES, () -> validateEntries(IDENTITIES, identities, violations));
+            throwIfViolated(violations);
+
+            var project = new Project(client, secrets, environments, identities, collections);
+            var sections = new LinkedHashMap<String, Duration>();
+            nanos.forEach((section, elapsed) -> sections.put(section, Duration.ofNanos(elapsed)));
+
+            return new Loaded(
+                    project,
+                    Collections.unmodifiableMap(sections),
+                    Duration.ofNanos(System.nanoTime() - start));
+        }
+
+        private void readSection(JsonParser parser, String section) throws IOException {
+            var start = System.nanoTime();
+
+            switch (section) {
+                case CLIENT -> client = CLIENT_READER.readValue(parser);
+                case SECRETS -> secrets = SECRETS_READER.readValue(parser);
+                case ENVIRONMENTS -> environments = ENVIRONMENTS_READER.readValue(parser);
+                case IDENTITIES -> identities = IDENTITIES_READER.readValue(parser);
+                case COLLECTIONS -> collections = readCollections(parser);
+                default -> {
+                    parser.skipChildren();
+                    return;
+                }
+            }
+
+            nanos.put(section, System.nanoTime() - start);
+            if (section.equals(COLLECTIONS)) {
+                listener.sectionLoaded(section, Duration.ofNanos(nanos.get(section)));
+            }
+        }
+
+        private Map<String, Collection> readCollections(JsonParser parser) throws IOException {
+            if (parser.currentToken() == JsonToken.VALUE_NULL) {
+                return Map.of();
+            }
+            if (parser.currentToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Expected collections to be a JSON object");
+            }
+
+            var result = new LinkedHashMap<String, Collection>();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                var name = parser.currentName();
+                parser.nextToken();
+                var collection = COLLECTION_READER.<Collection>readValue(parser);
+
+                var violations = new ArrayList<String>();
+                validateEntry(COLLECTIONS, name, collection, violations);
+                throwIfViolated(violations);
+
+                result.put(name, collection);
+                if (nonNull(collection)) {
+                    listener.collectionLoaded(name, collection);
+                }
+            }
+            return Collections.unmodifiableMap(result);
+        }
+
+        private void validateSection(String section, Runnable validation) {
+            if (!nanos.containsKey(section)) {
+                validation.run();
+                return;
+            }
+
+            var start = System.nanoTime();
+            validation.run();
+            var elapsed = nanos.merge(section, System.nanoTime() - start, Long::sum);
+            listener.sectionLoaded(section, Duration.ofNanos(elapsed));
+        }
+
+    }
+
+    private static <V> void validateEntries(String section, Map<String, V> entries, List<String> violations) {
+        entries.forEach((name, value) -> validateEntry(section, name, value, violations));
+    }
+
+    private static <V> void validateEntry(String section, String name, V value, List<String> violations) {
+        if (isNull(name) || name.isEmpty()) {
+            violations.add(String.format("'%s<K>[].<map key>' must not be empty", section));
+        }
+        violations.addAll(ProjectValidator.validate(section + "[" + name + "]", value));
+    }
+
+    private static void throwIfViolated(List<String> violations) throws IOException {
+        if (!violations.isEmpty()) {
+            throw new IOException("Failed validation because " + String.join(", ", violations));
+        }
+    }
+
+    private static ObjectReader mapReaderFor(Class<?> valueType) {
+        return MAPPER.readerFor(MAPPER.getTypeFactory().constructMapType(Map.class, String.class, valueType));
+    }
+
+}
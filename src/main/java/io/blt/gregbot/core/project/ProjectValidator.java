@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2024 Mike Cowan.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+
+package io.blt.gregbot.core.project;
+
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static io.blt.gregbot.core.project.Project.Client;
+import static io.blt.gregbot.core.project.Project.Collection;
+import static io.blt.gregbot.core.project.Project.Collection.Folder;
+import static io.blt.gregbot.core.project.Project.Collection.Request;
+import static io.blt.gregbot.core.project.Project.Environment;
+import static io.blt.gregbot.core.project.Project.Identity;
+import static io.blt.gregbot.core.project.Project.Plugin;
+import static io.blt.gregbot.core.project.Project.Secret;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * Validates {@link Project} records, describing each violation as {@code 'path' message}.
+ * <p>
+ * By default the checks are written out by hand, mirroring the constraint annotations on the records, so no time is
+ * spent bootstrapping Hibernate Validator and introspecting the records on start up.
+ * The annotations remain the specification; set the system property {@value #MODE_PROPERTY} to
+ * {@value #ANNOTATIONS} to validate using them instead.
+ * </p>
+ */
+final class ProjectValidator {
+
+    static final String MODE_PROPERTY = "gregbot.validation";
+    static final String ANNOTATIONS = "annotations";
+
+    private static final String NOT_NULL = "must not be null";
+    private static final String NOT_EMPTY = "must not be empty";
+    private static final String POSITIVE = "must be greater than 0";
+
+    private final List<String> violations = new ArrayList<>();
+
+    private ProjectValidator() {}
+
+    /**
+     * Validates {@code value}, one of the {@link Project} records, describing each violation by its path from the
+     * {@link Project}.
+     *
+     * @param path  path of {@code value} from the {@link Project}, or empty if it is the {@link Project}
+     * @param value the record to validate
+     * @return description of each violation, or empty if valid
+     */
+    static List<String> validate(String path, Object value) {
+        if (ANNOTATIONS.equals(System.getProperty(MODE_PROPERTY))) {
+            return validateUsingAnnotations(path, value);
+        }
+
+        var validator = new ProjectValidator();
+        validator.validateRecord(path, value);
+        return validator.violations;
+    }
+
+    private void validateRecord(String path, Object value) {
+        if (value instanceof Project project) {
+            validateProject(path, project);
+        } else if (value instanceof Client client) {
+            validateClient(path, client);
+        } else if (value instanceof Secret secret) {
+            validateSecret(path, secret);
+        } else if (value instanceof Environment environment) {
+            validateEnvironment(path, environment);
+        } else if (value instanceof Identity identity) {
+            validateIdentity(path, identity);
+        } else if (value instanceof Collection collection) {
+            validateCollection(path, collection);
+        } else if (value instanceof Request request) {
+            validateRequest(path, request);
+        } else if (value instanceof Folder folder) {
+            validateFolder(path, folder);
+        } else if (value instanceof Plugin plugin) {
+            validatePlugin(path, plugin);
+        } else if (nonNull(value)) {
+            throw new IllegalArgumentException("Cannot validate " + value.getClass().getName());
+        }
+    }
+
+    private void validateProject(String path, Project project) {
+        if (notNull(path, "client", project.client())) {
+            validateClient(join(path, "client"), project.client());
+        }
+        validateRecords(path, "secrets", project.secrets());
+        validateRecords(path, "environments", project.environments());
+        validateRecords(path, "identities", project.identities());
+        validateRecords(path, "collections", project.collections());
+    }
+
+    private void validateClient(String path, Client client) {
+        notNull(path, "version", client.version());
+        notNull(path, "redirect", client.redirect());
+        positive(path, "connectionTimeout", client.connectionTimeout());
+        positive(path, "requestTimeout", client.requestTimeout());
+        positive(path, "maxConcurrentStreams", client.maxConcurrentStreams());
+        positive(path, "executorThreads", client.executorThreads());
+    }
+
+    private void validateSecret(String path, Secret secret) {
+        if (notNull(path, "plugin", secret.plugin())) {
+            validatePlugin(join(path, "plugin"), secret.plugin());
+        }
+    }
+
+    private void validateEnvironment(String path, Environment environment) {
+        validateKeys(path, "variables", environment.variables());
+    }
+
+    private void validateIdentity(String path, Identity identity) {
+        validateKeys(path, "variables", identity.variables());
+        if (nonNull(identity.plugin())) {
+            validatePlugin(join(path, "plugin"), identity.plugin());
+        }
+    }
+
+    private void validateCollection(String path, Collection collection) {
+        validateRecords(path, "requests", collection.requests());
+        if (notNull(path, "layout", collection.layout())) {
+            validateFolder(join(path, "layout"), collection.layout());
+        }
+    }
+
+    private void validateRequest(String path, Request request) {
+        validateKeys(path, "headers", request.headers());
+        notNull(path, "verb", request.verb());
+        notEmpty(path, "path", request.path());
+    }
+
+    private void validateFolder(String path, Folder folder) {
+        notNull(path, "requests", folder.requests());
+        validateRecords(path, "folders", folder.folders());
+    }
+
+    private void validatePlugin(String path, Plugin plugin) {
+        notEmpty(path, "type", plugin.type());
+        validateKeys(path, "properties", plugin.properties());
+    }
+
+    /**
+     * Validates a {@code @Valid @NotNull Map<@NotEmpty String, ?>} and each of its non-null values.
+     */
+    private void validateRecords(String path, String property, Map<String, ?> map) {
+        if (validateKeys(path, property, map)) {
+            var mapPath = join(path, property);
+            map.forEach((key, value) -> validateRecord(mapPath + "[" + key + "]", value));
+        }
+    }
+
+    /**
+     * Validates a {@code @NotNull Map<@NotEmpty String, ?>}, returning {@code true} if it is not null.
+     */
+    private boolean validateKeys(String path, String property, Map<String, ?> map) {
+        if (!notNull(path, property, map)) {
+            return false;
+        }
+        for (var key : map.keySet()) {
+            if (isNull(key) || key.isEmpty()) {
+                add(join(path, property) + "<K>[].<map key>", NOT_EMPTY);
+            }
+        }
+        return true;
+    }
+
+    private boolean notNull(String path, String property, Object value) {
+        if (isNull(value)) {
+            add(join(path, property), NOT_NULL);
+            return false;
+        }
+        return true;
+    }
+
+    private void notEmpty(String path, String property, String value) {
+        if (isNull(value) || value.isEmpty()) {
+            add(join(path, property), NOT_EMPTY);
+        }
+    }
+
+    private void positive(String path, String property, Integer value) {
+        if (nonNull(value) && value <= 0) {
+            add(join(path, property), POSITIVE);
+        }
+    }
+
+    private void add(String path, String message) {
+        violations.add(String.format("'%s' %s", path, message));
+    }
+
+    private static String join(String path, String property) {
+        return path.isEmpty() ? property : path + "." + property;
+    }
+
+    private static List<String> validateUsingAnnotations(String path, Object value) {
+        if (isNull(value)) {
+            return List.of();
+        }
+
+        var prefix = path.isEmpty() ? "" : path + ".";
+        return Annotations.VALIDATOR.validate(value)
+                .stream()
+                .map(v -> String.format("'%s%s' %s", prefix, v.getPropertyPath(), v.getMessage()))
+                .toList();
+    }
+
+    /**
+     * Holds the Hibernate Validator, so it is only bootstrapped if used.
+     */
+    private static final class Annotations {
+
+        private static final Validator VALIDATOR = buildValidator();
+
+        private static Validator buildValidator() {
+            try (var factory = Validation.buildDefaultValidatorFactory()) {
+                return factory.getValidator();
+            }
+        }
+
+    }
+
+}
@@ -14,15 +14,28 @@ import io.blt.gregbot.core.plugin.SecretRenderer;
 import io.blt.gregbot.core.project.Project;
 import io.blt.gregbot.core.project.Project.Identity;
 import io.blt.gregbot.core.project.Project.Secret;
+import io.blt.gregbot.core.utils.ThreadUtils;
 import io.blt.gregbot.plugin.PluginException;
 import io.blt.gregbot.plugin.identities.IdentityPlugin;
 import io.blt.gregbot.plugin.secrets.SecretPlugin;
 import io.blt.util.Ctr;
 import io.blt.util.Ex;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import static java.util.Objects.isNull;
 import static java.util.Objects.nonNull;
@@ -30,13 +43,23 @@ import static java.util.Objects.nonNull;
 /**
  * Manages the loading of identity plugins.
  * This includes loading and rendering any secrets.
+ * <p>
+ *     Safe for use by concurrent callers. Different identities are loaded in parallel, while concurrent calls that
+ *     need the same identity or secret plugin share a single load, e.g. one OIDC login rather than one per caller.
+ * </p>
+ * <p>
+ *     Plugins may hold resources, e.g. a token refreshed in the background, so {@link #close()} the service once it is
+ *     replaced.
+ * </p>
  */
-public class IdentityService {
+public class IdentityService implements AutoCloseable {
+
+    private final Logger log = LoggerFactory.getLogger(IdentityService.class);
 
     private final Map<String, Secret> secrets;
     private final Map<String, Identity> identities;
-    private final Map<Secret, SecretRenderer> secretRenderers = new HashMap<>();
-    private final Map<Identity, IdentityPlugin> identityPlugins = new HashMap<>();
+    private final Map<Secret, CompletableFuture<SecretRenderer>> secretRenderers = new ConcurrentHashMap<>();
+    private final Map<Identity, CompletableFuture<IdentityPlugin>> identityPlugins = new ConcurrentHashMap<>();
     private final PluginLoader<SecretPlugin> secretLoader = new PluginLoader<>(SecretPlugin.class);
     private final PluginLoader<IdentityPlugin> identityLoader = new PluginLoader<>(IdentityPlugin.class);
 
@@ -56,8 +79,7 @@ public class IdentityService {
      * @throws NoSuchElementException   if an identity, secret or plugin cannot be found
      */
     public Map<String, String> variablesFor(String identity) throws IdentityServiceException {
-        var i = Ex.throwIf(identities.get(identity), Objects::isNull,
-                () -> new NoSuchElementException("Cannot find identity for '%s'".formatted(identity)));
+        var i = findIdentity(identity);
 
         var variables = new HashMap<>(i.variables());
 
@@ -72,8 +94,166 @@ public class IdentityService {
         return variables;
     }
 
+    /**
+     * Fetches every secret referenced by the plugin properties of all identities, ahead of them being loaded.
+     * Each secret plugin receives all of its paths at once, so they can be fetched together rather than one at a time.
+     *
+     * @throws IdentityServiceException if a secret plugin cannot be loaded or the secrets cannot be fetched
+     * @throws NoSuchElementException   if an identity references an unknown secret plugin
+     */
+    public void prefetchSecrets() throws IdentityServiceException {
+        prefetchSecrets(identities.values());
+    }
+
+    /**
+     * Fetches every secret referenced by the plugin properties of the specified identity, ahead of it being loaded.
+     *
+     * @param identity Identity to fetch secrets for
+     * @throws IdentityServiceException if a secret plugin cannot be loaded or the secrets cannot be fetched
+     * @throws NoSuchElementException   if an identity or secret plugin cannot be found
+     */
+    public void prefetchSecrets(String identity) throws IdentityServiceException {
+        prefetchSecrets(List.of(findIdentity(identity)));
+    }
+
+    private void prefetchSecrets(Collection<Identity> identities) throws IdentityServiceException {
+        var templates = new LinkedHashMap<Secret, List<String>>();
+        for (var identity : identities) {
+            if (nonNull(identity.secrets()) && nonNull(identity.plugin())) {
+                templates.computeIfAbsent(findSecret(identity), s -> new ArrayList<>())
+                        .addAll(identity.plugin().properties().values());
+            }
+        }
+
+        try {
+            for (var entry : templates.entrySet()) {
+                getOrComputeSecretRenderer(entry.getKey()).prefetch(entry.getValue());
+            }
+        } catch (PluginException | SecretRenderException e) {
+            throw new IdentityServiceException(e);
+        }
+    }
+
+    /**
+     * Loads every identity, or only those in {@code category}, concurrently so the first request using each does not
+     * wait on logins or token requests.
+     * <p>
+     *     The secrets referenced by the identities are first prefetched, each secret plugin in parallel, and every
+     *     identity is loaded once its secrets have been fetched. A failure to load an identity is reported in its
+     *     {@link WarmUp} rather than failing the others, and is thrown again when its variables are next requested.
+     * </p>
+     *
+     * @param category only load identities in this category, or {@code null} to load all
+     * @param listener notified from a background thread as each identity completes
+     * @return a future of the result of each identity, completed once all have completed
+     */
+    public CompletableFuture<List<WarmUp>> warmUp(String category, WarmUpListener listener) {
+        var selected = identities.entrySet()
+                .stream()
+                .filter(e -> isNull(category) || category.equals(e.getValue().category()))
+                .map(Map.Entry::getKey)
+                .toList();
+
+        var executor = ThreadUtils.newTaskExecutor();
+        var prefetched = prefetchSecretsAsync(selected, executor);
+        var completed = new AtomicInteger();
+
+        var futures = selected.stream()
+                .map(name -> prefetched.getOrDefault(secretNameFor(name), CompletableFuture.completedFuture(null))
+                        .thenApplyAsync(v -> warmUp(name), executor)
+                        .exceptionally(e -> new WarmUp(name, Duration.ZERO, asException(e)))
+                        .whenComplete((result, e) ->
+                                notifyQuietly(listener, result, completed.incrementAndGet(), selected.size())))
+                .toList();
+
+        return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new))
+                .thenApply(v -> futures.stream().map(CompletableFuture::join).toList())
+                .whenComplete((results, e) -> executor.shutdown());
+    }
+
+    /**
+     * Closes every loaded plugin that is {@link AutoCloseable}, and any still loading once they have loaded.
+     * The service should not be used afterwards.
+     */
+    @Override
+    public void close() {
+        identityPlugins.values().forEach(f -> f.thenAccept(this::closeQuietly));
+        secretRenderers.values().forEach(f -> f.thenAccept(renderer -> closeQuietly(renderer.plugin())));
+    }
+
+    private void closeQuietly(Object plugin) {
+        if (plugin instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                log.warn("Failed to close plugin {}", plugin.getClass().getName(), e);
+            }
+        }
+    }
+
+    private Map<String, CompletableFuture<Void>> prefetchSecretsAsync(List<String> selected, Executor executor) {
+        var templatesBySecret = new LinkedHashMap<String, List<String>>();
+        for (var name : selected) {
+            var identity = identities.get(name);
+            if (nonNull(identity.plugin()) && nonNull(secretNameFor(name))) {
+                templatesBySecret.computeIfAbsent(identity.secrets(), s -> new ArrayList<>())
+                        .addAll(identity.plugin().properties().values());
+            }
+        }
+
+        var prefetched = new HashMap<String, CompletableFuture<Void>>();
+        templatesBySecret.forEach((name, templates) ->
+                prefetched.put(name, CompletableFuture.runAsync(() -> prefetchQuietly(name, templates), executor)));
+        return prefetched;
+    }
+
+    private void prefetchQuietly(String name, List<String> templates) {
+        try {
+            getOrComputeSecretRenderer(secrets.get(name)).prefetch(templates);
+        } catch (PluginException | SecretRenderException | RuntimeException e) {
+            // Loading the identities that use these secrets fails for the same reason, which is reported there
+            log.warn("Failed to prefetch secrets for '{}'", name, e);
+        }
+    }
+
+    private void notifyQuietly(WarmUpListener listener, WarmUp result, int completed, int total) {
+        try {
+            listener.identityWarmedUp(result, completed, total);
+        } catch (RuntimeException e) {
+            log.error("Warm up listener failed for '{}'", result.identity(), e);
+        }
+    }
+
+    private static Exception asException(Throwable e) {
+        var cause = e instanceof CompletionException && nonNull(e.getCause()) ? e.getCause() : e;
+        return cause instanceof Exception exception ? exception : new CompletionException(cause);
+    }
+
+    /**
+     * Returns the name of the secrets used by {@code identity}, or {@code null} if it uses none or they are unknown.
+     */
+    private String secretNameFor(String identity) {
+        var name = identities.get(identity).secrets();
+        return nonNull(name) && secrets.containsKey(name) ? name : null;
+    }
+
+    private WarmUp warmUp(String identity) {
+        var start = System.nanoTime();
+        try {
+            variablesFor(identity);
+            return new WarmUp(identity, Duration.ofNanos(System.nanoTime() - start), null);
+        } catch (IdentityServiceException | RuntimeException e) {
+            return new WarmUp(identity, Duration.ofNanos(System.nanoTime() - start), e);
+        }
+    }
+
+    private Identity findIdentity(String identity) {
+        return Ex.throwIf(identities.get(identity), Objects::isNull,
+                () -> new NoSuchElementException("Cannot find identity for '%s'".formatted(identity)));
+    }
+
     private IdentityPlugin getOrComputeIdentityPlugin(Identity identity) throws IdentityServiceException {
-        return Ctr.computeIfAbsent(identityPlugins, identity, i ->
+        return loadOnce(identityPlugins, identity, i ->
                 Ex.transformExceptions(
                         () -> loadIdentityPlugin(i),
                         IdentityServiceException::new));
@@ -104,11 +284,75 @@ public class IdentityService {
     }
 
     private SecretRenderer getOrComputeSecretRenderer(Secret secret) throws PluginException {
-        return Ctr.computeIfAbsent(secretRenderers, secret, s -> new SecretRenderer(loadSecretPlugin(s)));
+        return loadOnce(secretRenderers, secret, s -> new SecretRenderer(loadSecretPlugin(s)));
     }
 
     private SecretPlugin loadSecretPlugin(Secret secret) throws PluginException {
         return secretLoader.load(secret.plugin());
     }
 
+    /**
+     * Returns the value for {@code key}, calling {@code loader} only if no other caller has loaded, or is loading, it.
+     * The load runs on the calling thread outside any lock, so loads for different keys proceed in parallel.
+     * A failed load is not retained, so the next call will try again.
+     */
+    @SuppressWarnings("unchecked")
+    private static <K, V, E extends Exception> V loadOnce(
+            Map<K, CompletableFuture<V>> loaded, K key, Loader<K, V, E> loader) throws E {
+        var future = new CompletableFuture<V>();
+        var existing = loaded.putIfAbsent(key, future);
+
+        if (isNull(existing)) {
+            try {
+                var value = loader.load(key);
+                future.complete(value);
+                return value;
+            } catch (Throwable e) {
+                loaded.remove(key, future);
+                future.completeExceptionally(e);
+                throw e;
+            }
+        }
+
+        try {
+            return existing.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw (E) e.getCause();
+        }
+    }
+
+    @FunctionalInterface
+    private interface Loader<K, V, E extends Exception> {
+        V load(K key) throws E;
+    }
+
+    /**
+     * Notified as each identity is warmed up.
+     */
+    @FunctionalInterface
+    public interface WarmUpListener {
+        void identityWarmedUp(WarmUp result, int completed, int total);
+    }
+
+    /**
+     * The outcome of warming up an identity.
+     *
+     * @param identity name of the identity
+     * @param elapsed  time taken to load the identity once its secrets were fetched
+     * @param error    why the identity failed to load, or {@code null} if it loaded
+     */
+    public record WarmUp(String identity, Duration elapsed, Exception error) {
+
+        public boolean succeeded() {
+            return isNull(error);
+        }
+
+    }
+
 }
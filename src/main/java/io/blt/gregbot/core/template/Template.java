@@ -0,0 +1,288 @@
+/*
+ * Copyright (c) 2024 Mike Cowan.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+
+package io.blt.gregbot.core.template;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static java.util.Objects.isNull;
+
+/**
+ * A template compiled once into a list of literal and token segments, so it can be rendered any number of times
+ * without re-parsing.
+ * <p>
+ * Supported tokens:
+ * <ul>
+ *     <li>{@link Token#VARIABLE} - {@code {{name}}} e.g. environment and identity variables</li>
+ *     <li>{@link Token#SECRET} - {@code [path/key]} e.g. values fetched from a secret plugin</li>
+ * </ul>
+ * Only the token types passed to {@link #compile(String, Token...)} are recognised, anything else is literal text.
+ * A token cannot be empty or span lines.
+ * </p>
+ * <pre>{@code
+ * var template = Template.compile("{{host}}/terminators/{{model}}", Token.VARIABLE);
+ * var path = template.render(variables::get);
+ * }</pre>
+ */
+public final class Template {
+
+    public enum Token {
+        VARIABLE,
+        SECRET
+    }
+
+    /**
+     * Provides values for {@link Token#VARIABLE} tokens while rendering.
+     *
+     * @param <E> exception thrown when a value cannot be resolved
+     */
+    @FunctionalInterface
+    public interface VariableResolver<E extends Exception> {
+        String variable(String name) throws E;
+    }
+
+    /**
+     * Provides values for {@link Token#SECRET} tokens while rendering.
+     *
+     * @param <E> exception thrown when a value cannot be resolved
+     */
+    @FunctionalInterface
+    public interface SecretResolver<E extends Exception> {
+        String secret(String path, String key) throws E;
+    }
+
+    private interface Segment {
+        <E extends Exception> void appendTo(
+                StringBuilder builder, VariableResolver<E> variables, SecretResolver<E> secrets) throws E;
+    }
+
+    private record Literal(String text) implements Segment {
+        @Override
+        public <E extends Exception> void appendTo(
+                StringBuilder builder, VariableResolver<E> variables, SecretResolver<E> secrets) {
+            builder.append(text);
+        }
+    }
+
+    private record Variable(String name) implements Segment {
+        @Override
+        public <E extends Exception> void appendTo(
+                StringBuilder builder, VariableResolver<E> variables, SecretResolver<E> secrets) throws E {
+            builder.append(variables.variable(name));
+        }
+    }
+
+    private record Secret(String path, String key) implements Segment {
+        @Override
+        public <E extends Exception> void appendTo(
+                StringBuilder builder, VariableResolver<E> variables, SecretResolver<E> secrets) throws E {
+            builder.append(secrets.secret(path, key));
+        }
+    }
+
+    private final String source;
+    private final Segment[] segments;
+    private final int literalLength;
+    private final boolean hasVariables;
+    private final boolean hasSecrets;
+
+    private Template(String source, List<Segment> segments) {
+        this.source = source;
+        this.segments = segments.toArray(Segment[]::new);
+        this.hasVariables = segments.stream().anyMatch(Variable.class::isInstance);
+        this.hasSecrets = segments.stream().anyMatch(Secret.class::isInstance);
+        this.literalLength = segments.stream()
+                .filter(Literal.class::isInstance)
+                .mapToInt(s -> ((Literal) s).text().length())
+                .sum();
+    }
+
+    /**
+     * Compiles {@code source} recognising only the specified token types.
+     *
+     * @param source the template text
+     * @param tokens token types to recognise
+     * @return the compiled template
+     * @throws TemplateException    if a recognised token is malformed e.g. a secret without a key
+     * @throws NullPointerException if {@code source} is {@code null}
+     */
+    public static Template compile(String source, Token... tokens) throws TemplateException {
+        var types = tokens.length == 0 ? EnumSet.noneOf(Token.class) : EnumSet.of(tokens[0], tokens);
+        var variables = types.contains(Token.VARIABLE);
+        var secrets = types.contains(Token.SECRET);
+
+        var segments = new ArrayList<Segment>();
+        var literalStart = 0;
+        var i = 0;
+
+        while (i < source.length()) {
+            var c = source.charAt(i);
+            int end;
+
+            if (variables && c == '{' && source.startsWith("{{", i) && (end = close(source, i + 2, "}}")) != -1) {
+                addLiteral(segments, source, literalStart, i);
+                segments.add(new Variable(source.substring(i + 2, end)));
+                i = literalStart = end + 2;
+            } else if (secrets && c == '[' && (end = close(source, i + 1, "]")) != -1) {
+                addLiteral(segments, source, literalStart, i);
+                segments.add(parseSecret(source.substring(i + 1, end)));
+                i = literalStart = end + 1;
+            } else {
+                i++;
+            }
+        }
+
+        addLiteral(segments, source, literalStart, source.length());
+
+        return new Template(source, segments);
+    }
+
+    /**
+     * Renders this template, which must not contain secret tokens, using {@code variables} to provide their values.
+     *
+     * @param variables provides variable values
+     * @param <E>       exception thrown by {@code variables}
+     * @return the rendered text
+     * @throws E                     if {@code variables} cannot provide a value
+     * @throws IllegalStateException if this template contains secret tokens
+     */
+    public <E extends Exception> String render(VariableResolver<E> variables) throws E {
+        return render(variables, null);
+    }
+
+    /**
+     * Renders this template, which must not contain variable tokens, using {@code secrets} to provide their values.
+     *
+     * @param secrets provides secret values
+     * @param <E>     exception thrown by {@code secrets}
+     * @return the rendered text
+     * @throws E                     if {@code secrets} cannot provide a value
+     * @throws IllegalStateException if this template contains variable tokens
+     */
+    public <E extends Exception> String render(SecretResolver<E> secrets) throws E {
+        return render(null, secrets);
+    }
+
+    /**
+     * Renders this template using {@code variables} and {@code secrets} to provide a value for each token.
+     * Either may be {@code null} when this template contains no tokens of that type.
+     *
+     * @param variables provides variable values
+     * @param secrets   provides secret values
+     * @param <E>       exception thrown by {@code variables} or {@code secrets}
+     * @return the rendered text
+     * @throws E                     if {@code variables} or {@code secrets} cannot provide a value
+     * @throws IllegalStateException if this template contains a token type without a resolver
+     */
+    public <E extends Exception> String render(VariableResolver<E> variables, SecretResolver<E> secrets) throws E {
+        if (isLiteral()) {
+            return source;
+        }
+        if (hasVariables && isNull(variables)) {
+            throw new IllegalStateException("Template contains variables but has no variable resolver : " + source);
+        }
+        if (hasSecrets && isNull(secrets)) {
+            throw new IllegalStateException("Template contains secrets but has no secret resolver : " + source);
+        }
+
+        var builder = new StringBuilder(literalLength + 16 * segments.length);
+        for (var segment : segments) {
+            segment.appendTo(builder, variables, secrets);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Returns {@code true} if this template contains no tokens and so always renders as {@link #source()}.
+     *
+     * @return {@code true} if there are no tokens
+     */
+    public boolean isLiteral() {
+        return segments.length == 0 || (segments.length == 1 && segments[0] instanceof Literal);
+    }
+
+    /**
+     * Returns the names of all variables referenced by this template, in order of first appearance.
+     *
+     * @return variable names
+     */
+    public Set<String> variables() {
+        var names = new LinkedHashSet<String>();
+        for (var segment : segments) {
+            if (segment instanceof Variable variable) {
+                names.add(variable.name());
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Returns the paths of all secrets referenced by this template, in order of first appearance.
+     *
+     * @return secret paths
+     */
+    public Set<String> secretPaths() {
+        var paths = new LinkedHashSet<String>();
+        for (var segment : segments) {
+            if (segment instanceof Secret secret) {
+                paths.add(secret.path());
+            }
+        }
+        return paths;
+    }
+
+    public String source() {
+        return source;
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+
+    private static int close(String source, int from, String terminator) {
+        for (var i = from; i < source.length(); i++) {
+            if (i > from && source.startsWith(terminator, i)) {
+                return i;
+            }
+            if (isLineTerminator(source.charAt(i))) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    private static Secret parseSecret(String token) throws TemplateException {
+        var index = token.lastIndexOf('/');
+        if (index == -1) {
+            throw new TemplateException("Token must be of the form '[path/key]'. Missing '/' : " + token);
+        }
+        if (index == 0) {
+            throw new TemplateException("Token must be of the form '[path/key]'. Missing 'path/' : " + token);
+        }
+        if (index == token.length() - 1) {
+            throw new TemplateException("Token must be of the form '[path/key]'. Missing '/key' : " + token);
+        }
+        return new Secret(token.substring(0, index), token.substring(index + 1));
+    }
+
+    private static void addLiteral(List<Segment> segments, String source, int start, int end) {
+        if (start < end) {
+            segments.add(new Literal(source.substring(start, end)));
+        }
+    }
+
+}
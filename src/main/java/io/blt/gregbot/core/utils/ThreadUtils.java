@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2024 Mike Cowan.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+
+package io.blt.gregbot.core.utils;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+public final class ThreadUtils {
+
+    private ThreadUtils() {
+        throw new IllegalAccessError("Utility class should be accessed statically and never constructed");
+    }
+
+    /**
+     * Returns an {@link ExecutorService} that starts a new thread for each task.
+     * <p>
+     *     When running on Java 21 or later the threads are virtual, so blocking I/O is cheap and callers only need to
+     *     bound concurrency themselves. On earlier runtimes this falls back to a cached pool of platform threads.
+     * </p>
+     *
+     * @return a new thread-per-task {@link ExecutorService}
+     */
+    public static ExecutorService newTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    /**
+     * Returns an {@link ExecutorService} that runs each task on an idle thread, or a new one while fewer than
+     * {@code maxThreads} are busy.
+     * <p>
+     *     Tasks are never queued, so once {@code maxThreads} tasks are running any further task is rejected with a
+     *     {@link java.util.concurrent.RejectedExecutionException} rather than waiting or adding another thread.
+     * </p>
+     *
+     * @param maxThreads the most tasks to run at once
+     * @return a new bounded {@link ExecutorService}
+     */
+    public static ExecutorService newBoundedTaskExecutor(int maxThreads) {
+        return new ThreadPoolExecutor(0, maxThreads, 60L, TimeUnit.SECONDS, new SynchronousQueue<>());
+    }
+
+}
@@ -8,33 +8,86 @@
 
 package io.blt.gregbot.plugin.connector;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import io.blt.util.Ex;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.URLEncoder;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
+import static java.util.Objects.isNull;
 import static java.util.Objects.nonNull;
 import static org.apache.commons.lang3.ObjectUtils.requireNonEmpty;
 
 public class Connector {
 
-    private static final HttpClient CLIENT = HttpClient.newBuilder().build();
+    public static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(30);
+
+    private static final HttpClient CLIENT = HttpClient.newBuilder()
+            .connectTimeout(DEFAULT_CONNECT_TIMEOUT)
+            .build();
 
     private static final ObjectMapper MAPPER = new ObjectMapper().findAndRegisterModules();
 
+    // A ClassValue, unlike a map keyed by class, does not keep plugin classes and their class loaders reachable
+    private static final ClassValue<ObjectReader> READERS = new ClassValue<>() {
+        @Override
+        protected ObjectReader computeValue(Class<?> type) {
+            return MAPPER.readerFor(type);
+        }
+    };
+
     private final String host;
+    private final HttpClient client;
+    private final boolean compression;
+    private final TransferMetrics transferMetrics = new TransferMetrics();
 
     public Connector(String host) {
+        this(host, CLIENT);
+    }
+
+    /**
+     * Creates a connector that sends using {@code client} rather than the client shared by all other connectors,
+     * e.g. to use a different executor or connect timeout.
+     *
+     * @param host   the host that paths are relative to
+     * @param client the client to send requests with
+     */
+    public Connector(String host, HttpClient client) {
+        this(host, client, false);
+    }
+
+    /**
+     * Creates a connector that, when {@code compression} is set, accepts compressed responses and decodes them as they
+     * arrive, so every send method sees the decoded body.
+     *
+     * @param host        the host that paths are relative to
+     * @param client      the client to send requests with
+     * @param compression whether to negotiate {@code gzip} and {@code deflate} responses
+     * @see ContentEncoding
+     */
+    public Connector(String host, HttpClient client, boolean compression) {
         requireNonEmpty(host, "'host' must not be empty");
+        this.client = Objects.requireNonNull(client, "'client' must not be null");
+        this.compression = compression;
 
         var lastCharIndex = host.length() - 1;
         this.host = host.charAt(lastCharIndex) == '/' ? host.substring(0, lastCharIndex) : host;
@@ -48,11 +101,172 @@ public class Connector {
 
     public <T> Result<T> send(HttpRequest request, Class<T> responseType) throws IOException {
         var result = Ex.transformExceptions(
-                () -> CLIENT.send(request, HttpResponse.BodyHandlers.ofByteArray()),
+                () -> client.send(withEncoding(request), withDecoding(HttpResponse.BodyHandlers.ofByteArray())),
                 toIoException());
         return new Result<>(result, responseType);
     }
 
+    /**
+     * Sends {@code request}, decoding the JSON response body as it arrives rather than first holding all of it.
+     * <p>
+     *     Decoding happens on the caller's thread, so a slow body never ties up the client's I/O threads.
+     *     The response body is consumed by decoding, so the result has no {@link Result#getResponse() response}.
+     * </p>
+     *
+     * @param request      the request to send
+     * @param responseType the type to decode a JSON response body into, or {@code null} to discard it
+     * @param <T>          the type to decode a JSON response body into
+     * @return the result
+     * @throws IOException if the request fails or the connection fails while reading the body
+     */
+    public <T> Result<T> sendStreamed(HttpRequest request, Class<T> responseType) throws IOException {
+        HttpResponse.BodyHandler<Decoder<T>> handler = info -> decodingSubscriber(responseType);
+
+        var response = Ex.transformExceptions(
+                () -> client.send(withEncoding(request), withDecoding(handler)),
+                toIoException());
+
+        // The body must be read now to release the connection, so decoding cannot wait until the data is wanted
+        var result = new Result<>(response, null, response.body());
+        var error = result.getDecodeError();
+        if (error.isPresent() && !(error.get() instanceof JsonProcessingException)) {
+            throw error.get();
+        }
+        return result;
+    }
+
+    /**
+     * Sends {@code request}, spilling the response body to {@code file} from which the JSON is decoded on demand.
+     * The raw body is never held in memory and remains in {@code file}, which is {@link Result#getBodyFile()}, for
+     * the caller to process further and remove. The result has no {@link Result#getResponse() response}.
+     *
+     * @param request      the request to send
+     * @param responseType the type to decode a JSON response body into, or {@code null} to not decode it
+     * @param file         where to write the response body, replacing any existing file
+     * @param <T>          the type to decode a JSON response body into
+     * @return the result
+     * @throws IOException if the request fails or the body cannot be written to {@code file}
+     */
+    public <T> Result<T> sendToFile(HttpRequest request, Class<T> responseType, Path file) throws IOException {
+        var response = Ex.transformExceptions(
+                () -> client.send(withEncoding(request), withDecoding(HttpResponse.BodyHandlers.ofFile(file))),
+                toIoException());
+
+        return new Result<>(response, response.body(), () -> isNull(responseType)
+                ? null
+                : decodeStream(Files.newInputStream(response.body()), responseType));
+    }
+
+    public <T> CompletableFuture<Result<T>> sendAsync(HttpRequest request) {
+        return sendAsync(request, null);
+    }
+
+    /**
+     * Sends {@code request} without blocking the caller.
+     * <p>
+     *     The future completes on the default async pool rather than on the client's I/O threads, so dependent
+     *     stages that decode the response body never block them.
+     *     Cancelling the returned future, or it completing exceptionally e.g. by timing out, cancels the exchange.
+     * </p>
+     *
+     * @param request      the request to send
+     * @param responseType the type to decode a JSON response body into, or {@code null} to not decode it
+     * @param <T>          the type to decode a JSON response body into
+     * @return a future of the result
+     */
+    public <T> CompletableFuture<Result<T>> sendAsync(HttpRequest request, Class<T> responseType) {
+        var exchange = client.sendAsync(
+                withEncoding(request),
+                withDecoding(HttpResponse.BodyHandlers.ofByteArray()));
+        var result = exchange.thenApplyAsync(response -> new Result<>(response, responseType));
+
+        result.whenComplete((r, e) -> {
+            if (nonNull(e)) {
+                exchange.cancel(true);
+            }
+        });
+
+        return result;
+    }
+
+    /**
+     * Sends {@code request} without blocking the caller, completing exceptionally with a
+     * {@link java.util.concurrent.TimeoutException} if there is no result within {@code timeout}.
+     *
+     * @see #sendAsync(HttpRequest, Class)
+     */
+    public <T> CompletableFuture<Result<T>> sendAsync(HttpRequest request, Class<T> responseType, Duration timeout) {
+        return sendAsync(request, responseType)
+                .orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Waits for {@code future}, unwrapping its failure to the {@link IOException} a blocking call would have thrown.
+     *
+     * @param future the future to wait for
+     * @param <T>    the type of result
+     * @return the result
+     * @throws IOException if the future failed or the caller is interrupted
+     */
+    public static <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            var cause = e.getCause();
+            if (cause instanceof IOException io) {
+                throw io;
+            }
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IOException(cause);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+
+    private static <T> HttpResponse.BodySubscriber<Decoder<T>> decodingSubscriber(Class<T> type) {
+        if (isNull(type)) {
+            return HttpResponse.BodySubscribers.<Decoder<T>>replacing(() -> null);
+        }
+        // Mapping to a decoder, rather than decoding here, keeps blocking reads off the client's I/O threads
+        return HttpResponse.BodySubscribers.mapping(
+                HttpResponse.BodySubscribers.ofInputStream(),
+                body -> () -> decodeStream(body, type));
+    }
+
+    /**
+     * Decodes JSON from {@code body} using Jackson's streaming parser, closing it when done.
+     */
+    private static <T> T decodeStream(InputStream body, Class<T> type) throws IOException {
+        try (body) {
+            return decode(MAPPER.createParser(body), type);
+        }
+    }
+
+    /**
+     * Decodes JSON using a reader cached for {@code type}, where an empty body decodes to {@code null}.
+     */
+    private static <T> T decode(JsonParser parser, Class<T> type) throws IOException {
+        try (parser) {
+            return isNull(parser.nextToken()) ? null : READERS.get(type).readValue(parser);
+        }
+    }
+
+    /**
+     * Returns the response body bytes received on the wire and once decoded, recorded when compression is enabled.
+     *
+     * @return live transfer metrics
+     */
+    public TransferMetrics transferMetrics() {
+        return transferMetrics;
+    }
+
     public URI uriForPath(String path) {
         return URI.create(host + (path.charAt(0) == '/' ? path : "/" + path));
     }
@@ -71,60 +285,137 @@ public class Connector {
         return URLEncoder.encode(string, StandardCharsets.UTF_8);
     }
 
+    private HttpRequest withEncoding(HttpRequest request) {
+        return compression ? ContentEncoding.accepting(request) : request;
+    }
+
+    private <T> HttpResponse.BodyHandler<T> withDecoding(HttpResponse.BodyHandler<T> handler) {
+        return compression ? ContentEncoding.decoding(handler, transferMetrics) : handler;
+    }
+
     private Function<? super Exception, IOException> toIoException() {
         return e -> e instanceof IOException ? (IOException) e : new IOException(e);
     }
 
+    /**
+     * Decodes a response body, returning {@code null} if there is nothing to decode.
+     */
+    @FunctionalInterface
+    private interface Decoder<T> {
+        T decode() throws IOException;
+    }
+
+    /**
+     * A response whose JSON body is decoded lazily, on the first call to {@link #getData()},
+     * {@link #successData()} or {@link #getDecodeError()}, and then remembered.
+     * Checking only the status, e.g. on an error path, therefore never parses the body.
+     */
     public static class Result<T> {
-        private final HttpResponse<byte[]> response;
-        private final T data;
+        private final HttpResponse<?> response;
+        private final HttpResponse<byte[]> buffered;
+        private final Path bodyFile;
+        private Decoder<T> decoder;
+        private T data;
+        private IOException decodeError;
 
         protected Result(HttpResponse<byte[]> response, Class<T> type) {
             this.response = response;
-            this.data = decodeResponseElseNull(response, type);
+            this.buffered = response;
+            this.bodyFile = null;
+            this.decoder = () -> isNull(type) || response.body().length == 0
+                    ? null
+                    : decode(MAPPER.createParser(response.body()), type);
+        }
+
+        private Result(HttpResponse<?> response, Path bodyFile, Decoder<T> decoder) {
+            this.response = response;
+            this.buffered = null;
+            this.bodyFile = bodyFile;
+            this.decoder = decoder;
         }
 
+        /**
+         * Returns the response and its body, as received by {@link #send(HttpRequest, Class)} or
+         * {@link #sendAsync(HttpRequest, Class)}.
+         *
+         * @return the response
+         * @throws IllegalStateException if the body was streamed or written to a file rather than held in memory,
+         *                               in which case use {@link #getStatusCode()} and {@link #getBodyFile()}
+         */
         public HttpResponse<byte[]> getResponse() {
-            return response;
+            if (isNull(buffered)) {
+                throw new IllegalStateException("Response body was not held in memory");
+            }
+            return buffered;
+        }
+
+        public int getStatusCode() {
+            return response.statusCode();
         }
 
-        public Optional<T> getData() {
+        /**
+         * Returns the file the body was written to by {@link #sendToFile(HttpRequest, Class, Path)}.
+         *
+         * @return the file holding the body, or empty if the body was not written to a file
+         */
+        public Optional<Path> getBodyFile() {
+            return Optional.ofNullable(bodyFile);
+        }
+
+        /**
+         * Returns the decoded body, or empty if there is no body, no type to decode it to or it failed to decode.
+         *
+         * @return the decoded body
+         */
+        public synchronized Optional<T> getData() {
+            decodeOnce();
             return Optional.ofNullable(data);
         }
 
+        /**
+         * Returns why the body failed to decode, e.g. because it was not JSON or did not match the type.
+         *
+         * @return the decode failure, or empty if the body decoded or there was nothing to decode
+         */
+        public synchronized Optional<IOException> getDecodeError() {
+            decodeOnce();
+            return Optional.ofNullable(decodeError);
+        }
+
         public boolean is1xxInformational() {
-            return response.statusCode() / 100 == 1;
+            return getStatusCode() / 100 == 1;
         }
 
         public boolean is2xxSuccess() {
-            return response.statusCode() / 100 == 2;
+            return getStatusCode() / 100 == 2;
         }
 
         public boolean is3xxRedirection() {
-            return response.statusCode() / 100 == 3;
+            return getStatusCode() / 100 == 3;
         }
 
         public boolean is4xxClientError() {
-            return response.statusCode() / 100 == 4;
+            return getStatusCode() / 100 == 4;
         }
 
         public boolean is5xxServerError() {
-            return response.statusCode() / 100 == 5;
+            return getStatusCode() / 100 == 5;
         }
 
         public Optional<T> successData() {
             return is2xxSuccess() ? getData() : Optional.empty();
         }
 
-        private T decodeResponseElseNull(HttpResponse<byte[]> response, Class<T> type) {
-            return nonNull(type) ? tryDecodeAsJson(response, type).orElse(null) : null;
-        }
-
-        private Optional<T> tryDecodeAsJson(HttpResponse<byte[]> response, Class<T> type) {
+        private void decodeOnce() {
+            if (isNull(decoder)) {
+                return;
+            }
             try {
-                return Optional.of(MAPPER.readValue(response.body(), type));
+                data = decoder.decode();
             } catch (IOException e) {
-                return Optional.empty();
+                decodeError = e;
+            } finally {
+                decoder = null;
             }
         }
     }
@@ -0,0 +1,299 @@
+/*
+ * Copyright (c) 2024 Mike Cowan.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+
+package io.blt.gregbot.plugin.connector;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * Negotiates compressed responses and transparently decodes them as they arrive.
+ * <p>
+ *     The JDK {@link java.net.http.HttpClient} neither asks for nor decodes compressed responses.
+ *     Requests sent with {@link #ACCEPT} may receive a {@code gzip} or {@code deflate} body, which
+ *     {@link #decoding(HttpResponse.BodyHandler, TransferMetrics)} inflates chunk by chunk before handing it on, so the
+ *     compressed body is never held in full. The response headers still describe the body as it was on the wire.
+ * </p>
+ */
+public final class ContentEncoding {
+
+    public static final String ACCEPT = "gzip, deflate";
+
+    private static final int CHUNK_BYTES = 16 * 1024;
+
+    private static final int GZIP_FIXED_HEADER_BYTES = 10;
+    private static final int GZIP_FEXTRA = 4;
+    private static final int GZIP_FNAME = 8;
+    private static final int GZIP_FCOMMENT = 16;
+    private static final int GZIP_FHCRC = 2;
+
+    private ContentEncoding() {
+        throw new IllegalAccessError("Utility class should be accessed statically and never constructed");
+    }
+
+    /**
+     * Returns a copy of {@code request} that accepts compressed responses, unless it already states what it accepts.
+     *
+     * @param request the request to copy
+     * @return a request that accepts compressed responses
+     */
+    public static HttpRequest accepting(HttpRequest request) {
+        if (request.headers().firstValue("Accept-Encoding").isPresent()) {
+            return request;
+        }
+        return HttpRequest.newBuilder(request, (name, value) -> true)
+                .header("Accept-Encoding", ACCEPT)
+                .build();
+    }
+
+    /**
+     * Wraps {@code handler} so it receives the body decoded according to the response {@code Content-Encoding}.
+     * Bodies with no, or an unsupported, encoding are passed through unchanged.
+     *
+     * @param handler the handler to receive the decoded body
+     * @param metrics records the size of each body on the wire and once decoded
+     * @param <T>     the response body type
+     * @return a handler that decodes the body
+     */
+    public static <T> HttpResponse.BodyHandler<T> decoding(HttpResponse.BodyHandler<T> handler,
+                                                           TransferMetrics metrics) {
+        return info -> {
+            var encoding = info.headers()
+                    .firstValue("Content-Encoding")
+                    .map(e -> e.trim().toLowerCase(Locale.ROOT))
+                    .orElse("");
+
+            var format = switch (encoding) {
+                case "gzip", "x-gzip" -> Format.GZIP;
+                case "deflate" -> Format.DEFLATE;
+                default -> Format.IDENTITY;
+            };
+
+            return new DecodingSubscriber<>(handler.apply(info), format, metrics);
+        };
+    }
+
+    private enum Format {
+        IDENTITY,
+        GZIP,
+        DEFLATE
+    }
+
+    private static final class DecodingSubscriber<T> implements HttpResponse.BodySubscriber<T> {
+
+        private final HttpResponse.BodySubscriber<T> downstream;
+        private final Format format;
+        private final TransferMetrics metrics;
+
+        private Flow.Subscription subscription;
+        private ByteArrayOutputStream gzipHeader;
+        private Inflater inflater;
+        private long wireBytes;
+        private long decodedBytes;
+        private boolean failed;
+
+        DecodingSubscriber(HttpResponse.BodySubscriber<T> downstream, Format format, TransferMetrics metrics) {
+            this.downstream = downstream;
+            this.format = format;
+            this.metrics = metrics;
+            this.gzipHeader = format == Format.GZIP ? new ByteArrayOutputStream() : null;
+        }
+
+        @Override
+        public CompletionStage<T> getBody() {
+            return downstream.getBody();
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            downstream.onSubscribe(subscription);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> items) {
+            if (failed) {
+                return;
+            }
+
+            try {
+                var decoded = new ArrayList<ByteBuffer>(items.size());
+                for (var item : items) {
+                    wireBytes += item.remaining();
+                    decode(item, decoded);
+                }
+                if (decoded.isEmpty()) {
+                    // Nothing to pass on yet, e.g. only part of the header, so ask for more in its place
+                    subscription.request(1);
+                    return;
+                }
+                for (var buffer : decoded) {
+                    decodedBytes += buffer.remaining();
+                }
+                downstream.onNext(decoded);
+            } catch (IOException e) {
+                failed = true;
+                subscription.cancel();
+                release();
+                downstream.onError(e);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            release();
+            if (!failed) {
+                downstream.onError(throwable);
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            if (failed) {
+                return;
+            }
+            release();
+            metrics.record(format != Format.IDENTITY, wireBytes, decodedBytes);
+            downstream.onComplete();
+        }
+
+        private void decode(ByteBuffer item, List<ByteBuffer> decoded) throws IOException {
+            if (format == Format.IDENTITY) {
+                decoded.add(item);
+                return;
+            }
+
+            var input = nonNull(gzipHeader) ? skipGzipHeader(item) : item;
+            if (isNull(input) || !input.hasRemaining()) {
+                return;
+            }
+
+            if (isNull(inflater)) {
+                inflater = new Inflater(format == Format.GZIP || !isZlibWrapped(input));
+            }
+            if (inflater.finished()) {
+                // The gzip trailer, which is not verified as the transport already guards integrity
+                return;
+            }
+
+            inflater.setInput(input);
+            try {
+                while (true) {
+                    var chunk = new byte[CHUNK_BYTES];
+                    var length = inflater.inflate(chunk);
+                    if (length > 0) {
+                        decoded.add(ByteBuffer.wrap(chunk, 0, length));
+                    } else if (inflater.finished() || inflater.needsInput()) {
+                        return;
+                    } else {
+                        throw new ZipException("Compressed body requires a preset dictionary");
+                    }
+                }
+            } catch (DataFormatException e) {
+                throw new ZipException("Invalid compressed body: " + e.getMessage());
+            }
+        }
+
+        /**
+         * Buffers {@code item} until the gzip header is complete, returning whatever follows it.
+         */
+        private ByteBuffer skipGzipHeader(ByteBuffer item) throws ZipException {
+            var bytes = new byte[item.remaining()];
+            item.get(bytes);
+            gzipHeader.writeBytes(bytes);
+
+            var buffered = gzipHeader.toByteArray();
+            var length = gzipHeaderLength(buffered);
+            if (length < 0) {
+                return null;
+            }
+
+            gzipHeader = null;
+            return ByteBuffer.wrap(buffered, length, buffered.length - length);
+        }
+
+        private void release() {
+            if (nonNull(inflater)) {
+                inflater.end();
+            }
+        }
+
+    }
+
+    /**
+     * Returns the length of the gzip header at the start of {@code bytes}, or {@code -1} if it is incomplete.
+     */
+    private static int gzipHeaderLength(byte[] bytes) throws ZipException {
+        if (bytes.length < GZIP_FIXED_HEADER_BYTES) {
+            return -1;
+        }
+        if ((bytes[0] & 0xff) != 0x1f || (bytes[1] & 0xff) != 0x8b || bytes[2] != 8) {
+            throw new ZipException("Body is not in gzip format");
+        }
+
+        var flags = bytes[3] & 0xff;
+        var position = GZIP_FIXED_HEADER_BYTES;
+
+        if ((flags & GZIP_FEXTRA) != 0) {
+            if (bytes.length < position + 2) {
+                return -1;
+            }
+            position += 2 + ((bytes[position] & 0xff) | (bytes[position + 1] & 0xff) << 8);
+        }
+        if ((flags & GZIP_FNAME) != 0) {
+            position = skipZeroTerminated(bytes, position);
+        }
+        if ((flags & GZIP_FCOMMENT) != 0) {
+            position = skipZeroTerminated(bytes, position);
+        }
+        if ((flags & GZIP_FHCRC) != 0 && position >= 0) {
+            position += 2;
+        }
+
+        return position >= 0 && position <= bytes.length ? position : -1;
+    }
+
+    private static int skipZeroTerminated(byte[] bytes, int position) {
+        if (position < 0) {
+            return -1;
+        }
+        for (var i = position; i < bytes.length; i++) {
+            if (bytes[i] == 0) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * HTTP {@code deflate} should be zlib wrapped, but some servers send raw deflate data, so check the zlib header.
+     */
+    private static boolean isZlibWrapped(ByteBuffer input) {
+        if (input.remaining() < 2) {
+            return true;
+        }
+        var first = input.get(input.position()) & 0xff;
+        var second = input.get(input.position() + 1) & 0xff;
+        return (first & 0x0f) == 8 && ((first << 8) | second) % 31 == 0;
+    }
+
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2024 Mike Cowan.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+
+package io.blt.gregbot.plugin.connector;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts response body bytes as transferred on the wire and once decoded, showing what compression saves.
+ * An instance is safe to update from many threads.
+ */
+public class TransferMetrics {
+
+    private final LongAdder responses = new LongAdder();
+    private final LongAdder compressedResponses = new LongAdder();
+    private final LongAdder wireBytes = new LongAdder();
+    private final LongAdder decodedBytes = new LongAdder();
+
+    /**
+     * Records a fully received response body.
+     *
+     * @param compressed   whether the body was compressed on the wire
+     * @param wireBytes    size of the body as received
+     * @param decodedBytes size of the body once decoded
+     */
+    public void record(boolean compressed, long wireBytes, long decodedBytes) {
+        responses.increment();
+        if (compressed) {
+            compressedResponses.increment();
+        }
+        this.wireBytes.add(wireBytes);
+        this.decodedBytes.add(decodedBytes);
+    }
+
+    public long responses() {
+        return responses.sum();
+    }
+
+    public long compressedResponses() {
+        return compressedResponses.sum();
+    }
+
+    public long wireBytes() {
+        return wireBytes.sum();
+    }
+
+    public long decodedBytes() {
+        return decodedBytes.sum();
+    }
+
+    /**
+     * Returns decoded bytes per wire byte, e.g. {@code 5.0} when bodies shrank to a fifth on the wire.
+     *
+     * @return the compression ratio, or {@code 1.0} before any bytes are received
+     */
+    public double compressionRatio() {
+        var wire = wireBytes();
+        return wire == 0 ? 1.0 : (double) decodedBytes() / wire;
+    }
+
+}
@@ -13,11 +13,14 @@ import io.blt.gregbot.plugin.identities.IdentityException;
 import io.blt.gregbot.plugin.identities.IdentityPlugin;
 import io.blt.gregbot.plugin.identities.adobe.connector.ImsConnector;
 import io.blt.gregbot.plugin.identities.adobe.connector.ImsServiceConnector;
+import io.blt.gregbot.plugin.tokens.TokenStore;
 import io.blt.util.Ex;
 import java.util.Map;
 import java.util.Objects;
 
-public class AdobeIms implements IdentityPlugin {
+import static java.util.Objects.nonNull;
+
+public class AdobeIms implements IdentityPlugin, AutoCloseable {
 
     private enum Type {
         SERVICE
@@ -37,14 +40,31 @@ public class AdobeIms implements IdentityPlugin {
                 var secret = requireProperty(properties, "secret");
                 var code = requireProperty(properties, "code");
                 var scope = properties.getOrDefault("scope", "");
+                var refreshAt = Double.parseDouble(properties.getOrDefault(
+                        "refreshAt", String.valueOf(ImsServiceConnector.DEFAULT_REFRESH_AT)));
 
-                connector = Ex.transformExceptions(
-                        () -> new ImsServiceConnector(host, id, secret, code, scope),
+                var loaded = Ex.transformExceptions(
+                        () -> new ImsServiceConnector(
+                                host, id, secret, code, scope, refreshAt, TokenStore.forProperties(properties)),
                         e -> new PluginException("Failed to authenticate using " + host, e));
+
+                // Reloading replaces the connector, so stop the old one refreshing a token that is no longer used
+                close();
+                connector = loaded;
             }
         }
     }
 
+    /**
+     * Stops the connector refreshing its token in the background.
+     */
+    @Override
+    public void close() {
+        if (nonNull(connector)) {
+            connector.close();
+        }
+    }
+
     @Override
     public Map<String, String> variables() throws IdentityException {
         var token = Ex.transformExceptions(
@@ -9,9 +9,31 @@
 package io.blt.gregbot.plugin.identities.adobe.connector;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
 
-public interface ImsConnector {
+public interface ImsConnector extends AutoCloseable {
 
     String token() throws IOException;
 
+    /**
+     * Returns the access token without blocking the caller where the connector supports it.
+     * By default this calls {@link #token()} on the caller's thread.
+     *
+     * @return a future of the access token
+     */
+    default CompletableFuture<String> tokenAsync() {
+        try {
+            return CompletableFuture.completedFuture(token());
+        } catch (IOException | RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Releases anything held to keep the token fresh, e.g. a scheduled background refresh.
+     * By default there is nothing to release.
+     */
+    @Override
+    default void close() {}
+
 }
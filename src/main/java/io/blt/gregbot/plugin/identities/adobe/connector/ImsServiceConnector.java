@@ -10,76 +10,322 @@ package io.blt.gregbot.plugin.identities.adobe.connector;
 
 import io.blt.gregbot.plugin.connector.Connector;
 import io.blt.gregbot.plugin.identities.adobe.connector.dto.Token;
+import io.blt.gregbot.plugin.tokens.TokenStore;
 import java.io.IOException;
 import java.net.http.HttpRequest;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * Issues an IMS access token using a service authorization code and keeps it fresh.
+ * <p>
+ *     The token is refreshed in the background once {@code refreshAt} of its lifetime has passed (default
+ *     {@code 0.8}), so callers of {@link #token()} get the current token without waiting on IMS.
+ *     A background refresh only starts the request, so a slow IMS host never holds up the scheduler shared by every
+ *     connector. A failed background refresh is retried with jittered exponential backoff, unless IMS rejected it
+ *     (a {@code 4xx} other than {@code 408} or {@code 429}, e.g. revoked credentials) as retrying cannot succeed.
+ *     A rejected refresh token is dropped and a new token issued using the authorization code instead, as when
+ *     connecting; only if that is rejected too does refreshing stop.
+ *     Should the token expire regardless, {@link #token()} refreshes it on the caller's thread.
+ * </p>
+ * <p>
+ *     {@link #close()} stops refreshing in the background.
+ * </p>
+ * <p>
+ *     The refresh token is kept in a {@link TokenStore}, so the next launch can refresh rather than issue a token.
+ * </p>
+ */
 public class ImsServiceConnector extends Connector implements ImsConnector {
 
-    private final String id;
-    private final String secret;
-    private final String code;
-    private final String scope;
+    public static final double DEFAULT_REFRESH_AT = 0.8;
+
+    private static final String TOKEN_TYPE = "ims";
+
+    private static final long MIN_RETRY_MILLIS = 1_000;
+    private static final long MAX_RETRY_MILLIS = 60_000;
+
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        var thread = new Thread(r, "ims-token-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
 
-    private Token token;
-    private long expiresAt;
+    private final Logger log = LoggerFactory.getLogger(ImsServiceConnector.class);
+
+    private final Credentials credentials;
+    private final double refreshAt;
+    private final TokenStore tokens;
+    private final String tokenKey;
+    private final ScheduledExecutorService scheduler;
+
+    private volatile Issued issued;
+    private CompletableFuture<Void> refreshing;
+    private ScheduledFuture<?> scheduledRefresh;
+    private boolean closed;
 
     public ImsServiceConnector(String host, String id, String secret, String code, String scope) throws IOException {
+        this(host, id, secret, code, scope, DEFAULT_REFRESH_AT, TokenStore.disabled());
+    }
+
+    public ImsServiceConnector(String host, String id, String secret, String code, String scope, double refreshAt,
+                               TokenStore tokens) throws IOException {
+        this(host, id, secret, code, scope, refreshAt, tokens, SCHEDULER);
+    }
+
+    ImsServiceConnector(String host, String id, String secret, String code, String scope, double refreshAt,
+                        TokenStore tokens, ScheduledExecutorService scheduler) throws IOException {
+        this(host, new Credentials(id, secret, code, scope), refreshAt, tokens, scheduler);
+
+        await(connect());
+    }
+
+    private ImsServiceConnector(String host, Credentials credentials, double refreshAt, TokenStore tokens,
+                                ScheduledExecutorService scheduler) {
         super(host);
 
-        this.id = id;
-        this.secret = secret;
-        this.code = code;
-        this.scope = scope;
+        if (refreshAt <= 0 || refreshAt > 1) {
+            throw new IllegalArgumentException("refreshAt must be greater than 0 and at most 1 but was " + refreshAt);
+        }
+
+        this.credentials = credentials;
+        this.refreshAt = refreshAt;
+        this.tokens = tokens;
+        this.tokenKey = credentials.id() + "@" + host;
+        this.scheduler = scheduler;
+    }
 
-        issueAccessToken();
+    /**
+     * Connects without blocking the caller, so several connectors can authenticate at the same time.
+     *
+     * @return a future of a connector holding an access token
+     */
+    public static CompletableFuture<ImsServiceConnector> connectAsync(
+            String host, String id, String secret, String code, String scope, double refreshAt, TokenStore tokens) {
+        try {
+            var connector = new ImsServiceConnector(
+                    host, new Credentials(id, secret, code, scope), refreshAt, tokens, SCHEDULER);
+            return connector.connect().thenApply(v -> connector);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
     }
 
     @Override
     public String token() throws IOException {
-        if (System.currentTimeMillis() >= expiresAt) {
-            refreshAccessToken();
+        return await(tokenAsync());
+    }
+
+    @Override
+    public CompletableFuture<String> tokenAsync() {
+        var current = issued;
+        if (!current.isExpired()) {
+            return CompletableFuture.completedFuture(current.token().accessToken());
         }
 
-        return token.accessToken();
+        return refresh(false).thenApply(v -> issued.token().accessToken());
     }
 
-    private void issueAccessToken() throws IOException {
+    /**
+     * Stops refreshing the token in the background. The current token is still returned until it expires, after which
+     * {@link #token()} refreshes it on the caller's thread.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (nonNull(scheduledRefresh)) {
+            scheduledRefresh.cancel(false);
+        }
+    }
+
+    private CompletableFuture<Void> connect() {
+        var stored = tokens.get(TOKEN_TYPE, tokenKey);
+        if (stored.isEmpty()) {
+            return issueAccessToken();
+        }
+
+        return refreshAccessToken(stored.get())
+                .handle((v, e) -> {
+                    if (nonNull(e)) {
+                        log.debug("Stored IMS refresh token is no longer valid", e);
+                    }
+                    return isNull(e);
+                })
+                .thenCompose(refreshed -> refreshed ? CompletableFuture.completedFuture(null) : issueAccessToken());
+    }
+
+    /**
+     * Starts a refresh unless one is already in flight, in which case callers share it.
+     *
+     * @param force refresh even though the current token has not expired
+     */
+    private synchronized CompletableFuture<Void> refresh(boolean force) {
+        if (nonNull(refreshing) && !refreshing.isDone()) {
+            return refreshing;
+        }
+        if (!force && !issued.isExpired()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        var refreshToken = issued.token().refreshToken();
+        refreshing = isNull(refreshToken) ? issueAccessToken() : refreshOrIssueAccessToken(refreshToken);
+        return refreshing;
+    }
+
+    /**
+     * Refreshes using {@code refreshToken}, or issues a new token if IMS rejects it. A rejected refresh token is
+     * forgotten, so it is never sent again.
+     */
+    private CompletableFuture<Void> refreshOrIssueAccessToken(String refreshToken) {
+        return refreshAccessToken(refreshToken)
+                .handle((v, e) -> isNull(e) ? null : unwrap(e))
+                .thenCompose(cause -> {
+                    if (isNull(cause)) {
+                        return CompletableFuture.completedFuture(null);
+                    }
+                    if (!(cause instanceof RejectedException)) {
+                        return CompletableFuture.failedFuture(cause);
+                    }
+
+                    log.warn("IMS rejected the refresh token, issuing a new access token instead", cause);
+                    forgetRefreshToken();
+                    return issueAccessToken();
+                });
+    }
+
+    private void forgetRefreshToken() {
+        var current = issued;
+        var token = current.token();
+        issued = new Issued(
+                new Token(token.accessToken(), null, token.tokenType(), token.expiresIn()), current.expiresAt());
+        tokens.remove(TOKEN_TYPE, tokenKey);
+    }
+
+    private void refreshInBackground(long retryMillis) {
+        refresh(true).whenComplete((v, e) -> {
+            if (isNull(e)) {
+                return;
+            }
+
+            var cause = unwrap(e);
+            if (cause instanceof RejectedException) {
+                log.error("IMS rejected refreshing the access token, which will not be retried", cause);
+                return;
+            }
+
+            var next = Math.min(retryMillis * 2, MAX_RETRY_MILLIS);
+            var delay = ThreadLocalRandom.current().nextLong(next / 2, next + 1);
+            log.warn("Failed to refresh IMS access token, retrying in {} ms", delay, cause);
+            schedule(() -> refreshInBackground(next), delay);
+        });
+    }
+
+    private CompletableFuture<Void> issueAccessToken() {
         var request = HttpRequest.newBuilder()
                 .uri(uriForPath("/ims/token/v1"))
                 .header("Content-Type", "application/x-www-form-urlencoded")
                 .POST(formFromMap(Map.of(
-                        "client_id", id,
-                        "client_secret", secret,
-                        "code", code,
-                        "scope", scope,
+                        "client_id", credentials.id(),
+                        "client_secret", credentials.secret(),
+                        "code", credentials.code(),
+                        "scope", credentials.scope(),
                         "grant_type", "authorization_code")))
                 .build();
 
-        processResult(send(request, Token.class));
+        return sendAsync(request, Token.class).thenCompose(this::processResult);
     }
 
-    private void refreshAccessToken() throws IOException {
+    private CompletableFuture<Void> refreshAccessToken(String refreshToken) {
         var request = HttpRequest.newBuilder()
                 .uri(uriForPath("/ims/token/v1"))
                 .header("Content-Type", "application/x-www-form-urlencoded")
                 .POST(formFromMap(Map.of(
-                        "client_id", id,
-                        "client_secret", secret,
-                        "refresh_token", token.refreshToken(),
+                        "client_id", credentials.id(),
+                        "client_secret", credentials.secret(),
+                        "refresh_token", refreshToken,
                         "grant_type", "refresh_token")))
                 .build();
 
-        processResult(send(request, Token.class));
+        return sendAsync(request, Token.class).thenCompose(this::processResult);
     }
 
-    private void processResult(Result<Token> result) throws IOException {
+    private CompletableFuture<Void> processResult(Result<Token> result) {
         var now = System.currentTimeMillis();
 
-        token = result
-                .successData()
-                .orElseThrow(() -> new IOException("Failed to issue auth token"));
+        var data = result.successData();
+        if (data.isEmpty()) {
+            return CompletableFuture.failedFuture(isRejected(result)
+                    ? new RejectedException("Failed to issue auth token")
+                    : new IOException("Failed to issue auth token"));
+        }
+        var token = data.get();
+
+        // A refresh response may omit the refresh token, in which case the previous one remains valid
+        if (isNull(token.refreshToken()) && nonNull(issued)) {
+            token = new Token(token.accessToken(), issued.token().refreshToken(), token.tokenType(), token.expiresIn());
+        }
+
+        issued = new Issued(token, now + token.expiresIn());
+
+        if (nonNull(token.refreshToken())) {
+            tokens.put(TOKEN_TYPE, tokenKey, token.refreshToken());
+        }
+
+        schedule(() -> refreshInBackground(MIN_RETRY_MILLIS / 2), (long) (token.expiresIn() * refreshAt));
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private synchronized void schedule(Runnable refresh, long delayMillis) {
+        if (closed) {
+            return;
+        }
+        if (nonNull(scheduledRefresh)) {
+            scheduledRefresh.cancel(false);
+        }
+        scheduledRefresh = scheduler.schedule(refresh, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns {@code true} if IMS refused the request itself, rather than failing to handle it for now.
+     */
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && nonNull(e.getCause()) ? e.getCause() : e;
+    }
 
-        expiresAt = now + token.expiresIn();
+    private static boolean isRejected(Result<?> result) {
+        var status = result.getResponse().statusCode();
+        return result.is4xxClientError() && status != 408 && status != 429;
     }
+
+    private record Credentials(String id, String secret, String code, String scope) {}
+
+    /**
+     * IMS refused to issue a token for the credentials, so asking again will fail the same way.
+     */
+    private static final class RejectedException extends IOException {
+
+        private RejectedException(String message) {
+            super(message);
+        }
+
+    }
+
+    private record Issued(Token token, long expiresAt) {
+
+        boolean isExpired() {
+            return System.currentTimeMillis() >= expiresAt;
+        }
+
+    }
+
 }
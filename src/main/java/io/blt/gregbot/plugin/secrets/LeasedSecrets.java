@@ -0,0 +1,20 @@
+/*
+ * Copyright (c) 2024 Mike Cowan.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+
+package io.blt.gregbot.plugin.secrets;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Secrets for a single path along with how long they remain valid.
+ *
+ * @param secrets secret values keyed by name
+ * @param lease   how long the secrets may be used for, or {@code null} if the provider does not say
+ */
+public record LeasedSecrets(Map<String, String> secrets, Duration lease) {}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2024 Mike Cowan.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+
+package io.blt.gregbot.plugin.secrets;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A {@link SecretPlugin} that reports how long fetched secrets remain valid, e.g. a Vault lease duration.
+ * Callers use the lease to decide how long secrets can be cached before they must be fetched again.
+ */
+public interface LeasingSecretPlugin extends SecretPlugin {
+
+    LeasedSecrets leasedSecretsForPath(String path) throws SecretException;
+
+    /**
+     * Returns the leased secrets for each of {@code paths}, keyed by path.
+     * <p>
+     *     The default implementation calls {@link #leasedSecretsForPath(String)} for each path in turn.
+     * </p>
+     *
+     * @param paths distinct paths to fetch
+     * @return leased secrets keyed by path
+     * @throws SecretException if any path cannot be fetched
+     */
+    default Map<String, LeasedSecrets> leasedSecretsForPaths(Set<String> paths) throws SecretException {
+        var secrets = new HashMap<String, LeasedSecrets>();
+        for (var path : paths) {
+            secrets.put(path, leasedSecretsForPath(path));
+        }
+        return secrets;
+    }
+
+    @Override
+    default Map<String, String> secretsForPath(String path) throws SecretException {
+        return leasedSecretsForPath(path).secrets();
+    }
+
+    @Override
+    default Map<String, Map<String, String>> secretsForPaths(Set<String> paths) throws SecretException {
+        var secrets = new HashMap<String, Map<String, String>>();
+        leasedSecretsForPaths(paths).forEach((path, leased) -> secrets.put(path, leased.secrets()));
+        return secrets;
+    }
+
+}
@@ -9,10 +9,31 @@
 package io.blt.gregbot.plugin.secrets;
 
 import io.blt.gregbot.plugin.Plugin;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 public interface SecretPlugin extends Plugin {
 
     Map<String, String> secretsForPath(String path) throws SecretException;
 
+    /**
+     * Returns the secrets for each of {@code paths}, keyed by path.
+     * <p>
+     *     The default implementation calls {@link #secretsForPath(String)} for each path in turn. Implementations
+     *     should override this when they can fetch many paths concurrently or in a single round trip.
+     * </p>
+     *
+     * @param paths distinct paths to fetch
+     * @return secrets keyed by path
+     * @throws SecretException if any path cannot be fetched
+     */
+    default Map<String, Map<String, String>> secretsForPaths(Set<String> paths) throws SecretException {
+        var secrets = new HashMap<String, Map<String, String>>();
+        for (var path : paths) {
+            secrets.put(path, secretsForPath(path));
+        }
+        return secrets;
+    }
+
 }
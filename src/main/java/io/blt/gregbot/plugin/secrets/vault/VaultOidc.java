@@ -11,52 +11,172 @@ package io.blt.gregbot.plugin.secrets.vault;
 import com.bettercloud.vault.Vault;
 import com.bettercloud.vault.VaultConfig;
 import com.bettercloud.vault.VaultException;
+import io.blt.gregbot.plugin.secrets.LeasedSecrets;
+import io.blt.gregbot.plugin.secrets.LeasingSecretPlugin;
 import io.blt.gregbot.plugin.secrets.SecretException;
-import io.blt.gregbot.plugin.secrets.SecretPlugin;
 import io.blt.gregbot.plugin.secrets.vault.connector.VaultConnector;
 import io.blt.gregbot.plugin.secrets.vault.oidc.Oidc;
 import io.blt.gregbot.plugin.secrets.vault.oidc.OidcConfig;
+import io.blt.gregbot.plugin.tokens.TokenStore;
 import java.io.IOException;
+import java.time.Duration;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
-public class VaultOidc implements SecretPlugin {
+import static java.util.Objects.nonNull;
 
-    private Vault vault;
+public class VaultOidc implements LeasingSecretPlugin, AutoCloseable {
+
+    private static final String TOKEN_TYPE = "vault";
+
+    private VaultTokenRenewer renewer;
+    private ExecutorService reads;
 
     @Override
     public void load(Map<String, String> properties) throws SecretException {
         var host = Objects.requireNonNull(properties.get("host"), "must specify 'host' property");
         var engineVersion = Integer.valueOf(properties.getOrDefault("engine", "2"));
+        var concurrency = Integer.parseInt(properties.getOrDefault("concurrency", "8"));
+        if (concurrency < 1) {
+            throw new SecretException("Failed to load using properties: " + properties,
+                    new IllegalArgumentException("'concurrency' must be positive but was " + concurrency));
+        }
+        var renewAt = Double.parseDouble(properties.getOrDefault(
+                "renewAt", String.valueOf(VaultTokenRenewer.DEFAULT_RENEW_AT)));
 
+        var config = OidcConfig.from(properties);
         var connector = new VaultConnector(host);
+        var oidc = new Oidc(config, connector);
+        var tokens = TokenStore.forProperties(properties);
+        // A token is only valid for the auth mount and role it was issued by, e.g. "oidc/admin@https://vault.host"
+        var tokenKey = config.mount() + "/" + config.role() + "@" + host;
 
-        try {
-            var token = new Oidc(OidcConfig.from(properties), connector)
-                    .fetchAuthTokenUsingDesktopBrowse();
+        // Reloading replaces the renewer and read pool, so stop the old renewer renewing a token that is no longer
+        // used and let the old pool's threads exit once any reads already queued on it have finished
+        close();
+        reads = newReadPool(concurrency);
 
-            vault = new Vault(new VaultConfig()
-                    .address(host)
-                    .engineVersion(engineVersion)
-                    .token(token)
-                    .build());
+        try {
+            renewer = new VaultTokenRenewer(
+                    () -> {
+                        var token = oidc.fetchAuthTokenUsingDesktopBrowse();
+                        tokens.put(TOKEN_TYPE, tokenKey, token);
+                        return token;
+                    },
+                    token -> vaultFor(host, engineVersion, token),
+                    renewAt);
 
-            // Ensure the token is good
-            vault.auth().renewSelf();
+            // Ensures the token is good and keeps it renewed from then on, only logging in when there is no usable token
+            var stored = tokens.get(TOKEN_TYPE, tokenKey);
+            if (stored.isPresent()) {
+                renewer.resume(stored.get());
+            } else {
+                renewer.start();
+            }
         } catch (IOException | InterruptedException | TimeoutException | VaultException e) {
             throw new SecretException("Failed to load using properties: " + properties, e);
         }
     }
 
+    /**
+     * Reads {@code path}, reporting the Vault lease duration when the engine issues one (e.g. dynamic secrets).
+     */
     @Override
-    public Map<String, String> secretsForPath(String path) throws SecretException {
+    public LeasedSecrets leasedSecretsForPath(String path) throws SecretException {
         try {
-            return vault.logical()
-                    .read(path)
-                    .getData();
+            var response = renewer.vault().logical().read(path);
+            var lease = response.getLeaseDuration();
+            return new LeasedSecrets(
+                    response.getData(),
+                    nonNull(lease) && lease > 0 ? Duration.ofSeconds(lease) : null);
         } catch (VaultException e) {
             throw new SecretException("Failed to fetch a secret for path: " + path, e);
         }
     }
+
+    /**
+     * Reads {@code paths} concurrently, with up to {@code concurrency} reads in flight (property, default {@code 8}).
+     * The limit is shared by every call to this plugin, as all reads run on the same pool.
+     */
+    @Override
+    public Map<String, LeasedSecrets> leasedSecretsForPaths(Set<String> paths) throws SecretException {
+        if (paths.isEmpty()) {
+            return Map.of();
+        }
+
+        var futures = new HashMap<String, Future<LeasedSecrets>>();
+
+        try {
+            for (var path : paths) {
+                futures.put(path, reads.submit(() -> leasedSecretsForPath(path)));
+            }
+
+            var secrets = new HashMap<String, LeasedSecrets>();
+            for (var future : futures.entrySet()) {
+                secrets.put(future.getKey(), future.getValue().get());
+            }
+            return secrets;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SecretException cause) {
+                throw cause;
+            }
+            throw new SecretException("Failed to fetch secrets for paths: " + paths, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SecretException("Interrupted fetching secrets for paths: " + paths, e);
+        } finally {
+            futures.values().forEach(f -> f.cancel(true));
+        }
+    }
+
+    /**
+     * Stops renewing the token and shuts down the read pool once any queued reads have finished.
+     */
+    @Override
+    public void close() {
+        if (nonNull(renewer)) {
+            renewer.close();
+        }
+        if (nonNull(reads)) {
+            reads.shutdown();
+        }
+    }
+
+    /**
+     * Returns token renewal counters, e.g. to spot a session that keeps having to log in again.
+     */
+    public VaultTokenRenewer.Metrics tokenMetrics() {
+        return renewer.metrics();
+    }
+
+    private static ExecutorService newReadPool(int concurrency) {
+        var count = new AtomicInteger();
+        var pool = new ThreadPoolExecutor(concurrency, concurrency, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                r -> {
+                    var thread = new Thread(r, "vault-read-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        // Idle threads exit, so a plugin that is no longer used does not keep them
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    private static Vault vaultFor(String host, int engineVersion, String token) throws VaultException {
+        return new Vault(new VaultConfig()
+                .address(host)
+                .engineVersion(engineVersion)
+                .token(token)
+                .build());
+    }
 }
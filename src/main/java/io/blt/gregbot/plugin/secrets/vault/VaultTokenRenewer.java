@@ -0,0 +1,337 @@
+/*
+ * Copyright (c) 2024 Mike Cowan.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+
+package io.blt.gregbot.plugin.secrets.vault;
+
+import com.bettercloud.vault.Vault;
+import com.bettercloud.vault.VaultException;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static java.util.Objects.nonNull;
+
+/**
+ * Keeps a Vault client token alive for as long as the plugin is in use.
+ * <p>
+ *     The token is renewed once {@code renewAt} of its TTL has passed (default {@code 0.75}).
+ *     Only once renewal is no longer possible, because the token is not renewable, has reached its maximum TTL or has
+ *     been revoked, does it re-authenticate; this happens ahead of expiry so secret reads are not stalled by a login.
+ *     A renewal that fails for any other reason is retried with jittered exponential backoff.
+ * </p>
+ * <p>
+ *     A background re-authentication is only attempted once, as it may open a browser for an interactive login that
+ *     the user is not around to complete. If it fails, the next call to {@link #vault()} authenticates instead.
+ * </p>
+ * <p>
+ *     Renewals run on a scheduler thread shared by every renewer. Re-authenticating may mean an interactive login that
+ *     waits on the user, so it runs on a thread of its own instead.
+ *     {@link #close()} stops any further renewal or re-authentication.
+ * </p>
+ */
+public class VaultTokenRenewer {
+
+    public static final double DEFAULT_RENEW_AT = 0.75;
+
+    /**
+     * A renewed TTL shorter than this means the token is about to reach its maximum TTL.
+     */
+    static final Duration MIN_TTL = Duration.ofMinutes(1);
+
+    private static final long MIN_RETRY_MILLIS = 1_000;
+    private static final long MAX_RETRY_MILLIS = 60_000;
+
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        var thread = new Thread(r, "vault-token-renewal");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final Executor LOGINS = r -> {
+        var thread = new Thread(r, "vault-token-login");
+        thread.setDaemon(true);
+        thread.start();
+    };
+
+    private final Logger log = LoggerFactory.getLogger(VaultTokenRenewer.class);
+
+    private final Authenticator authenticator;
+    private final VaultFactory vaultForToken;
+    private final double renewAt;
+    private final ScheduledExecutorService scheduler;
+    private final Executor logins;
+
+    private final LongAdder renewals = new LongAdder();
+    private final LongAdder renewalFailures = new LongAdder();
+    private final LongAdder reauthentications = new LongAdder();
+
+    private final Object login = new Object();
+
+    private volatile Vault vault;
+    private volatile boolean loginRequired;
+    private volatile Instant expiresAt;
+    private volatile Instant lastRenewal;
+    private ScheduledFuture<?> scheduled;
+    private boolean closed;
+
+    public VaultTokenRenewer(Authenticator authenticator, VaultFactory vaultForToken, double renewAt) {
+        this(authenticator, vaultForToken, renewAt, SCHEDULER, LOGINS);
+    }
+
+    VaultTokenRenewer(Authenticator authenticator, VaultFactory vaultForToken, double renewAt,
+                      ScheduledExecutorService scheduler, Executor logins) {
+        if (renewAt <= 0 || renewAt >= 1) {
+            throw new IllegalArgumentException("renewAt must be between 0 and 1 exclusive but was " + renewAt);
+        }
+
+        this.authenticator = authenticator;
+        this.vaultForToken = vaultForToken;
+        this.renewAt = renewAt;
+        this.scheduler = scheduler;
+        this.logins = logins;
+    }
+
+    /**
+     * Authenticates, renews the new token to ensure it is good and schedules the next renewal.
+     *
+     * @throws VaultException if the new token cannot be renewed
+     */
+    public synchronized void start() throws IOException, InterruptedException, TimeoutException, VaultException {
+        authenticate();
+    }
+
+    /**
+     * Resumes using a previously issued token if a lookup shows it has at least {@link #MIN_TTL} left, otherwise
+     * authenticates. A token that cannot be renewed is used until it is due to be replaced, like a renewed one.
+     * Looking up the token is a single cheap request, where authenticating may involve an interactive login.
+     *
+     * @param token previously issued client token
+     * @throws VaultException if a newly authenticated token cannot be renewed
+     */
+    public synchronized void resume(String token)
+            throws IOException, InterruptedException, TimeoutException, VaultException {
+        try {
+            var candidate = vaultForToken.create(token);
+            var lookup = candidate.auth().lookupSelf();
+            var ttl = Duration.ofSeconds(lookup.getTTL());
+
+            if (ttl.isZero() || ttl.compareTo(MIN_TTL) >= 0) {
+                vault = candidate;
+                scheduleNext(Instant.now(), ttl, lookup.isRenewable());
+                return;
+            }
+        } catch (VaultException e) {
+            log.debug("Previously issued Vault token is no longer valid", e);
+        }
+
+        authenticate();
+    }
+
+    /**
+     * Returns a client for the current token, first authenticating on the caller's thread if the last background
+     * re-authentication failed.
+     * The instance changes after re-authentication, so callers should not hold on to it.
+     *
+     * @return a client for the current token
+     * @throws VaultException if authenticating fails
+     */
+    public Vault vault() throws VaultException {
+        if (loginRequired) {
+            synchronized (login) {
+                if (loginRequired) {
+                    reauthenticate();
+                }
+            }
+        }
+        return vault;
+    }
+
+    /**
+     * Cancels the next renewal and stops scheduling any more. The current token is left to expire.
+     */
+    public synchronized void close() {
+        closed = true;
+        if (nonNull(scheduled)) {
+            scheduled.cancel(false);
+        }
+    }
+
+    public Metrics metrics() {
+        return new Metrics(
+                renewals.sum(),
+                renewalFailures.sum(),
+                reauthentications.sum(),
+                lastRenewal,
+                expiresAt);
+    }
+
+    private void authenticate() throws IOException, InterruptedException, TimeoutException, VaultException {
+        vault = vaultForToken.create(authenticator.authenticate());
+        renew();
+    }
+
+    private void renew() throws VaultException {
+        var response = vault.auth().renewSelf();
+        var now = Instant.now();
+        renewals.increment();
+        lastRenewal = now;
+
+        scheduleNext(now, Duration.ofSeconds(response.getAuthLeaseDuration()), response.isAuthRenewable());
+    }
+
+    private void scheduleNext(Instant now, Duration ttl, boolean renewable) {
+        if (ttl.isZero()) {
+            // Tokens without a TTL, e.g. root tokens, never expire
+            expiresAt = null;
+            return;
+        }
+        expiresAt = now.plus(ttl);
+
+        var delay = (long) (ttl.toMillis() * renewAt);
+        if (!renewable || ttl.compareTo(MIN_TTL) < 0) {
+            schedule(this::reauthenticateInBackground, delay);
+        } else {
+            schedule(() -> renewInBackground(MIN_RETRY_MILLIS / 2), delay);
+        }
+    }
+
+    private synchronized void renewInBackground(long retryMillis) {
+        if (closed) {
+            return;
+        }
+
+        try {
+            renew();
+        } catch (VaultException e) {
+            renewalFailures.increment();
+            if (isPermissionDenied(e) || isExpired()) {
+                log.warn("Vault token can no longer be renewed, re-authenticating", e);
+                reauthenticateInBackground();
+            } else {
+                retryRenewal(retryMillis, e);
+            }
+        } catch (RuntimeException e) {
+            renewalFailures.increment();
+            retryRenewal(retryMillis, e);
+        }
+    }
+
+    private void retryRenewal(long retryMillis, Exception cause) {
+        var next = Math.min(retryMillis * 2, MAX_RETRY_MILLIS);
+        var delay = ThreadLocalRandom.current().nextLong(next / 2, next + 1);
+        log.warn("Failed to renew Vault token, retrying in {} ms", delay, cause);
+        schedule(() -> renewInBackground(next), delay);
+    }
+
+    private void reauthenticateInBackground() {
+        logins.execute(() -> {
+            synchronized (login) {
+                if (isClosed() || loginRequired) {
+                    return;
+                }
+                try {
+                    reauthenticate();
+                } catch (VaultException e) {
+                    log.error("Failed to re-authenticate with Vault, will try again on the next read", e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Fetches and renews a new token, holding only the {@code login} lock while the login may wait on the user.
+     * If this fails, a login is required before the token is next used.
+     */
+    private void reauthenticate() throws VaultException {
+        try {
+            reauthentications.increment();
+            var token = authenticator.authenticate();
+            synchronized (this) {
+                vault = vaultForToken.create(token);
+                renew();
+            }
+            loginRequired = false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            loginRequired = true;
+            throw new VaultException(e);
+        } catch (IOException | TimeoutException | RuntimeException e) {
+            loginRequired = true;
+            throw new VaultException(e);
+        } catch (VaultException e) {
+            loginRequired = true;
+            throw e;
+        }
+    }
+
+    private synchronized boolean isClosed() {
+        return closed;
+    }
+
+    private boolean isExpired() {
+        var expiry = expiresAt;
+        return nonNull(expiry) && !Instant.now().isBefore(expiry);
+    }
+
+    private static boolean isPermissionDenied(VaultException e) {
+        return e.getHttpStatusCode() == 403;
+    }
+
+    private synchronized void schedule(Runnable task, long delayMillis) {
+        if (closed) {
+            return;
+        }
+        if (nonNull(scheduled)) {
+            scheduled.cancel(false);
+        }
+        scheduled = scheduler.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Fetches a new client token, e.g. by OIDC login.
+     */
+    @FunctionalInterface
+    public interface Authenticator {
+        String authenticate() throws IOException, InterruptedException, TimeoutException;
+    }
+
+    /**
+     * Creates a client that authenticates using {@code token}.
+     */
+    @FunctionalInterface
+    public interface VaultFactory {
+        Vault create(String token) throws VaultException;
+    }
+
+    /**
+     * Renewal counters and the current token lifetime.
+     *
+     * @param renewals          successful renewals, including the one made on each authentication
+     * @param renewalFailures   renewals that failed
+     * @param reauthentications times a new token was fetched because the previous could not be renewed
+     * @param lastRenewal       when the token was last renewed, or {@code null} if it never has been
+     * @param expiresAt         when the current token expires, or {@code null} if it does not
+     */
+    public record Metrics(
+            long renewals,
+            long renewalFailures,
+            long reauthentications,
+            Instant lastRenewal,
+            Instant expiresAt) {}
+
+}
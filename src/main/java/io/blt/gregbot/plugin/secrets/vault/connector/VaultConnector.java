@@ -17,6 +17,7 @@ import java.io.IOException;
 import java.net.URI;
 import java.net.http.HttpRequest;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import org.apache.hc.core5.net.URIBuilder;
 
 public class VaultConnector extends Connector {
@@ -26,7 +27,23 @@ public class VaultConnector extends Connector {
     }
 
     public Result<AuthUrlResponse> fetchAuthUrl(AuthUrlRequest authUrlRequest) throws IOException {
-        var request = HttpRequest.newBuilder()
+        return send(authUrlRequest(authUrlRequest), AuthUrlResponse.class);
+    }
+
+    public CompletableFuture<Result<AuthUrlResponse>> fetchAuthUrlAsync(AuthUrlRequest authUrlRequest) {
+        return sendAsync(authUrlRequest(authUrlRequest), AuthUrlResponse.class);
+    }
+
+    public Result<CallbackResponse> fetchCallback(CallbackRequest callbackRequest) throws IOException {
+        return send(callbackRequest(callbackRequest), CallbackResponse.class);
+    }
+
+    public CompletableFuture<Result<CallbackResponse>> fetchCallbackAsync(CallbackRequest callbackRequest) {
+        return sendAsync(callbackRequest(callbackRequest), CallbackResponse.class);
+    }
+
+    private HttpRequest authUrlRequest(AuthUrlRequest authUrlRequest) {
+        return HttpRequest.newBuilder()
                 .uri(uriForPath("/v1/auth/" + authUrlRequest.mount() + "/oidc/auth_url"))
                 .header("Content-Type", "application/x-www-form-urlencoded")
                 .POST(formFromMap(Map.of(
@@ -34,11 +51,9 @@ public class VaultConnector extends Connector {
                         "redirect_uri", authUrlRequest.redirectUrl(),
                         "client_nonce", authUrlRequest.clientNonce())))
                 .build();
-
-        return send(request, AuthUrlResponse.class);
     }
 
-    public Result<CallbackResponse> fetchCallback(CallbackRequest callbackRequest) throws IOException {
+    private HttpRequest callbackRequest(CallbackRequest callbackRequest) {
         var uri = new URIBuilder(uriForPath("/v1/auth/" + callbackRequest.mount() + "/oidc/callback"))
                 .addParameter("state", callbackRequest.state())
                 .addParameter("code", callbackRequest.code())
@@ -46,12 +61,10 @@ public class VaultConnector extends Connector {
                 .addParameter("client_nonce", callbackRequest.clientNonce())
                 .toString();
 
-        var request = HttpRequest.newBuilder()
+        return HttpRequest.newBuilder()
                 .uri(URI.create(uri))
                 .GET()
                 .build();
-
-        return send(request, CallbackResponse.class);
     }
 
 }
@@ -17,13 +17,22 @@ import io.blt.util.functional.ThrowingConsumer;
 import java.awt.Desktop;
 import java.io.IOException;
 import java.net.URI;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
 import org.apache.hc.core5.net.URIBuilder;
 
 public class Oidc {
 
+    /**
+     * Logins listening on the same host and port, e.g. two Vault secrets using the default {@code 8250}, would fail to
+     * bind the listener if run at once, so take turns.
+     */
+    private static final Map<String, ReentrantLock> LISTENING = new ConcurrentHashMap<>();
+
     private final OidcConfig config;
     private final VaultConnector connector;
 
@@ -38,9 +47,15 @@ public class Oidc {
 
     public String fetchAuthToken(ThrowingConsumer<URI, IOException> fetchAuth)
             throws IOException, InterruptedException, TimeoutException {
-        var nonce = generateNonce();
-        var authUrl = fetchAuthURL(nonce);
-        return listenForToken(nonce, authUrl, fetchAuth);
+        var lock = LISTENING.computeIfAbsent(config.listenHost() + ":" + config.listenPort(), k -> new ReentrantLock());
+        lock.lockInterruptibly();
+        try {
+            var nonce = generateNonce();
+            var authUrl = fetchAuthURL(nonce);
+            return listenForToken(nonce, authUrl, fetchAuth);
+        } finally {
+            lock.unlock();
+        }
     }
 
     private String generateNonce() {
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2024 Mike Cowan.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+
+package io.blt.gregbot.plugin.tokens;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static java.util.Objects.isNull;
+
+/**
+ * Persists authentication tokens between launches, so plugins can skip interactive logins.
+ * <p>
+ *     Tokens are keyed by plugin type and a plugin specific key, e.g. the host, and are held in a single JSON file.
+ *     Persistence is opt-in per plugin, see {@link #forProperties(Map)}, because the file is <b>not encrypted</b>:
+ *     anyone able to read it can use the tokens until they expire or are revoked. The file is only readable by its
+ *     owner where the file system supports POSIX permissions; elsewhere, e.g. on Windows, it relies entirely on the
+ *     user's home directory being private.
+ * </p>
+ * <p>
+ *     The store is best effort: failing to read or write it is logged and otherwise behaves as if it were empty.
+ *     The directory defaults to {@code ~/.gregbot} and may be overridden with the {@code gregbot.home} system property.
+ * </p>
+ */
+public class TokenStore {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final TypeReference<Map<String, String>> TOKENS = new TypeReference<>() {};
+
+    private static final TokenStore DISABLED = new TokenStore(null);
+
+    private static TokenStore defaultStore;
+
+    private final Logger log = LoggerFactory.getLogger(TokenStore.class);
+
+    private final Path tokensFile;
+
+    public TokenStore(Path directory) {
+        this.tokensFile = isNull(directory) ? null : directory.resolve("tokens.json");
+    }
+
+    /**
+     * Returns the store in the {@code gregbot.home} directory.
+     *
+     * @return the shared default store
+     */
+    public static synchronized TokenStore defaultStore() {
+        if (isNull(defaultStore)) {
+            var home = System.getProperty("gregbot.home", System.getProperty("user.home") + "/.gregbot");
+            defaultStore = new TokenStore(Path.of(home));
+        }
+        return defaultStore;
+    }
+
+    /**
+     * Returns a store that remembers nothing.
+     *
+     * @return a store that remembers nothing
+     */
+    public static TokenStore disabled() {
+        return DISABLED;
+    }
+
+    /**
+     * Returns the default store when the plugin {@code properties} set {@code persistToken} to {@code true},
+     * otherwise the disabled store. Tokens are written in plain text, so only opt in where that is acceptable.
+     *
+     * @param properties plugin properties
+     * @return the store to use
+     */
+    public static TokenStore forProperties(Map<String, String> properties) {
+        return Boolean.parseBoolean(properties.getOrDefault("persistToken", "false")) ? defaultStore() : disabled();
+    }
+
+    public synchronized Optional<String> get(String type, String key) {
+        return Optional.ofNullable(read().get(entryFor(type, key)));
+    }
+
+    public synchronized void put(String type, String key, String token) {
+        if (isNull(tokensFile)) {
+            return;
+        }
+
+        var tokens = read();
+        if (!token.equals(tokens.put(entryFor(type, key), token))) {
+            write(tokens);
+        }
+    }
+
+    public synchronized void remove(String type, String key) {
+        if (isNull(tokensFile)) {
+            return;
+        }
+
+        var tokens = read();
+        if (isNull(tokens.remove(entryFor(type, key)))) {
+            return;
+        }
+        write(tokens);
+    }
+
+    private static String entryFor(String type, String key) {
+        return type + "|" + key;
+    }
+
+    private Map<String, String> read() {
+        if (isNull(tokensFile) || !Files.exists(tokensFile)) {
+            return new HashMap<>();
+        }
+
+        try {
+            return MAPPER.readValue(tokensFile.toFile(), TOKENS);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Ignoring unreadable token store {}", tokensFile, e);
+            return new HashMap<>();
+        }
+    }
+
+    private void write(Map<String, String> tokens) {
+        try {
+            Files.createDirectories(tokensFile.getParent());
+
+            // Restricted before anything is written, so the tokens are never readable by others
+            var temp = Files.createTempFile(tokensFile.getParent(), "tokens", ".tmp");
+            try {
+                restrictToOwner(temp);
+                Files.write(temp, MAPPER.writeValueAsBytes(tokens));
+                Files.move(temp, tokensFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to write token store {}", tokensFile, e);
+        }
+    }
+
+    private static void restrictToOwner(Path path) throws IOException {
+        try {
+            Files.setPosixFilePermissions(path, PosixFilePermissions.fromString("rw-------"));
+        } catch (UnsupportedOperationException e) {
+            // Not a POSIX file system, e.g. Windows, where the user's profile is already private
+        }
+    }
+
+}
@@ -12,8 +12,11 @@ import com.formdev.flatlaf.FlatDarculaLaf;
 import com.formdev.flatlaf.fonts.jetbrains_mono.FlatJetBrainsMonoFont;
 import io.blt.gregbot.ApplicationProperties;
 import io.blt.gregbot.ApplicationResources;
+import io.blt.gregbot.core.project.ProjectLoader;
 import io.blt.gregbot.ui.dialogs.SplashScreen;
 import io.blt.gregbot.ui.frames.MainFrame;
+import java.time.Duration;
+import java.time.Instant;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -29,9 +32,25 @@ public class Ui {
         System.setProperty("apple.awt.application.name", ApplicationProperties.name());
         System.setProperty("apple.awt.application.appearance", "system");
 
+        // Overlap building the project deserializers with setting up the look and feel and showing the splash screen
+        var prepare = new Thread(ProjectLoader::prepare, "project-prepare");
+        prepare.setDaemon(true);
+        prepare.start();
+
         SwingUtilities.invokeLater(Ui::new);
     }
 
+    /**
+     * Returns the time since the JVM was launched, for measuring start up.
+     *
+     * @return the time since launch, or zero if it is unknown
+     */
+    public static Duration sinceLaunch() {
+        return ProcessHandle.current().info().startInstant()
+                .map(start -> Duration.between(start, Instant.now()))
+                .orElse(Duration.ZERO);
+    }
+
     Ui() {
         log.info("Starting {} {} born on {}",
                 ApplicationProperties.name(),
@@ -52,6 +71,8 @@ public class Ui {
 
             var mainFrame = new MainFrame();
             mainFrame.setVisible(true);
+
+            log.info("Window shown {} ms after launch", sinceLaunch().toMillis());
         } catch (Exception e) {
             log.error("Unexpected exception", e);
         }
@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2024 Mike Cowan.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+
+package io.blt.gregbot.ui.components;
+
+import ch.qos.logback.classic.Level;
+import com.formdev.flatlaf.FlatClientProperties;
+import io.blt.gregbot.ui.logging.LogStore.Filter;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import java.awt.event.FocusAdapter;
+import java.awt.event.FocusEvent;
+import javax.swing.*;
+import javax.swing.event.PopupMenuEvent;
+import javax.swing.event.PopupMenuListener;
+
+/**
+ * Controls to filter a {@link LogbackPane} by minimum level, logger and thread, and to search it by words.
+ * The pane is filtered when a level, logger or thread is chosen, and when the search is entered, cleared or left,
+ * rather than on every keystroke. The loggers and threads offered are those logged so far.
+ */
+public class LogFilterBar extends JToolBar {
+
+    private static final Level[] LEVELS = {Level.TRACE, Level.DEBUG, Level.INFO, Level.WARN, Level.ERROR};
+
+    private final LogbackPane logbackPane;
+
+    private final JComboBox<Level> level = new JComboBox<>(LEVELS);
+    private final JComboBox<String> logger = new JComboBox<>();
+    private final JComboBox<String> thread = new JComboBox<>();
+    private final JTextField search = new JTextField(24);
+
+    private Filter filter = Filter.NONE;
+
+    public LogFilterBar(LogbackPane logbackPane) {
+        this.logbackPane = logbackPane;
+
+        setFloatable(false);
+
+        level.setToolTipText("Minimum Level");
+        logger.setToolTipText("Logger, including its descendants");
+        thread.setToolTipText("Thread");
+        search.setToolTipText("Search for events containing all of these words");
+
+        setUpNameComboBox(logger, "Logger", "io.blt.gregbot.core.services.IdentityService", logbackPane::loggers);
+        setUpNameComboBox(thread, "Thread", "project-prepare", logbackPane::threads);
+        search.putClientProperty(FlatClientProperties.PLACEHOLDER_TEXT, "Search");
+        search.putClientProperty(FlatClientProperties.TEXT_FIELD_SHOW_CLEAR_BUTTON, true);
+        search.putClientProperty(FlatClientProperties.TEXT_FIELD_CLEAR_CALLBACK, (Runnable) () -> {
+            search.setText("");
+            applyFilter();
+        });
+
+        level.setMaximumSize(level.getPreferredSize());
+        logger.setMaximumSize(logger.getPreferredSize());
+        thread.setMaximumSize(thread.getPreferredSize());
+
+        level.addActionListener(l -> applyFilter());
+        logger.addActionListener(l -> applyFilter());
+        thread.addActionListener(l -> applyFilter());
+        search.addActionListener(l -> applyFilter());
+        search.addFocusListener(new FocusAdapter() {
+            @Override
+            public void focusLost(FocusEvent e) {
+                applyFilter();
+            }
+        });
+
+        add(level);
+        add(logger);
+        add(thread);
+        add(search);
+    }
+
+    private void applyFilter() {
+        var updated = new Filter(
+                (Level) level.getSelectedItem(),
+                (String) logger.getSelectedItem(),
+                (String) thread.getSelectedItem(),
+                search.getText());
+
+        if (!updated.equals(filter)) {
+            filter = updated;
+            logbackPane.filter(updated.isNone() ? Filter.NONE : updated);
+        }
+    }
+
+    private static void setUpNameComboBox(
+            JComboBox<String> comboBox, String placeholder, String prototype, Supplier<List<String>> names) {
+        comboBox.setEditable(true);
+        comboBox.setPrototypeDisplayValue(prototype);
+        comboBox.putClientProperty(FlatClientProperties.PLACEHOLDER_TEXT, placeholder);
+        comboBox.addPopupMenuListener(new PopupMenuListener() {
+            @Override
+            public void popupMenuWillBecomeVisible(PopupMenuEvent e) {
+                var selected = comboBox.getSelectedItem();
+                var items = Stream.concat(Stream.of(""), names.get().stream()).toArray(String[]::new);
+                comboBox.setModel(new DefaultComboBoxModel<>(items));
+                comboBox.setSelectedItem(selected);
+            }
+
+            @Override
+            public void popupMenuWillBecomeInvisible(PopupMenuEvent e) {}
+
+            @Override
+            public void popupMenuCanceled(PopupMenuEvent e) {}
+        });
+    }
+
+}
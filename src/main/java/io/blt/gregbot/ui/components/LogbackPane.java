@@ -8,34 +8,118 @@
 
 package io.blt.gregbot.ui.components;
 
-import io.blt.gregbot.ui.logging.DocumentAppender;
+import ch.qos.logback.classic.Level;
+import io.blt.gregbot.ui.logging.LogStore;
+import io.blt.gregbot.ui.logging.LogStore.Filter;
+import io.blt.gregbot.ui.logging.LogStore.Row;
+import io.blt.gregbot.ui.logging.LogStoreAppender;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
 
 import java.awt.*;
+import java.awt.event.MouseEvent;
 import javax.swing.*;
-import javax.swing.event.DocumentEvent;
-import javax.swing.event.DocumentListener;
 
-public class LogbackPane extends JTextPane {
+/**
+ * A virtualized view of the {@link LogStore} of the {@code PANEL} appender, one row per line.
+ * <p>
+ *     Every row has the same height, so only the visible rows are ever read from the store and rendered, however many
+ *     it holds. The store is polled for new rows up to {@value #FRAME_RATE} times a second while the pane is showing.
+ *     When wrapping lines, rows are clipped to the width of the viewport and shown in full as a tool tip.
+ * </p>
+ * <p>
+ *     When filtered, the view holds the sequence numbers of the matching rows, and each refresh only looks for matches
+ *     among the rows added since the last. Matches are found on a background thread, so a search of a large store
+ *     never blocks the event dispatch thread.
+ * </p>
+ */
+public class LogbackPane extends JList<Row> {
+
+    private static final int FRAME_RATE = 30;
+
+    private static final ExecutorService SEARCH = Executors.newSingleThreadExecutor(r -> {
+        var thread = new Thread(r, "log-search");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final Map<Level, Color> COLORS = Map.of(
+            Level.ERROR, new Color(0xFF, 0x3B, 0x30),
+            Level.WARN, new Color(0xFF, 0x95, 0x00),
+            Level.INFO, new Color(0x26, 0x75, 0xBF),
+            Level.DEBUG, new Color(0xBF, 0x5A, 0xF2),
+            Level.TRACE, new Color(0xA2, 0x84, 0x5E));
+
+    private final LogStore store;
+    private StoreModel model;
+    private final Timer refreshTimer;
 
     private boolean autoCaretToBottom = false;
     private boolean lineWrap = false;
 
     public LogbackPane() {
-        setDocument(DocumentAppender.document("io.blt.gregbot", "PANEL"));
-        setEditable(false);
+        this.store = Objects.requireNonNullElseGet(
+                LogStoreAppender.store("io.blt.gregbot", "PANEL"), () -> new LogStore(1, 1));
+        this.model = new StoreModel(Filter.NONE);
+        this.refreshTimer = new Timer(1000 / FRAME_RATE, e -> refresh());
+
+        setModel(model);
+        setCellRenderer(new RowRenderer());
+        setLayoutOrientation(VERTICAL);
+        updateCellSize();
+        ToolTipManager.sharedInstance().registerComponent(this);
+
+        refresh();
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        refreshTimer.start();
+    }
+
+    @Override
+    public void removeNotify() {
+        refreshTimer.stop();
+        super.removeNotify();
+    }
 
-        getDocument().addDocumentListener(caretToBottomListener());
+    @Override
+    public void setFont(Font font) {
+        super.setFont(font);
+        updateCellSize();
     }
 
     @Override
     public boolean getScrollableTracksViewportWidth() {
-        return lineWrap ? super.getScrollableTracksViewportWidth() :
-                getUI().getPreferredSize(this).width <= getParent().getSize().width;
+        return lineWrap || super.getScrollableTracksViewportWidth();
+    }
+
+    @Override
+    public String getToolTipText(MouseEvent event) {
+        var index = locationToIndex(event.getPoint());
+        if (!lineWrap || index < 0 || !getCellBounds(index, index).contains(event.getPoint())) {
+            return null;
+        }
+
+        var row = model.getElementAt(index);
+        return getFontMetrics(getFont()).stringWidth(row.text()) > getVisibleRect().width ? row.text() : null;
     }
 
+    /**
+     * Creates a tool tip that shows rows as plain text, never as HTML.
+     */
     @Override
-    public Dimension getPreferredSize() {
-        return getUI().getPreferredSize(this);
+    public JToolTip createToolTip() {
+        var toolTip = super.createToolTip();
+        toolTip.putClientProperty("html.disable", Boolean.TRUE);
+        return toolTip;
     }
 
     public void autoCaretToBottom(boolean autoCaretToBottom) {
@@ -48,6 +132,7 @@ public class LogbackPane extends JTextPane {
 
     public void lineWrap(boolean lineWrap) {
         this.lineWrap = lineWrap;
+        revalidate();
     }
 
     public void toggleLineWrap() {
@@ -55,36 +140,222 @@ public class LogbackPane extends JTextPane {
     }
 
     public void setLineWrap(boolean lineWrap) {
-        this.lineWrap = lineWrap;
+        lineWrap(lineWrap);
     }
 
     public void setCaretToBottom() {
-        setCaretPosition(getDocument().getLength());
+        var size = model.getSize();
+        if (size > 0) {
+            ensureIndexIsVisible(size - 1);
+        }
+    }
+
+    /**
+     * Shows only the rows matching {@code filter}, then keeps them up to date as rows are added and evicted.
+     *
+     * @param filter criteria to match, or {@link Filter#NONE} to show every row
+     */
+    public void filter(Filter filter) {
+        model = new StoreModel(filter);
+        setModel(model);
+        refresh();
+        if (filter.isNone()) {
+            setCaretToBottom();
+        }
+    }
+
+    /**
+     * Returns the names of the loggers logged to the store.
+     *
+     * @return logger names, sorted
+     */
+    public List<String> loggers() {
+        return store.loggers();
+    }
+
+    /**
+     * Returns the names of the threads logged to the store.
+     *
+     * @return thread names, sorted
+     */
+    public List<String> threads() {
+        return store.threads();
+    }
+
+    /**
+     * Removes every row from the store, and so from the view.
+     */
+    public void clear() {
+        store.clear();
+        refresh();
+    }
+
+    private void refresh() {
+        if (model.refresh()) {
+            rowsChanged();
+        }
     }
 
-    private void setCaretToBottomIfAutoEnabled() {
+    private void rowsChanged() {
+        updateCellSize();
         if (autoCaretToBottom) {
             setCaretToBottom();
         }
     }
 
-    private DocumentListener caretToBottomListener() {
-        return new DocumentListener() {
-            @Override
-            public void insertUpdate(DocumentEvent e) {
-                setCaretToBottomIfAutoEnabled();
+    private void updateCellSize() {
+        var font = getFont();
+        if (isNull(font) || isNull(model)) {
+            return;
+        }
+
+        var metrics = getFontMetrics(font);
+        var width = metrics.charWidth('m') * (store.longestLine() + 1);
+        if (getFixedCellHeight() != metrics.getHeight() || getFixedCellWidth() < width) {
+            setFixedCellHeight(metrics.getHeight());
+            setFixedCellWidth(width);
+        }
+    }
+
+    /**
+     * Exposes the rows held by the store as of the last refresh, or only those matching a filter.
+     */
+    private final class StoreModel extends AbstractListModel<Row> {
+
+        private final Filter filter;
+        private final boolean all;
+
+        private LogStore.Range range = new LogStore.Range(0, 0);
+
+        private long[] matches = new long[0];
+        private int matchesStart;
+        private int matchesSize;
+        private long scanned;
+        private boolean searching;
+
+        StoreModel(Filter filter) {
+            this.filter = filter;
+            this.all = filter.isNone();
+        }
+
+        @Override
+        public int getSize() {
+            return all ? range.size() : matchesSize;
+        }
+
+        @Override
+        public Row getElementAt(int index) {
+            var sequence = all ? range.first() + index : matches[matchesStart + index];
+            var row = store.row(sequence);
+            // Evicted since the last refresh, which will remove it shortly
+            return nonNull(row) ? row : new Row(sequence, Level.INFO, "");
+        }
+
+        /**
+         * Catches up with the store, returning {@code true} if any rows were added or removed.
+         * When filtered, this only starts looking for new matches, which are added once found.
+         */
+        boolean refresh() {
+            return all ? refreshRange() : refreshMatches();
+        }
+
+        private boolean refreshRange() {
+            var previous = range;
+            range = store.range();
+            if (range.equals(previous)) {
+                return false;
+            }
+
+            var removed = (int) Math.min(Math.max(range.first() - previous.first(), 0), previous.size());
+            if (removed > 0) {
+                fireIntervalRemoved(this, 0, removed - 1);
             }
+            var kept = previous.size() - removed;
+            if (range.size() > kept) {
+                fireIntervalAdded(this, kept, range.size() - 1);
+            }
+            return true;
+        }
 
-            @Override
-            public void removeUpdate(DocumentEvent e) {
-                setCaretToBottomIfAutoEnabled();
+        private boolean refreshMatches() {
+            if (searching) {
+                return false;
             }
 
-            @Override
-            public void changedUpdate(DocumentEvent e) {
-                setCaretToBottomIfAutoEnabled();
+            searching = true;
+            var from = scanned;
+            SEARCH.execute(() -> {
+                var found = store.find(filter, from);
+                SwingUtilities.invokeLater(() -> matchesFound(found));
+            });
+            return false;
+        }
+
+        private void matchesFound(LogStore.Matches found) {
+            searching = false;
+            if (model != this) {
+                return;
             }
-        };
+
+            var initial = scanned == 0;
+            scanned = found.end();
+            if (updateMatches(found)) {
+                rowsChanged();
+            }
+            if (initial) {
+                setCaretToBottom();
+            }
+        }
+
+        private boolean updateMatches(LogStore.Matches found) {
+            range = store.range();
+
+            var removed = 0;
+            while (removed < matchesSize && matches[matchesStart + removed] < range.first()) {
+                removed++;
+            }
+            if (removed > 0) {
+                matchesStart += removed;
+                matchesSize -= removed;
+                fireIntervalRemoved(this, 0, removed - 1);
+            }
+
+            var added = found.rows().length;
+            if (added > 0) {
+                if (matchesStart + matchesSize + added > matches.length) {
+                    var grown = new long[Math.max(matches.length * 2, matchesSize + added)];
+                    System.arraycopy(matches, matchesStart, grown, 0, matchesSize);
+                    matches = grown;
+                    matchesStart = 0;
+                }
+                System.arraycopy(found.rows(), 0, matches, matchesStart + matchesSize, added);
+                matchesSize += added;
+                fireIntervalAdded(this, matchesSize - added, matchesSize - 1);
+            }
+            return removed > 0 || added > 0;
+        }
+
+    }
+
+    /**
+     * Renders a row in the color of its level, never as HTML.
+     */
+    private static final class RowRenderer extends DefaultListCellRenderer {
+
+        RowRenderer() {
+            putClientProperty("html.disable", Boolean.TRUE);
+        }
+
+        @Override
+        public Component getListCellRendererComponent(
+                JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus) {
+            super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
+            if (!isSelected && value instanceof Row row) {
+                setForeground(COLORS.getOrDefault(row.level(), list.getForeground()));
+            }
+            return this;
+        }
+
     }
 
 }
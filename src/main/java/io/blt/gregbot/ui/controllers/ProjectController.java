@@ -9,13 +9,13 @@
 package io.blt.gregbot.ui.controllers;
 
 import io.blt.gregbot.core.project.Project;
-import io.blt.util.Ctr;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
 import static io.blt.gregbot.core.project.Project.Collection;
 import static io.blt.gregbot.core.project.Project.Collection.Folder;
+import static java.util.Objects.isNull;
 import static java.util.Objects.nonNull;
 
 import javax.swing.*;
@@ -28,7 +28,29 @@ public class ProjectController {
     private final Map<String, DefaultTreeModel> collections = new HashMap<>();
 
     public ProjectController load(Project project) {
-        loadCollections(project.collections());
+        clear();
+        project.collections().forEach(this::add);
+        return this;
+    }
+
+    /**
+     * Adds a single collection, so collections can be shown as they are loaded.
+     *
+     * @param name       collection name
+     * @param collection collection to add
+     * @return this controller
+     */
+    public ProjectController add(String name, Collection collection) {
+        var model = new DefaultTreeModel(addFolders(null, "root", collection.layout()), true);
+        if (isNull(collections.put(name, model))) {
+            collectionNames.addElement(name);
+        }
+        return this;
+    }
+
+    public ProjectController clear() {
+        collectionNames.clear();
+        collections.clear();
         return this;
     }
 
@@ -40,16 +62,6 @@ public class ProjectController {
         return Collections.unmodifiableMap(collections);
     }
 
-    private void loadCollections(Map<String, Collection> collections) {
-        collectionNames.clear();
-        collections.keySet().forEach(collectionNames::addElement);
-
-        this.collections.clear();
-        this.collections.putAll(Ctr.transformValues(collections, v ->
-                new DefaultTreeModel(addFolders(null, "root", v.layout()), true)
-        ));
-    }
-
     private DefaultMutableTreeNode addFolders(DefaultMutableTreeNode parent, String name, Folder folder) {
         var folderNode = new DefaultMutableTreeNode(name, true);
         if (nonNull(parent)) {
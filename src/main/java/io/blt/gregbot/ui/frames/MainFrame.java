@@ -12,6 +12,9 @@ import com.formdev.flatlaf.util.SystemInfo;
 import io.blt.gregbot.ApplicationProperties;
 import io.blt.gregbot.ApplicationResources;
 import io.blt.gregbot.core.project.Project;
+import io.blt.gregbot.core.project.ProjectLoader;
+import io.blt.gregbot.core.services.IdentityService;
+import io.blt.gregbot.ui.Ui;
 import io.blt.gregbot.ui.components.FlatlafThemeToggle;
 import io.blt.gregbot.ui.components.HorizontalGlue;
 import io.blt.gregbot.ui.controllers.ProjectController;
@@ -20,11 +23,17 @@ import io.blt.gregbot.ui.panels.CollectionPanel;
 import io.blt.gregbot.ui.panels.LogPanel;
 import io.blt.util.Obj;
 import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import static io.blt.gregbot.core.project.Project.Collection;
 import static io.blt.gregbot.ui.utils.AwtUtils.scaleDimension;
 import static io.blt.gregbot.ui.utils.AwtUtils.screenSize;
+import static java.util.Objects.nonNull;
 
 import java.awt.*;
 import java.awt.event.ActionListener;
@@ -32,8 +41,15 @@ import javax.swing.*;
 
 public class MainFrame extends JFrame {
 
+    /**
+     * System property naming the category of identities to warm up once the project is loaded, otherwise all are.
+     */
+    public static final String WARM_UP_CATEGORY_PROPERTY = "gregbot.warmUp.category";
+
     private final Logger log = LoggerFactory.getLogger(MainFrame.class);
 
+    private final JProgressBar warmUpProgress = new JProgressBar();
+
     private JPanel contentPane;
     private JSplitPane feedbackSplitPane;
     private JTabbedPane feedbackTabbedPane;
@@ -41,6 +57,9 @@ public class MainFrame extends JFrame {
     private CollectionPanel collectionPanel;
     private JLabel mainArea;
 
+    // Holds the warmed up identities, so requests made from this window do not log in again
+    private IdentityService identityService;
+
     public MainFrame() {
         setJMenuBar(buildMenuBar());
         setContentPane(contentPane);
@@ -61,12 +80,12 @@ public class MainFrame extends JFrame {
             toolBar.add(Box.createHorizontalStrut(70), 0);
         }
 
-        try {
-            // TODO This is temporary till I add some rules around finding projects
-            loadProject(Project.loadFromJson("project.json"));
-        } catch (IOException e) {
-            log.error("Failed to load project", e);
-        }
+        warmUpProgress.setStringPainted(true);
+        warmUpProgress.setVisible(false);
+        toolBar.add(warmUpProgress, toolBar.getComponentCount() - 1);
+
+        // TODO This is temporary till I add some rules around finding projects
+        loadProject("project.json");
     }
 
     private JMenuBar buildMenuBar() {
@@ -108,9 +127,90 @@ public class MainFrame extends JFrame {
         return Obj.poke(new JMenuItem(text), i -> i.addActionListener(action));
     }
 
-    private void loadProject(Project project) {
-        var controller = new ProjectController().load(project);
-        collectionPanel.setModels(controller.collectionNamesListModel(), controller.collectionsTreeModel());
+    /**
+     * Loads the project in the background, showing each collection as soon as it has been loaded rather than waiting
+     * for the remaining sections.
+     */
+    private void loadProject(String filename) {
+        var controller = new ProjectController();
+
+        new SwingWorker<ProjectLoader.Loaded, Map.Entry<String, Collection>>() {
+            @Override
+            protected ProjectLoader.Loaded doInBackground() throws IOException {
+                return ProjectLoader.loadFromJson(filename, new ProjectLoader.Listener() {
+                    @Override
+                    public void collectionLoaded(String name, Collection collection) {
+                        publish(Map.entry(name, collection));
+                    }
+
+                    @Override
+                    public void sectionLoaded(String section, Duration elapsed) {
+                        log.debug("Loaded project {} in {} ms", section, elapsed.toMillis());
+                    }
+                });
+            }
+
+            @Override
+            protected void process(List<Map.Entry<String, Collection>> chunks) {
+                var first = controller.collectionNamesListModel().isEmpty();
+                chunks.forEach(c -> controller.add(c.getKey(), c.getValue()));
+                if (first) {
+                    collectionPanel.setModels(controller.collectionNamesListModel(), controller.collectionsTreeModel());
+                }
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    var loaded = get();
+                    log.info("Loaded project in {} ms, {} ms after launch",
+                            loaded.elapsed().toMillis(), Ui.sinceLaunch().toMillis());
+                    warmUp(loaded.project());
+                } catch (ExecutionException e) {
+                    controller.clear();
+                    log.error("Failed to load project", e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }.execute();
+    }
+
+    /**
+     * Loads the identities in the background, so the first request using each does not wait on its login.
+     */
+    private void warmUp(Project project) {
+        if (nonNull(identityService)) {
+            identityService.close();
+        }
+        identityService = new IdentityService(project.secrets(), project.identities());
+
+        warmUpProgress.setIndeterminate(true);
+        warmUpProgress.setString("Warming up identities");
+        warmUpProgress.setVisible(true);
+
+        identityService.warmUp(System.getProperty(WARM_UP_CATEGORY_PROPERTY), (result, completed, total) -> {
+            if (result.succeeded()) {
+                log.info("Warmed up identity '{}' in {} ms", result.identity(), result.elapsed().toMillis());
+            } else {
+                log.warn("Failed to warm up identity '{}' after {} ms",
+                        result.identity(), result.elapsed().toMillis(), result.error());
+            }
+
+            SwingUtilities.invokeLater(() -> {
+                warmUpProgress.setIndeterminate(false);
+                warmUpProgress.setMaximum(total);
+                warmUpProgress.setValue(completed);
+                warmUpProgress.setString("Identities %d/%d".formatted(completed, total));
+            });
+        }).whenComplete((results, e) -> {
+            if (nonNull(e)) {
+                log.error("Failed to warm up identities", e);
+            } else {
+                log.info("Warmed up {} identities, {} ms after launch", results.size(), Ui.sinceLaunch().toMillis());
+            }
+            SwingUtilities.invokeLater(() -> warmUpProgress.setVisible(false));
+        });
     }
 
     private boolean shouldExit() {
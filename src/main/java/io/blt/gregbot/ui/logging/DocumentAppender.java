@@ -12,14 +12,21 @@ import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.Logger;
 import ch.qos.logback.classic.PatternLayout;
 import ch.qos.logback.classic.spi.ILoggingEvent;
-import ch.qos.logback.core.AppenderBase;
+import ch.qos.logback.core.UnsynchronizedAppenderBase;
 import io.blt.util.Obj;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import org.slf4j.LoggerFactory;
 
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
 import static javax.swing.text.StyleConstants.Foreground;
 
 import java.awt.*;
+import javax.swing.Timer;
+import javax.swing.text.AttributeSet;
 import javax.swing.text.BadLocationException;
 import javax.swing.text.DefaultStyledDocument;
 import javax.swing.text.Document;
@@ -27,8 +34,14 @@ import javax.swing.text.SimpleAttributeSet;
 
 /**
  * Logback appender that updates a {@link Document} for use with Swing components.
+ * <p>
+ *     Logging threads never touch the document. Each event is formatted on the logging thread and placed in a
+ *     lock-free ring buffer, which is flushed to the document in a single batch on the Event Dispatch Thread at most
+ *     {@code frameRate} times a second. The ring holds {@code lineLimit} events, so when events arrive faster than they
+ *     are flushed the oldest are overwritten, as they would have been trimmed from the document anyway.
+ * </p>
  */
-public class DocumentAppender extends AppenderBase<ILoggingEvent> {
+public class DocumentAppender extends UnsynchronizedAppenderBase<ILoggingEvent> {
 
     private final Document document = new DefaultStyledDocument();
 
@@ -40,7 +53,15 @@ public class DocumentAppender extends AppenderBase<ILoggingEvent> {
             Level.TRACE, style(new Color(0xA2, 0x84, 0x5E)));
     private final SimpleAttributeSet defaultStyle = new SimpleAttributeSet();
 
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicBoolean flushPending = new AtomicBoolean();
+
+    private AtomicReferenceArray<Entry> ring;
+    private long flushed;
+    private Timer flushTimer;
+
     private int lineLimit = 2000;
+    private int frameRate = 30;
     private PatternLayout layout = Obj.tap(PatternLayout::new,
             p -> p.setPattern("%d{HH:mm:ss.SSS} [%thread] %-5level %logger{36} -%kvp- %msg%n"));
 
@@ -64,22 +85,103 @@ public class DocumentAppender extends AppenderBase<ILoggingEvent> {
     public void start() {
         layout.setContext(context);
         layout.start();
+
+        ring = new AtomicReferenceArray<>(Math.max(lineLimit, 1));
+        flushTimer = new Timer(1000 / Math.max(frameRate, 1), e -> flush());
+        flushTimer.setRepeats(false);
+
         super.start();
     }
 
+    @Override
+    public void stop() {
+        super.stop();
+        if (nonNull(flushTimer)) {
+            flushTimer.stop();
+        }
+    }
+
     @Override
     protected void append(ILoggingEvent event) {
-        int overLimit = document.getDefaultRootElement().getElementCount() - lineLimit;
+        var sequence = written.getAndIncrement();
+        var entry = new Entry(sequence, format(event), styles.getOrDefault(event.getLevel(), defaultStyle));
+        ring.set((int) (sequence % ring.length()), entry);
+
+        if (flushPending.compareAndSet(false, true)) {
+            flushTimer.start();
+        }
+    }
+
+    /**
+     * Formats {@code event} with the layout, which is not safe to use from several threads at once.
+     */
+    private String format(ILoggingEvent event) {
+        var layout = this.layout;
+        synchronized (layout) {
+            return layout.doLayout(event);
+        }
+    }
+
+    /**
+     * Appends the events logged since the last flush to the document, then trims it to {@code lineLimit} lines.
+     * This happens automatically, so only needs calling to bring the document up to date immediately.
+     * <p>
+     *     Must be called on the Event Dispatch Thread.
+     * </p>
+     */
+    public void flush() {
+        if (isNull(ring)) {
+            return;
+        }
+        flushPending.set(false);
+
+        var end = written.get();
+        // Events older than the ring were overwritten before they could be flushed
+        var sequence = Math.max(flushed, end - ring.length());
+
+        var text = new StringBuilder();
+        AttributeSet style = null;
 
         try {
-            if (overLimit > 0) {
-                document.remove(0, document.getDefaultRootElement().getElement(overLimit - 1).getEndOffset());
+            for (; sequence < end; sequence++) {
+                var entry = ring.get((int) (sequence % ring.length()));
+                if (isNull(entry) || entry.sequence() < sequence) {
+                    // Claimed but not yet written, so flush it next time to keep events in order
+                    flushPending.set(true);
+                    flushTimer.start();
+                    break;
+                }
+                if (entry.sequence() > sequence) {
+                    continue;
+                }
+                if (entry.style() != style && !text.isEmpty()) {
+                    insert(text, style);
+                }
+                text.append(entry.text());
+                style = entry.style();
             }
-            document.insertString(document.getLength(), layout.doLayout(event),
-                    styles.getOrDefault(event.getLevel(), defaultStyle));
+            insert(text, style);
+            trim();
         } catch (BadLocationException ignored) {
             // Should be unreachable
         }
+
+        flushed = sequence;
+    }
+
+    private void insert(StringBuilder text, AttributeSet style) throws BadLocationException {
+        if (!text.isEmpty()) {
+            document.insertString(document.getLength(), text.toString(), style);
+            text.setLength(0);
+        }
+    }
+
+    private void trim() throws BadLocationException {
+        // The text ends with a line separator, which is followed by an empty element
+        var overLimit = document.getDefaultRootElement().getElementCount() - 1 - lineLimit;
+        if (overLimit > 0) {
+            document.remove(0, document.getDefaultRootElement().getElement(overLimit - 1).getEndOffset());
+        }
     }
 
     public int getLineLimit() {
@@ -90,6 +192,14 @@ public class DocumentAppender extends AppenderBase<ILoggingEvent> {
         this.lineLimit = lineLimit;
     }
 
+    public int getFrameRate() {
+        return frameRate;
+    }
+
+    public void setFrameRate(int frameRate) {
+        this.frameRate = frameRate;
+    }
+
     public PatternLayout getLayout() {
         return layout;
     }
@@ -98,6 +208,8 @@ public class DocumentAppender extends AppenderBase<ILoggingEvent> {
         this.layout = layout;
     }
 
+    private record Entry(long sequence, String text, AttributeSet style) {}
+
     private static SimpleAttributeSet style(Color foreground) {
         var attributes = new SimpleAttributeSet();
         attributes.addAttribute(Foreground, foreground);
@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2024 Mike Cowan.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+
+package io.blt.gregbot.ui.logging;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+import java.util.stream.LongStream;
+
+/**
+ * An inverted index from each word of a logged event to the rows of the events containing it.
+ * <p>
+ *     A word is a run of at least {@value #MIN_WORD_LENGTH} letters or digits, matched ignoring case. Words are not
+ *     stored, only a 64-bit hash of each, in an open addressing table pointing at the most recent posting of the word.
+ *     Each posting (an event containing a word) is two ints in a ring of {@code capacity} postings: the row, and the
+ *     previous posting of the same word. So the index never grows beyond its capacity, and once full only the most
+ *     recent events can be found.
+ * </p>
+ * <p>
+ *     Rows and postings are stored as the low 32 bits of their sequence numbers, and restored relative to a newer
+ *     sequence number, which is exact while they are within 2<sup>32</sup> of each other.
+ * </p>
+ * <p>
+ *     Not thread-safe, it is guarded by its {@link LogStore}.
+ * </p>
+ */
+final class LogIndex {
+
+    static final int MIN_WORD_LENGTH = 2;
+
+    private static final int MIN_WORDS_LENGTH = 1024;
+    private static final long FNV_OFFSET = 0xCBF29CE484222325L;
+    private static final long FNV_PRIME = 0x100000001B3L;
+
+    private final int capacity;
+    private final int[] postingRows;
+    private final int[] postingPrevious;
+    private long written;
+
+    private long[] wordHashes = new long[MIN_WORDS_LENGTH];
+    private int[] wordHeads = new int[MIN_WORDS_LENGTH];
+    private int words;
+
+    LogIndex(int capacity) {
+        this.capacity = capacity;
+        this.postingRows = new int[capacity];
+        this.postingPrevious = new int[capacity];
+    }
+
+    /**
+     * Indexes each word of {@code text} against {@code row}, which must be later than any row already indexed.
+     */
+    void add(long row, CharSequence text) {
+        forEachWord(text, hash -> addPosting(row, hash));
+    }
+
+    /**
+     * Indexes each of the {@link #words(CharSequence) words} against {@code row}, as {@link #add(long, CharSequence)}.
+     */
+    void add(long row, long[] words) {
+        for (var hash : words) {
+            addPosting(row, hash);
+        }
+    }
+
+    /**
+     * Returns the rows containing the word with the specified hash, from {@code from} inclusive to {@code end}
+     * exclusive, most recent first. Rows whose postings have been overwritten are not returned.
+     */
+    long[] rows(long hash, long from, long end) {
+        var slot = slotOf(hash);
+        if (wordHashes[slot] != hash || written == 0) {
+            return new long[0];
+        }
+
+        var rows = new long[16];
+        var count = 0;
+        var posting = restore(written - 1, wordHeads[slot]);
+        while (isLive(posting)) {
+            var index = (int) (posting % capacity);
+            var row = restore(end - 1, postingRows[index]);
+            if (row < from) {
+                break;
+            }
+            if (count == rows.length) {
+                rows = Arrays.copyOf(rows, count * 2);
+            }
+            rows[count++] = row;
+
+            var previous = restore(posting, postingPrevious[index]);
+            if (previous == posting) {
+                break;
+            }
+            posting = previous;
+        }
+        return Arrays.copyOf(rows, count);
+    }
+
+    void clear() {
+        wordHashes = new long[MIN_WORDS_LENGTH];
+        wordHeads = new int[MIN_WORDS_LENGTH];
+        words = 0;
+    }
+
+    /**
+     * Returns the hash of each word in {@code text}, in order.
+     */
+    static long[] words(CharSequence text) {
+        var hashes = LongStream.builder();
+        forEachWord(text, hashes);
+        return hashes.build().toArray();
+    }
+
+    private static void forEachWord(CharSequence text, LongConsumer action) {
+        var hash = FNV_OFFSET;
+        var length = 0;
+        for (var i = 0; i <= text.length(); i++) {
+            var c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                hash = (hash ^ Character.toLowerCase(c)) * FNV_PRIME;
+                length++;
+            } else {
+                if (length >= MIN_WORD_LENGTH) {
+                    // Zero marks an empty slot of the table
+                    action.accept(hash == 0 ? 1 : hash);
+                }
+                hash = FNV_OFFSET;
+                length = 0;
+            }
+        }
+    }
+
+    private void addPosting(long row, long hash) {
+        var slot = slotOf(hash);
+        var previous = -1L;
+
+        if (wordHashes[slot] == hash) {
+            var head = restore(written - 1, wordHeads[slot]);
+            if (isLive(head)) {
+                if (postingRows[(int) (head % capacity)] == (int) row) {
+                    // Already indexed against this row, e.g. a word repeated within an event
+                    return;
+                }
+                previous = head;
+            }
+        } else {
+            if ((words + 1) * 4L > wordHashes.length * 3L) {
+                rehash();
+                slot = slotOf(hash);
+            }
+            wordHashes[slot] = hash;
+            words++;
+        }
+
+        var posting = written++;
+        var index = (int) (posting % capacity);
+        postingRows[index] = (int) row;
+        // A posting pointing at itself is the first of its word
+        postingPrevious[index] = (int) (previous < 0 ? posting : previous);
+        wordHeads[slot] = (int) posting;
+
+        if (written % capacity == 0) {
+            // Drop words once all their postings are overwritten, long before their heads could be restored wrongly
+            rehash();
+        }
+    }
+
+    /**
+     * Rebuilds the table without the words whose postings have all been overwritten, resizing it to suit.
+     */
+    private void rehash() {
+        var hashes = wordHashes;
+        var heads = wordHeads;
+
+        var live = 0;
+        for (var i = 0; i < hashes.length; i++) {
+            if (hashes[i] != 0 && isLive(restore(written - 1, heads[i]))) {
+                live++;
+            }
+        }
+
+        var length = hashes.length;
+        if (live * 2L > length) {
+            length *= 2;
+        } else if (live * 8L < length && length > MIN_WORDS_LENGTH) {
+            length /= 2;
+        }
+
+        wordHashes = new long[length];
+        wordHeads = new int[length];
+        words = 0;
+        for (var i = 0; i < hashes.length; i++) {
+            if (hashes[i] != 0 && isLive(restore(written - 1, heads[i]))) {
+                var slot = slotOf(hashes[i]);
+                wordHashes[slot] = hashes[i];
+                wordHeads[slot] = heads[i];
+                words++;
+            }
+        }
+    }
+
+    /**
+     * Returns the slot holding {@code hash}, otherwise the empty slot where it belongs.
+     */
+    private int slotOf(long hash) {
+        var mask = wordHashes.length - 1;
+        var slot = (int) (hash ^ (hash >>> 32)) & mask;
+        while (wordHashes[slot] != 0 && wordHashes[slot] != hash) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private boolean isLive(long posting) {
+        return posting >= 0 && written - posting <= capacity;
+    }
+
+    /**
+     * Restores a sequence number from its low 32 bits, given a sequence number that is no earlier.
+     */
+    private static long restore(long newer, int low) {
+        return newer - Integer.toUnsignedLong((int) newer - low);
+    }
+
+}
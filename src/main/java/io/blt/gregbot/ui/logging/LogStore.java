@@ -0,0 +1,563 @@
+/*
+ * Copyright (c) 2024 Mike Cowan.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+
+package io.blt.gregbot.ui.logging;
+
+import ch.qos.logback.classic.Level;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Objects.isNull;
+
+/**
+ * A bounded store of log lines, compact enough to hold millions of them.
+ * <p>
+ *     Each line is a row, identified by an ever-increasing sequence number. The rows are held in a ring of
+ *     {@code capacity} slots of primitive arrays, and the text of each row is encoded as UTF-8 into a ring of direct
+ *     (off-heap) buffers of {@code textCapacity} bytes, allocated a chunk at a time as it fills. When either ring is
+ *     full the oldest rows are evicted to make room.
+ * </p>
+ * <p>
+ *     Every row of an event carries its level, logger and thread (as ids of interned names), and the words of the
+ *     event are indexed by a {@link LogIndex} of {@code indexCapacity} postings, so {@link #find} can filter and
+ *     search the rows without decoding their text. Once either table of names reaches {@value #MIN_NAMES_LIMIT}, or
+ *     twice the names in use after the last time, the names only used by evicted rows are dropped, so names such as
+ *     those of short-lived threads do not accumulate.
+ * </p>
+ * <p>
+ *     All methods are thread-safe. Appending splits, encodes and hashes the words of an event before taking the lock,
+ *     which it then holds only long enough to copy the lines into the store. Scanning rows in {@link #find} takes the
+ *     lock for {@value #SCAN_BATCH} rows at a time, so a long scan never holds up appending for long.
+ * </p>
+ */
+public class LogStore {
+
+    static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+    static final int SCAN_BATCH = 1 << 16;
+    static final int MIN_NAMES_LIMIT = 1 << 12;
+
+    private static final Level[] LEVELS = {Level.TRACE, Level.DEBUG, Level.INFO, Level.WARN, Level.ERROR, Level.OFF};
+    private static final byte INFO = 2;
+    private static final String TAB = "    ";
+
+    private final int capacity;
+    private final long textCapacity;
+    private final int chunkSize;
+    private final int maxLineLength;
+
+    private final long[] textOffsets;
+    private final int[] textLengths;
+    private final byte[] levels;
+    private final int[] loggers;
+    private final int[] threads;
+    private final boolean[] continuations;
+    private final ByteBuffer[] chunks;
+    private final LogIndex index;
+
+    private final Map<String, Integer> loggerIds = new HashMap<>();
+    private final List<String> loggerNames = new ArrayList<>();
+    private final Map<String, Integer> threadIds = new HashMap<>();
+    private final List<String> threadNames = new ArrayList<>();
+    private int namesLimit = MIN_NAMES_LIMIT;
+
+    private long first;
+    private long next;
+    private long textWritten;
+    private int longestLine;
+
+    /**
+     * Creates a store of at most {@code capacity} rows and {@code textCapacity} bytes of text, indexing up to twice
+     * as many words as rows.
+     *
+     * @param capacity     maximum number of rows to hold
+     * @param textCapacity maximum number of bytes of text to hold, rounded up to a whole number of 1 MiB chunks
+     * @throws IllegalArgumentException if either capacity is less than 1
+     */
+    public LogStore(int capacity, long textCapacity) {
+        this(capacity, textCapacity, (int) Math.min(capacity * 2L, Integer.MAX_VALUE - 8));
+    }
+
+    /**
+     * Creates a store of at most {@code capacity} rows and {@code textCapacity} bytes of text, indexing the words of
+     * events up to {@code indexCapacity} times.
+     *
+     * @param capacity      maximum number of rows to hold
+     * @param textCapacity  maximum number of bytes of text to hold, rounded up to a whole number of 1 MiB chunks
+     * @param indexCapacity maximum number of postings (occurrences of a word in an event) to index
+     * @throws IllegalArgumentException if any capacity is less than 1
+     */
+    public LogStore(int capacity, long textCapacity, int indexCapacity) {
+        this(capacity, textCapacity, indexCapacity, DEFAULT_CHUNK_SIZE);
+    }
+
+    LogStore(int capacity, long textCapacity, int indexCapacity, int chunkSize) {
+        if (capacity < 1 || textCapacity < 1 || indexCapacity < 1 || chunkSize < 4) {
+            throw new IllegalArgumentException("Log store capacity must be greater than 0");
+        }
+
+        var chunkCount = (int) ((textCapacity + chunkSize - 1) / chunkSize);
+
+        this.capacity = capacity;
+        this.textCapacity = (long) chunkCount * chunkSize;
+        this.chunkSize = chunkSize;
+        // Each char encodes to at most 3 bytes of UTF-8 (a surrogate pair to 4), so this always fits in a chunk
+        this.maxLineLength = chunkSize / 3;
+
+        this.textOffsets = new long[capacity];
+        this.textLengths = new int[capacity];
+        this.levels = new byte[capacity];
+        this.loggers = new int[capacity];
+        this.threads = new int[capacity];
+        this.continuations = new boolean[capacity];
+        this.chunks = new ByteBuffer[chunkCount];
+        this.index = new LogIndex(indexCapacity);
+    }
+
+    /**
+     * Appends {@code text} as one row per line, indexing the words of all of it.
+     *
+     * @param level level of the event the text describes
+     * @param text  formatted text of the event
+     * @see #append(Level, String, String, String, String)
+     */
+    public void append(Level level, String text) {
+        append(level, "", "", text, text);
+    }
+
+    /**
+     * Appends {@code text} as one row per line, e.g. a message followed by its stack trace, and indexes the words of
+     * {@code searchable} against the first row.
+     * Tabs are expanded, a trailing line separator is ignored, and lines too long to store are truncated.
+     *
+     * @param level      level of the event
+     * @param logger     name of the logger of the event
+     * @param thread     name of the thread of the event
+     * @param text       formatted text of the event
+     * @param searchable text of the event to index e.g., its message and key value pairs
+     */
+    public void append(Level level, String logger, String thread, String text, String searchable) {
+        var code = levelCode(level);
+        var lines = new ArrayList<byte[]>();
+        var longest = 0;
+
+        var length = text.length();
+        var start = 0;
+        while (start < length) {
+            var end = text.indexOf('\n', start);
+            if (end < 0) {
+                end = length;
+            }
+            var lineEnd = end > start && text.charAt(end - 1) == '\r' ? end - 1 : end;
+            var line = expandAndTruncate(text.substring(start, lineEnd));
+            lines.add(line.getBytes(StandardCharsets.UTF_8));
+            longest = Math.max(longest, line.length());
+            start = end + 1;
+        }
+
+        if (lines.isEmpty()) {
+            return;
+        }
+        var words = LogIndex.words(searchable);
+
+        synchronized (this) {
+            if (loggerNames.size() >= namesLimit || threadNames.size() >= namesLimit) {
+                compactNames();
+            }
+
+            var event = next;
+            var loggerId = intern(loggerIds, loggerNames, logger);
+            var threadId = intern(threadIds, threadNames, thread);
+
+            for (var line : lines) {
+                appendLine(code, loggerId, threadId, next > event, line);
+            }
+            longestLine = Math.max(longestLine, longest);
+            index.add(event, words);
+        }
+    }
+
+    /**
+     * Returns the rows from {@code from}, or the first row held if later, that match {@code filter}.
+     * Every row of an event matches if it does, so a matched message is followed by its stack trace.
+     * <p>
+     *     Matching rows by text uses the index, so only finds events still indexed. Otherwise the rows are scanned,
+     *     which only reads their level, logger and thread.
+     * </p>
+     *
+     * @param filter criteria to match
+     * @param from   sequence number of the first row to consider, e.g. the {@code end} of the previous matches
+     * @return the matching rows, and where to continue from to find rows appended since
+     */
+    public Matches find(Filter filter, long from) {
+        var words = isNull(filter.text()) ? new long[0] : LogIndex.words(filter.text());
+        return words.length == 0 ? scan(filter, from) : search(filter, words, from);
+    }
+
+    /**
+     * Finds the rows matching {@code filter} by reading every row, a batch at a time.
+     */
+    private Matches scan(Filter filter, long from) {
+        var rows = new long[64];
+        var count = 0;
+        var sequence = from;
+
+        while (true) {
+            synchronized (this) {
+                // Resolved for each batch, as loggers and threads may be added between them
+                var matcher = new Matcher(filter);
+                if (matcher.matchesNothing()) {
+                    return new Matches(new long[0], next);
+                }
+
+                sequence = Math.max(sequence, first);
+                var end = Math.min(next, sequence + SCAN_BATCH);
+                for (; sequence < end; sequence++) {
+                    if (matcher.matches(slot(sequence))) {
+                        if (count == rows.length) {
+                            rows = Arrays.copyOf(rows, count * 2);
+                        }
+                        rows[count++] = sequence;
+                    }
+                }
+                if (sequence == next) {
+                    return new Matches(Arrays.copyOf(rows, count), next);
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the rows matching {@code filter} whose events contain every one of {@code words}, using the index.
+     */
+    private synchronized Matches search(Filter filter, long[] words, long from) {
+        var start = Math.max(from, first);
+        var matcher = new Matcher(filter);
+        var rows = new long[64];
+        var count = 0;
+
+        if (matcher.matchesNothing()) {
+            return new Matches(new long[0], next);
+        }
+
+        var events = index.rows(words[0], start, next);
+        for (var i = 1; i < words.length && events.length > 0; i++) {
+            // Only rows from the oldest candidate onwards can be in the intersection
+            events = intersect(events, index.rows(words[i], events[events.length - 1], next));
+        }
+
+        // The index lists the most recent events first
+        for (var i = events.length - 1; i >= 0; i--) {
+            var event = events[i];
+            if (!matcher.matches(slot(event))) {
+                continue;
+            }
+            for (var sequence = event; sequence < next; sequence++) {
+                if (sequence > event && !continuations[slot(sequence)]) {
+                    break;
+                }
+                if (count == rows.length) {
+                    rows = Arrays.copyOf(rows, count * 2);
+                }
+                rows[count++] = sequence;
+            }
+        }
+        return new Matches(Arrays.copyOf(rows, count), next);
+    }
+
+    /**
+     * Returns the row with the specified sequence number, or {@code null} if it has been evicted or not yet appended.
+     *
+     * @param sequence sequence number of the row
+     * @return the row or {@code null}
+     */
+    public synchronized Row row(long sequence) {
+        if (sequence < first || sequence >= next) {
+            return null;
+        }
+
+        var slot = slot(sequence);
+        var offset = textOffsets[slot] % textCapacity;
+        var bytes = new byte[textLengths[slot]];
+        chunks[(int) (offset / chunkSize)].get((int) (offset % chunkSize), bytes);
+
+        return new Row(sequence, LEVELS[levels[slot]], new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the sequence numbers of the rows currently held.
+     *
+     * @return range of rows
+     */
+    public synchronized Range range() {
+        return new Range(first, next);
+    }
+
+    /**
+     * Returns the length of the longest line appended since the store was created or last cleared.
+     *
+     * @return length in chars
+     */
+    public synchronized int longestLine() {
+        return longestLine;
+    }
+
+    /**
+     * Returns the names of the loggers of the events appended since the store was last cleared, sorted.
+     * Names only used by evicted events may have been dropped.
+     *
+     * @return logger names
+     */
+    public synchronized List<String> loggers() {
+        return loggerNames.stream().filter(n -> !n.isEmpty()).sorted().toList();
+    }
+
+    /**
+     * Returns the names of the threads of the events appended since the store was last cleared, sorted.
+     * Names only used by evicted events may have been dropped.
+     *
+     * @return thread names
+     */
+    public synchronized List<String> threads() {
+        return threadNames.stream().filter(n -> !n.isEmpty()).sorted().toList();
+    }
+
+    /**
+     * Evicts every row. Sequence numbers carry on from where they were, so rows are never renumbered.
+     */
+    public synchronized void clear() {
+        first = next;
+        longestLine = 0;
+        index.clear();
+        loggerIds.clear();
+        loggerNames.clear();
+        threadIds.clear();
+        threadNames.clear();
+        namesLimit = MIN_NAMES_LIMIT;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getTextCapacity() {
+        return textCapacity;
+    }
+
+    private String expandAndTruncate(String line) {
+        if (line.indexOf('\t') >= 0) {
+            line = line.replace("\t", TAB);
+        }
+        if (line.length() > maxLineLength) {
+            line = line.substring(0, maxLineLength);
+        }
+        return line;
+    }
+
+    private void appendLine(byte level, int logger, int thread, boolean continuation, byte[] bytes) {
+        // A line never straddles two chunks, so skip the rest of the chunk if it does not fit
+        var offset = textWritten;
+        var offsetInChunk = (int) (offset % chunkSize);
+        if (offsetInChunk + bytes.length > chunkSize) {
+            offset += chunkSize - offsetInChunk;
+        }
+        var end = offset + bytes.length;
+
+        while (first < next && (next - first >= capacity || textOffsets[slot(first)] < end - textCapacity)) {
+            first++;
+        }
+
+        var position = offset % textCapacity;
+        var chunk = (int) (position / chunkSize);
+        if (isNull(chunks[chunk])) {
+            chunks[chunk] = ByteBuffer.allocateDirect(chunkSize);
+        }
+        chunks[chunk].put((int) (position % chunkSize), bytes);
+
+        var slot = slot(next);
+        textOffsets[slot] = offset;
+        textLengths[slot] = bytes.length;
+        levels[slot] = level;
+        loggers[slot] = logger;
+        threads[slot] = thread;
+        continuations[slot] = continuation;
+
+        next++;
+        textWritten = end;
+    }
+
+    private int slot(long sequence) {
+        return (int) (sequence % capacity);
+    }
+
+    private static boolean isBlank(String value) {
+        return isNull(value) || value.isBlank();
+    }
+
+    /**
+     * Interns again only the logger and thread names of the rows held, renumbering the rows to match.
+     * The next compaction waits until there are twice as many names as are still in use, so the pass over the rows
+     * is spread over at least that many new names.
+     */
+    private void compactNames() {
+        var loggersBefore = new ArrayList<>(loggerNames);
+        var threadsBefore = new ArrayList<>(threadNames);
+        var loggerRemap = new int[loggersBefore.size()];
+        var threadRemap = new int[threadsBefore.size()];
+        Arrays.fill(loggerRemap, -1);
+        Arrays.fill(threadRemap, -1);
+
+        loggerIds.clear();
+        loggerNames.clear();
+        threadIds.clear();
+        threadNames.clear();
+
+        for (var sequence = first; sequence < next; sequence++) {
+            var slot = slot(sequence);
+            loggers[slot] = remap(loggerRemap, loggers[slot], loggersBefore, loggerIds, loggerNames);
+            threads[slot] = remap(threadRemap, threads[slot], threadsBefore, threadIds, threadNames);
+        }
+
+        namesLimit = Math.max(MIN_NAMES_LIMIT, Math.max(loggerNames.size(), threadNames.size()) * 2);
+    }
+
+    private static int remap(int[] remapped, int id, List<String> before, Map<String, Integer> ids,
+                             List<String> names) {
+        if (remapped[id] < 0) {
+            remapped[id] = intern(ids, names, before.get(id));
+        }
+        return remapped[id];
+    }
+
+    private static int intern(Map<String, Integer> ids, List<String> names, String name) {
+        return ids.computeIfAbsent(isNull(name) ? "" : name, n -> {
+            names.add(n);
+            return names.size() - 1;
+        });
+    }
+
+    /**
+     * Returns the values found in both arrays, each ordered most recent first.
+     */
+    private static long[] intersect(long[] a, long[] b) {
+        var result = new long[Math.min(a.length, b.length)];
+        var count = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            if (a[i] == b[j]) {
+                result[count++] = a[i];
+                i++;
+                j++;
+            } else if (a[i] > b[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    private static byte levelCode(Level level) {
+        for (byte code = 0; code < LEVELS.length; code++) {
+            if (LEVELS[code].equals(level)) {
+                return code;
+            }
+        }
+        return INFO;
+    }
+
+    /**
+     * Resolves a {@link Filter} against the interned names, to match rows by their slot.
+     */
+    private final class Matcher {
+
+        private final int level;
+        private final boolean[] loggerMatches;
+        private final int thread;
+
+        Matcher(Filter filter) {
+            this.level = isNull(filter.level()) ? 0 : levelCode(filter.level());
+            this.loggerMatches = isBlank(filter.logger()) ? null : loggersUnder(filter.logger().trim());
+            this.thread = isBlank(filter.thread()) ? -1 : threadIds.getOrDefault(filter.thread().trim(), -2);
+        }
+
+        boolean matchesNothing() {
+            return thread == -2;
+        }
+
+        boolean matches(int slot) {
+            return levels[slot] >= level
+                    && (isNull(loggerMatches) || loggerMatches[loggers[slot]])
+                    && (thread < 0 || threads[slot] == thread);
+        }
+
+        /**
+         * Matches a logger and its descendants, as logback does when configuring a logger by name.
+         */
+        private boolean[] loggersUnder(String name) {
+            var matches = new boolean[loggerNames.size()];
+            for (var id = 0; id < matches.length; id++) {
+                var logger = loggerNames.get(id);
+                matches[id] = logger.equals(name) || logger.startsWith(name + ".");
+            }
+            return matches;
+        }
+
+    }
+
+    /**
+     * Criteria for {@link #find}, where a {@code null} or blank criterion matches every row.
+     *
+     * @param level  minimum level
+     * @param logger logger name, also matching its descendants
+     * @param thread thread name
+     * @param text   words that must all appear in the event, ignoring case
+     */
+    public record Filter(Level level, String logger, String thread, String text) {
+
+        public static final Filter NONE = new Filter(null, null, null, null);
+
+        public boolean isNone() {
+            return (isNull(level) || level.levelInt <= Level.TRACE_INT)
+                    && isBlank(logger) && isBlank(thread) && isBlank(text);
+        }
+
+    }
+
+    /**
+     * Rows found by {@link #find}, in order, and the sequence number to find further matches from.
+     */
+    public record Matches(long[] rows, long end) {}
+
+    /**
+     * A line of a logged event.
+     */
+    public record Row(long sequence, Level level, String text) {
+
+        @Override
+        public String toString() {
+            return text;
+        }
+
+    }
+
+    /**
+     * The sequence numbers of the rows held, from {@code first} inclusive to {@code end} exclusive.
+     */
+    public record Range(long first, long end) {
+
+        public int size() {
+            return (int) (end - first);
+        }
+
+    }
+
+}
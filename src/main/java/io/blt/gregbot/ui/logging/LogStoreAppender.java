@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2024 Mike Cowan.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+
+package io.blt.gregbot.ui.logging;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.PatternLayout;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.UnsynchronizedAppenderBase;
+import io.blt.util.Obj;
+import java.util.Objects;
+import org.slf4j.LoggerFactory;
+
+import static java.util.Objects.nonNull;
+
+/**
+ * Logback appender that appends formatted events to a {@link LogStore}, for display by a virtualized view.
+ * <p>
+ *     Each event is formatted on the logging thread and copied into the store, which holds the most recent
+ *     {@code capacity} lines within {@code textCapacity} bytes of off-heap memory. Views poll the store for new lines,
+ *     so logging threads never wait on the Event Dispatch Thread.
+ * </p>
+ * <p>
+ *     The level, logger and thread of each event are kept with its lines, and the words of its message, key value
+ *     pairs and exception messages are indexed, up to {@code indexCapacity} postings, so the store can be filtered
+ *     and searched.
+ * </p>
+ */
+public class LogStoreAppender extends UnsynchronizedAppenderBase<ILoggingEvent> {
+
+    private LogStore store;
+
+    private int capacity = 1_000_000;
+    private long textCapacity = 128L << 20;
+    private int indexCapacity = 2_000_000;
+    private PatternLayout layout = Obj.tap(PatternLayout::new,
+            p -> p.setPattern("%d{HH:mm:ss.SSS} [%thread] %-5level %logger{36} -%kvp- %msg%n"));
+
+    /**
+     * Returns the {@link LogStore} of the specified {@code LogStoreAppender}, otherwise {@code null}.
+     *
+     * @param loggerName   logger name e.g,. from {@code logback.xml} {@code <logger name="io.blt.gregbot" ...>}
+     * @param appenderName appender name e.g,. from {@code logback.xml} {@code <appender name="PANEL" ...>}
+     * @return {@link LogStore} instance or {@code null} if logger and/or appender is not found or not started
+     */
+    public static LogStore store(String loggerName, String appenderName) {
+        if (LoggerFactory.getLogger(loggerName) instanceof Logger logger) {
+            if (logger.getAppender(appenderName) instanceof LogStoreAppender appender) {
+                return appender.store;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void start() {
+        layout.setContext(context);
+        layout.start();
+
+        store = new LogStore(Math.max(capacity, 1), Math.max(textCapacity, 1), Math.max(indexCapacity, 1));
+
+        super.start();
+    }
+
+    @Override
+    protected void append(ILoggingEvent event) {
+        store.append(event.getLevel(), event.getLoggerName(), event.getThreadName(), format(event), searchable(event));
+    }
+
+    /**
+     * Formats {@code event} with the layout, one thread at a time. Appends are not serialised by this appender, but
+     * the layout's converters keep state between calls, e.g. a cached date, so are not safe to use concurrently.
+     */
+    private String format(ILoggingEvent event) {
+        var layout = this.layout;
+        synchronized (layout) {
+            return layout.doLayout(event);
+        }
+    }
+
+    private static String searchable(ILoggingEvent event) {
+        var text = new StringBuilder(Objects.requireNonNullElse(event.getFormattedMessage(), ""));
+        if (nonNull(event.getKeyValuePairs())) {
+            event.getKeyValuePairs().forEach(p -> text.append(' ').append(p.key).append('=').append(p.value));
+        }
+        for (var throwable = event.getThrowableProxy(); nonNull(throwable); throwable = throwable.getCause()) {
+            text.append(' ').append(throwable.getClassName()).append(": ").append(throwable.getMessage());
+        }
+        return text.toString();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public long getTextCapacity() {
+        return textCapacity;
+    }
+
+    public void setTextCapacity(long textCapacity) {
+        this.textCapacity = textCapacity;
+    }
+
+    public int getIndexCapacity() {
+        return indexCapacity;
+    }
+
+    public void setIndexCapacity(int indexCapacity) {
+        this.indexCapacity = indexCapacity;
+    }
+
+    public PatternLayout getLayout() {
+        return layout;
+    }
+
+    public void setLayout(PatternLayout layout) {
+        this.layout = layout;
+    }
+
+}
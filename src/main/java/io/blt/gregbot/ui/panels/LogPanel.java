@@ -10,6 +10,7 @@ package io.blt.gregbot.ui.panels;
 
 import com.formdev.flatlaf.fonts.jetbrains_mono.FlatJetBrainsMonoFont;
 import io.blt.gregbot.ApplicationResources.ToolIcon;
+import io.blt.gregbot.ui.components.LogFilterBar;
 import io.blt.gregbot.ui.components.LogbackPane;
 
 import static io.blt.gregbot.ApplicationResources.toolIcon;
@@ -30,6 +31,7 @@ public class LogPanel extends JPanel {
 
     public LogPanel() {
         logbackPane.setFont(new Font(FlatJetBrainsMonoFont.FAMILY, Font.PLAIN, 13));
+        contentPane.add(new LogFilterBar(logbackPane), BorderLayout.NORTH);
 
         lineWrapButton.setIcon(toolIcon(ToolIcon.WRAP));
         snapToBottomButton.setIcon(toolIcon(ToolIcon.ALIGN_BOTTOM));
@@ -37,7 +39,7 @@ public class LogPanel extends JPanel {
 
         lineWrapButton.addItemListener(l -> logbackPane.toggleLineWrap());
         snapToBottomButton.addItemListener(l -> logbackPane.toggleAutoCaretToBottom());
-        clearAllButton.addActionListener(l -> logbackPane.setText(null));
+        clearAllButton.addActionListener(l -> logbackPane.clear());
 
         lineWrapButton.setSelected(true);
         snapToBottomButton.setSelected(true);
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2024 Mike Cowan.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+
+package io.blt.gregbot.core.execution;
+
+import com.github.tomakehurst.wiremock.junit5.WireMockTest;
+import io.blt.gregbot.core.project.Project.Client;
+import io.blt.gregbot.core.project.Project.Collection;
+import io.blt.gregbot.core.project.Project.Collection.Folder;
+import io.blt.gregbot.core.project.Project.Collection.Request;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.ok;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlMatching;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.verify;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+@WireMockTest(proxyMode = true)
+class CollectionRunnerTest {
+
+    final RequestExecutor executor = new RequestExecutor(
+            new Client(Client.Version.HTTP_1_1, Client.Redirect.NORMAL, 5, 5, null));
+
+    final Collection collection = new Collection(
+            Map.of(
+                    "Health Check", request("/ping"),
+                    "List Terminators", request("/terminators"),
+                    "Fetch Terminator", request("/terminators/T-800"),
+                    "Shutdown Terminator", request("/terminators/T-800/shutdown")),
+            new Folder(
+                    List.of("Health Check"),
+                    Map.of(
+                            "Terminator", new Folder(
+                                    List.of("List Terminators", "Fetch Terminator"),
+                                    Map.of("Emergency", new Folder(List.of("Shutdown Terminator"), Map.of()))),
+                            "Emergency", new Folder(List.of("Shutdown Terminator"), Map.of()))));
+
+    final ConcurrentLinkedQueue<CollectionRunner.Result> results = new ConcurrentLinkedQueue<>();
+
+    @BeforeEach
+    void beforeEach() {
+        stubFor(get(urlMatching("/.*"))
+                .withHost(equalTo("mock.domain"))
+                .willReturn(ok().withFixedDelay(100)));
+    }
+
+    @Test
+    void runShouldExecuteEveryRequestInNestedFolders() throws InterruptedException {
+        new CollectionRunner(executor, 10)
+                .run(collection, collection.layout(), Map.of(), results::add);
+
+        assertThat(results)
+                .allMatch(CollectionRunner.Result::isSent)
+                .extracting(CollectionRunner.Result::name)
+                .containsExactlyInAnyOrder("Health Check", "List Terminators", "Fetch Terminator", "Shutdown Terminator");
+    }
+
+    @Test
+    void runShouldExecuteRequestReferencedByManyFoldersOnce() throws InterruptedException {
+        new CollectionRunner(executor, 10)
+                .run(collection, collection.layout(), Map.of(), results::add);
+
+        verify(1, getRequestedFor(urlPathEqualTo("/terminators/T-800/shutdown")));
+    }
+
+    @Test
+    void runShouldOnlyExecuteRequestsWithinFolder() throws InterruptedException {
+        new CollectionRunner(executor, 10)
+                .run(collection, collection.layout().folders().get("Emergency"), Map.of(), results::add);
+
+        assertThat(results)
+                .extracting(CollectionRunner.Result::name)
+                .containsExactly("Shutdown Terminator");
+    }
+
+    @Test
+    void runShouldReturnErrorForUnknownRequest() throws InterruptedException {
+        var folder = new Folder(List.of("Unknown"), Map.of());
+
+        new CollectionRunner(executor, 10)
+                .run(collection, folder, Map.of(), results::add);
+
+        assertThat(results)
+                .singleElement()
+                .satisfies(r -> assertThat(r.isSent()).isFalse())
+                .extracting(CollectionRunner.Result::error)
+                .isInstanceOf(NoSuchElementException.class);
+    }
+
+    @ParameterizedTest
+    @CsvSource(nullValues = "null", value = {
+            "1, null",
+            "10, 1"
+    })
+    void runShouldNotExceedConcurrencyOrStreamsPerOrigin(int concurrency, Integer maxConcurrentStreams)
+            throws InterruptedException {
+        var limited = new RequestExecutor(
+                new Client(Client.Version.HTTP_1_1, Client.Redirect.NORMAL, 5, 5, maxConcurrentStreams));
+
+        new CollectionRunner(limited, concurrency)
+                .run(collection, collection.layout(), Map.of(), results::add);
+
+        assertThat(limited.metrics().get("http://mock.domain"))
+                .extracting(RequestExecutor.HostMetrics::peakInFlight, RequestExecutor.HostMetrics::completed)
+                .containsExactly(1, 4L);
+    }
+
+    @Test
+    void runShouldNotHoldUpRequestsToOtherOriginsWhileQueuedForStream() throws InterruptedException {
+        stubFor(get(urlMatching("/.*"))
+                .withHost(equalTo("other.domain"))
+                .willReturn(ok()));
+        var limited = new RequestExecutor(new Client(Client.Version.HTTP_1_1, Client.Redirect.NORMAL, 5, 5, 1));
+        var mixed = new Collection(
+                Map.of(
+                        "List Terminators", request("/terminators"),
+                        "Fetch Terminator", request("/terminators/T-800"),
+                        "Health Check", new Request(Map.of(), Request.Verb.GET, "http://other.domain/ping")),
+                new Folder(List.of("List Terminators", "Fetch Terminator", "Health Check"), Map.of()));
+
+        // Without giving up its permit, the request queued behind "List Terminators" would keep "Health Check" waiting
+        new CollectionRunner(limited, 2)
+                .run(mixed, mixed.layout(), Map.of(), results::add);
+
+        assertThat(results)
+                .extracting(CollectionRunner.Result::name)
+                .containsExactly("Health Check", "List Terminators", "Fetch Terminator");
+    }
+
+    @Test
+    void runShouldReleasePermitsWhenInterrupted() throws InterruptedException {
+        var runner = new CollectionRunner(executor, 1);
+
+        var interrupted = new Thread(() -> {
+            try {
+                runner.run(collection, collection.layout(), Map.of(), r -> {});
+            } catch (InterruptedException e) {
+                // Expected
+            }
+        });
+        interrupted.start();
+        Thread.sleep(50);
+        interrupted.interrupt();
+        interrupted.join(5_000);
+
+        // The permit is shared with later runs, so one left held would block them forever
+        assertTimeoutPreemptively(Duration.ofSeconds(5),
+                () -> runner.run(collection, collection.layout(), Map.of(), results::add));
+        assertThat(results)
+                .hasSize(4);
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "0",
+            "-1"
+    })
+    void constructorShouldThrowWhenConcurrencyIsNotPositive(int concurrency) {
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> new CollectionRunner(executor, concurrency));
+    }
+
+    private static Request request(String path) {
+        return new Request(Map.of(), Request.Verb.GET, "http://mock.domain" + path);
+    }
+
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2024 Mike Cowan.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+
+package io.blt.gregbot.core.execution;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class LatencyRecorderTest {
+
+    final LatencyRecorder recorder = new LatencyRecorder();
+
+    @Test
+    void recordShouldMeasureCorrectedLatencyFromIntendedTime() {
+        recorder.record(ms(0), ms(400), ms(500));
+
+        assertThat(recorder.intervalCorrected().getMaxValue())
+                .isCloseTo(500_000L, within(1_000L));
+    }
+
+    @Test
+    void recordShouldMeasureUncorrectedLatencyFromSentTime() {
+        recorder.record(ms(0), ms(400), ms(500));
+
+        assertThat(recorder.intervalUncorrected().getMaxValue())
+                .isCloseTo(100_000L, within(200L));
+    }
+
+    @Test
+    void recordShouldRecordSameLatencyWhenSentOnSchedule() {
+        recorder.record(ms(100), ms(100), ms(200));
+
+        assertThat(recorder.intervalCorrected().getMaxValue())
+                .isEqualTo(recorder.intervalUncorrected().getMaxValue());
+    }
+
+    @Test
+    void recordUnsentShouldOnlyRecordCorrectedLatency() {
+        recorder.recordUnsent(ms(0), ms(500));
+
+        assertThat(recorder.intervalCorrected().getMaxValue())
+                .isCloseTo(500_000L, within(1_000L));
+        assertThat(recorder.intervalUncorrected().getTotalCount())
+                .isZero();
+    }
+
+    @Test
+    void intervalShouldOnlyContainSamplesSinceLastCall() {
+        recorder.record(0, 0, ms(1));
+        recorder.intervalCorrected();
+        recorder.record(0, 0, ms(1));
+
+        assertThat(recorder.intervalCorrected().getTotalCount())
+                .isOne();
+    }
+
+    @Test
+    void recordShouldNotLoseSamplesWhenCalledConcurrently() throws InterruptedException {
+        var pool = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8; i++) {
+            pool.execute(() -> {
+                for (int j = 0; j < 10_000; j++) {
+                    recorder.record(0, 0, ms(1));
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(10, TimeUnit.SECONDS);
+
+        assertThat(recorder.intervalCorrected().getTotalCount())
+                .isEqualTo(80_000L);
+    }
+
+    private static long ms(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2024 Mike Cowan.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+
+package io.blt.gregbot.core.execution;
+
+import com.github.tomakehurst.wiremock.junit5.WireMockTest;
+import io.blt.gregbot.core.plugin.TestableIdentityPlugin;
+import io.blt.gregbot.core.project.Project.Client;
+import io.blt.gregbot.core.project.Project.Collection.Request;
+import io.blt.gregbot.core.project.Project.Identity;
+import io.blt.gregbot.core.project.Project.Plugin;
+import io.blt.gregbot.core.services.IdentityService;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.ok;
+import static com.github.tomakehurst.wiremock.client.WireMock.serverError;
+import static com.github.tomakehurst.wiremock.client.WireMock.status;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+@WireMockTest(proxyMode = true)
+class LoadRunnerTest {
+
+    final LoadRunner runner = new LoadRunner(new RequestExecutor(
+            new Client(Client.Version.HTTP_1_1, Client.Redirect.NORMAL, 5, 5, null)));
+
+    final Request request = new Request(Map.of(), Request.Verb.GET, "http://mock.domain/mock/path");
+
+    @Test
+    void runShouldSendAtConstantRateForOpenModel() throws Exception {
+        stubFor(get("/mock/path")
+                .withHost(equalTo("mock.domain"))
+                .willReturn(ok()));
+
+        var report = runner.run(request, Map.of(), LoadRunner.Profile.constantRate(20, Duration.ofSeconds(1)));
+
+        assertThat(report.requests())
+                .isEqualTo(20);
+        assertThat(report.errors())
+                .isZero();
+    }
+
+    @Test
+    void runShouldSendContinuouslyForClosedModel() throws Exception {
+        stubFor(get("/mock/path")
+                .withHost(equalTo("mock.domain"))
+                .willReturn(ok().withFixedDelay(50)));
+
+        var report = runner.run(request, Map.of(), LoadRunner.Profile.workers(2, Duration.ofSeconds(1)));
+
+        // Each worker waits at least 50 ms per request, but how many fit in the second depends on the machine
+        assertThat(report.requests())
+                .isPositive()
+                .isLessThanOrEqualTo(42L);
+        assertThat(report.p50())
+                .isGreaterThanOrEqualTo(Duration.ofMillis(50));
+        assertThat(report.p999())
+                .isGreaterThanOrEqualTo(report.p99())
+                .isGreaterThanOrEqualTo(report.p90())
+                .isGreaterThanOrEqualTo(report.p50());
+        assertThat(report.throughput())
+                .hasSize(1);
+    }
+
+    @Test
+    void runShouldDropRequestsDueWhileMaxInFlightForOpenModel() throws Exception {
+        stubFor(get("/mock/path")
+                .withHost(equalTo("mock.domain"))
+                .willReturn(ok().withFixedDelay(200)));
+
+        var report = runner.run(request, Map.of(), LoadRunner.Profile.constantRate(20, Duration.ofSeconds(1), 1));
+
+        assertThat(report.dropped())
+                .isPositive();
+        assertThat(report.requests() + report.dropped())
+                .isEqualTo(20);
+    }
+
+    @Test
+    void runShouldRecordLatencyOfDroppedRequestsForOpenModel() throws Exception {
+        stubFor(get("/mock/path")
+                .withHost(equalTo("mock.domain"))
+                .willReturn(ok().withFixedDelay(200)));
+
+        var report = runner.run(request, Map.of(), LoadRunner.Profile.constantRate(20, Duration.ofSeconds(1), 1));
+
+        assertThat(report.latencies().getTotalCount())
+                .isEqualTo(20);
+        assertThat(report.serviceTimes().getTotalCount())
+                .isEqualTo(report.requests());
+    }
+
+    @Test
+    void runShouldCountRequestsCompletingAfterDurationAsDrained() throws Exception {
+        stubFor(get("/mock/path")
+                .withHost(equalTo("mock.domain"))
+                .willReturn(ok().withFixedDelay(300)));
+
+        var report = runner.run(request, Map.of(), LoadRunner.Profile.workers(1, Duration.ofSeconds(1)));
+
+        assertThat(report.drained())
+                .isEqualTo(1);
+        assertThat(Arrays.stream(report.throughput()).sum() + report.drained())
+                .isEqualTo(report.requests());
+    }
+
+    @Test
+    void reportShouldNotShareThroughput() throws Exception {
+        stubFor(get("/mock/path")
+                .withHost(equalTo("mock.domain"))
+                .willReturn(ok()));
+
+        var report = runner.run(request, Map.of(), LoadRunner.Profile.constantRate(10, Duration.ofSeconds(1)));
+        report.throughput()[0] = -1;
+
+        assertThat(report.throughput()[0])
+                .isNotNegative();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {400, 404, 500, 503})
+    void runShouldCountErrorStatusAsError(int status) throws Exception {
+        stubFor(get("/mock/path")
+                .withHost(equalTo("mock.domain"))
+                .willReturn(status(status)));
+
+        var report = runner.run(request, Map.of(), LoadRunner.Profile.constantRate(10, Duration.ofSeconds(1)));
+
+        assertThat(report.errorRate())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    void runShouldUseIdentityVariables() throws Exception {
+        stubFor(get("/mock/path")
+                .withHost(equalTo("mock.domain"))
+                .willReturn(serverError()));
+
+        stubFor(get("/mock/path")
+                .withHost(equalTo("mock.domain"))
+                .withHeader("x-key", equalTo("identity-plugin-value"))
+                .willReturn(ok()));
+
+        var identities = new IdentityService(
+                Map.of(),
+                Map.of("MockIdentity",
+                        new Identity(null, null, Map.of(),
+                                new Plugin(TestableIdentityPlugin.class.getName(), Map.of()))));
+
+        var authenticated = new Request(
+                Map.of("x-key", "{{identity-plugin-key}}"), Request.Verb.GET, "{{host}}/mock/path");
+
+        var report = runner.run(identities, "MockIdentity", Map.of("host", "http://mock.domain"),
+                authenticated, LoadRunner.Profile.constantRate(10, Duration.ofSeconds(1)));
+
+        assertThat(report.errors())
+                .isZero();
+    }
+
+    @Test
+    void profileShouldThrowWhenLoadIsNotPositive() {
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> LoadRunner.Profile.workers(0, Duration.ofSeconds(1)));
+    }
+
+    @Test
+    void profileShouldThrowWhenDurationIsNotPositive() {
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> LoadRunner.Profile.constantRate(1, Duration.ZERO));
+    }
+
+    @Test
+    void profileShouldThrowWhenMaxInFlightIsNotPositive() {
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> LoadRunner.Profile.constantRate(1, Duration.ofSeconds(1), 0));
+    }
+
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2024 Mike Cowan.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+
+package io.blt.gregbot.core.execution;
+
+import com.github.tomakehurst.wiremock.junit5.WireMockTest;
+import io.blt.gregbot.core.project.Project.Client;
+import io.blt.gregbot.core.project.Project.Collection.Request;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.any;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.ok;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+@WireMockTest(proxyMode = true)
+class RequestExecutorTest {
+
+    final RequestExecutor executor = new RequestExecutor(
+            new Client(Client.Version.HTTP_1_1, Client.Redirect.NORMAL, 5, 5, null));
+
+    @Test
+    void executeShouldRenderVariablesInPathAndHeaders() throws RequestExecutionException {
+        stubFor(get("/terminators/T-800")
+                .withHost(equalTo("mock.domain"))
+                .withHeader("x-api-key", equalTo("atari-80C88"))
+                .willReturn(ok("Hasta la vista")));
+
+        var request = new Request(
+                Map.of("x-api-key", "{{api_key}}"),
+                Request.Verb.GET,
+                "{{host}}/terminators/{{model}}");
+
+        var result = executor.execute(request, Map.of(
+                "host", "http://mock.domain",
+                "model", "T-800",
+                "api_key", "atari-80C88"));
+
+        assertThat(result.response())
+                .extracting(HttpResponse::statusCode)
+                .isEqualTo(200);
+
+        assertThat(new String(result.response().body()))
+                .isEqualTo("Hasta la vista");
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = Request.Verb.class, names = {"GET", "POST", "PUT", "DELETE", "PATCH", "OPTIONS"})
+    void executeShouldUseRequestVerb(Request.Verb verb) throws RequestExecutionException {
+        stubFor(any(urlEqualTo("/mock/path"))
+                .withHost(equalTo("mock.domain"))
+                .willReturn(ok(verb.name())));
+
+        var result = executor.execute(new Request(Map.of(), verb, "http://mock.domain/mock/path"), Map.of());
+
+        assertThat(new String(result.response().body()))
+                .isEqualTo(verb.name());
+    }
+
+    @ParameterizedTest
+    @EnumSource(Client.Version.class)
+    void executeShouldSupportVersion(Client.Version version) throws RequestExecutionException {
+        stubFor(get("/mock/path")
+                .withHost(equalTo("mock.domain"))
+                .willReturn(ok()));
+
+        var executor = new RequestExecutor(new Client(version, Client.Redirect.NORMAL, 5, 5, null));
+
+        var result = executor.execute(
+                new Request(Map.of(), Request.Verb.GET, "http://mock.domain/mock/path"), Map.of());
+
+        assertThat(result.response())
+                .extracting(HttpResponse::statusCode)
+                .isEqualTo(200);
+    }
+
+    @Test
+    void executeShouldLimitConcurrentStreamsPerOrigin() throws Exception {
+        stubFor(get("/mock/path")
+                .withHost(equalTo("mock.domain"))
+                .willReturn(ok().withFixedDelay(200)));
+
+        var executor = new RequestExecutor(new Client(Client.Version.HTTP_2, Client.Redirect.NORMAL, 5, 5, 1));
+        var request = new Request(Map.of(), Request.Verb.GET, "http://mock.domain/mock/path");
+
+        var first = CompletableFuture.supplyAsync(() -> executeUnchecked(executor, request));
+        var second = CompletableFuture.supplyAsync(() -> executeUnchecked(executor, request));
+
+        var firstStarted = first.get().timings().started();
+        var secondStarted = second.get().timings().started();
+
+        assertThat(Duration.between(firstStarted, secondStarted).abs())
+                .isGreaterThanOrEqualTo(Duration.ofMillis(200));
+    }
+
+    @Test
+    void executeShouldRecordTimings() throws RequestExecutionException {
+        stubFor(get("/mock/path")
+                .withHost(equalTo("mock.domain"))
+                .willReturn(ok("body").withFixedDelay(50)));
+
+        var result = executor.execute(
+                new Request(Map.of(), Request.Verb.GET, "http://mock.domain/mock/path"), Map.of());
+
+        assertThat(result.timings().started())
+                .isNotNull();
+        assertThat(result.timings().firstByte().toMillis())
+                .isGreaterThanOrEqualTo(50);
+        assertThat(result.timings().total())
+                .isGreaterThanOrEqualTo(result.timings().firstByte());
+        assertThat(result.timings().download().isNegative())
+                .isFalse();
+    }
+
+    @Test
+    void executeShouldSendUsingDedicatedExecutorWhenConfigured() throws RequestExecutionException {
+        stubFor(get("/mock/path")
+                .withHost(equalTo("mock.domain"))
+                .willReturn(ok()));
+
+        var executor = new RequestExecutor(
+                new Client(Client.Version.HTTP_1_1, Client.Redirect.NORMAL, 5, 5, null, 2, false));
+
+        var result = executor.execute(
+                new Request(Map.of(), Request.Verb.GET, "http://mock.domain/mock/path"), Map.of());
+
+        assertThat(result.response())
+                .extracting(HttpResponse::statusCode)
+                .isEqualTo(200);
+    }
+
+    @Test
+    void executeShouldNegotiateAndDecodeCompressedResponseWhenEnabled() throws RequestExecutionException {
+        var body = "{ \"name\": \"Greg\" }".repeat(100);
+        stubFor(get("/mock/path")
+                .withHost(equalTo("mock.domain"))
+                .withHeader("Accept-Encoding", equalTo("gzip, deflate"))
+                .willReturn(ok(body)));
+
+        var executor = new RequestExecutor(
+                new Client(Client.Version.HTTP_1_1, Client.Redirect.NORMAL, 5, 5, null, null, true));
+
+        var result = executor.execute(
+                new Request(Map.of(), Request.Verb.GET, "http://mock.domain/mock/path"), Map.of());
+
+        assertThat(new String(result.response().body()))
+                .isEqualTo(body);
+        assertThat(executor.transferMetrics().decodedBytes())
+                .isEqualTo(body.length());
+    }
+
+    @Test
+    void sendShouldDiscardBodyWhenAskedTo() throws Exception {
+        stubFor(get("/mock/path")
+                .withHost(equalTo("mock.domain"))
+                .willReturn(ok("body")));
+
+        var request = new Request(Map.of(), Request.Verb.GET, "http://mock.domain/mock/path");
+
+        var result = executor.send(request, executor.prepare(request, Map.of()), RequestExecutor.ResponseBody.DISCARD);
+
+        assertThat(result.response())
+                .extracting(HttpResponse::statusCode, HttpResponse::body)
+                .containsExactly(200, null);
+        assertThat(result.bodyFile())
+                .isNull();
+    }
+
+    @Test
+    void sendShouldNotDecodeDiscardedBodyWhenCompressionIsEnabled() throws Exception {
+        stubFor(get("/mock/path")
+                .withHost(equalTo("mock.domain"))
+                .willReturn(ok("{ \"name\": \"Greg\" }".repeat(100))));
+
+        var executor = new RequestExecutor(
+                new Client(Client.Version.HTTP_1_1, Client.Redirect.NORMAL, 5, 5, null, null, true));
+        var request = new Request(Map.of(), Request.Verb.GET, "http://mock.domain/mock/path");
+
+        var result = executor.send(request, executor.prepare(request, Map.of()), RequestExecutor.ResponseBody.DISCARD);
+
+        assertThat(result.response().statusCode())
+                .isEqualTo(200);
+        assertThat(executor.transferMetrics().decodedBytes())
+                .isZero();
+    }
+
+    @Test
+    void sendShouldWriteBodyToFileWhenAskedTo() throws Exception {
+        stubFor(get("/mock/path")
+                .withHost(equalTo("mock.domain"))
+                .willReturn(ok("body")));
+
+        var request = new Request(Map.of(), Request.Verb.GET, "http://mock.domain/mock/path");
+
+        var result = executor.send(request, executor.prepare(request, Map.of()), RequestExecutor.ResponseBody.FILE);
+        try {
+            assertThat(result.response().body())
+                    .isNull();
+            assertThat(result.bodyFile())
+                    .hasContent("body");
+        } finally {
+            Files.deleteIfExists(result.bodyFile());
+        }
+    }
+
+    @Test
+    void metricsShouldReportRequestsPerOrigin() throws Exception {
+        stubFor(get("/mock/path")
+                .withHost(equalTo("mock.domain"))
+                .willReturn(ok().withFixedDelay(200)));
+
+        var executor = new RequestExecutor(new Client(Client.Version.HTTP_1_1, Client.Redirect.NORMAL, 5, 5, 1));
+        var request = new Request(Map.of(), Request.Verb.GET, "http://mock.domain/mock/path");
+
+        var first = CompletableFuture.supplyAsync(() -> executeUnchecked(executor, request));
+        var second = CompletableFuture.supplyAsync(() -> executeUnchecked(executor, request));
+        CompletableFuture.allOf(first, second).get();
+
+        assertThat(executor.metrics())
+                .containsOnlyKeys("http://mock.domain")
+                .extractingByKey("http://mock.domain")
+                .isEqualTo(new RequestExecutor.HostMetrics(0, 0, 1, 2, 0));
+    }
+
+    @Test
+    void executeShouldThrowWhenVariableIsMissing() {
+        var request = new Request(Map.of(), Request.Verb.GET, "{{host}}/mock/path");
+
+        assertThatExceptionOfType(RequestExecutionException.class)
+                .isThrownBy(() -> executor.execute(request, Map.of()))
+                .withMessage("No value for variable : host");
+    }
+
+    @Test
+    void executeShouldThrowWhenPathIsNotAUri() {
+        var request = new Request(Map.of(), Request.Verb.GET, "not a uri");
+
+        assertThatExceptionOfType(RequestExecutionException.class)
+                .isThrownBy(() -> executor.execute(request, Map.of()))
+                .withCauseInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static Execution executeUnchecked(RequestExecutor executor, Request request) {
+        try {
+            return executor.execute(request, Map.of());
+        } catch (RequestExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
@@ -13,10 +13,17 @@ import io.blt.gregbot.plugin.Plugin;
 import io.blt.gregbot.plugin.PluginException;
 import io.blt.gregbot.plugin.identities.IdentityPlugin;
 import io.blt.gregbot.plugin.secrets.SecretPlugin;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
@@ -174,6 +181,114 @@ class PluginLoaderTest {
         }
     }
 
+    @Nested
+    class Aliases {
+
+        @Test
+        void loadShouldReturnInstanceOfAliasedPlugin() throws PluginException {
+            var plugin = new Project.Plugin("TestableSecret", Map.of());
+
+            var result = new PluginLoader<>(SecretPlugin.class).load(plugin);
+
+            assertThat(result)
+                    .isInstanceOf(TestableSecretPlugin.class);
+        }
+
+        @Test
+        void loadShouldThrowWhenAliasIsForAnotherPluginInterface() {
+            var plugin = new Project.Plugin("TestableIdentity", Map.of());
+
+            assertThatExceptionOfType(NoSuchElementException.class)
+                    .isThrownBy(() -> new PluginLoader<>(SecretPlugin.class).load(plugin))
+                    .withMessage("Cannot find plugin 'TestableIdentity'");
+        }
+
+        @Test
+        void pluginsShouldNotReturnAliases() {
+            var plugins = new PluginLoader<>(SecretPlugin.class).plugins();
+
+            assertThat(plugins)
+                    .doesNotContain("TestableSecret");
+        }
+
+    }
+
+    @Nested
+    class PluginsDirectory {
+
+        @TempDir
+        Path directory;
+
+        @Test
+        void pluginsShouldReturnPluginTypesFromJarsWithoutLoadingThem() throws IOException {
+            writeJar("external.jar", "com.example.ExternalSecretPlugin", Map.of());
+
+            var plugins = new PluginLoader<>(SecretPlugin.class, directory).plugins();
+
+            assertThat(plugins)
+                    .contains(TestableSecretPlugin.class.getName(), "com.example.ExternalSecretPlugin");
+        }
+
+        @Test
+        void loadShouldResolveAliasesFromJars() throws IOException {
+            writeJar("external.jar", "com.example.ExternalSecretPlugin",
+                    Map.of("External", "com.example.ExternalSecretPlugin"));
+
+            var loader = new PluginLoader<>(SecretPlugin.class, directory);
+
+            assertThatExceptionOfType(PluginException.class)
+                    .isThrownBy(() -> loader.load(new Project.Plugin("External", Map.of())))
+                    .withMessage("Failed to create plugin 'External'")
+                    .withCauseInstanceOf(ClassNotFoundException.class);
+        }
+
+        @Test
+        void loadShouldPreferClassPathPlugins() throws IOException, PluginException {
+            writeJar("external.jar", TestableSecretPlugin.class.getName(), Map.of());
+
+            var loader = new PluginLoader<>(SecretPlugin.class, directory);
+            var result = loader.load(new Project.Plugin(TestableSecretPlugin.class.getName(), Map.of()));
+
+            assertThat(result.getClass())
+                    .isEqualTo(TestableSecretPlugin.class);
+            assertThat(loader.plugins())
+                    .containsOnlyOnce(TestableSecretPlugin.class.getName());
+        }
+
+        @Test
+        void pluginsShouldIgnoreUnreadableJars() throws IOException {
+            Files.writeString(directory.resolve("broken.jar"), "not a jar");
+
+            var plugins = new PluginLoader<>(SecretPlugin.class, directory).plugins();
+
+            assertThat(plugins)
+                    .contains(TestableSecretPlugin.class.getName());
+        }
+
+        @Test
+        void pluginsShouldIgnoreMissingDirectory() {
+            var plugins = new PluginLoader<>(SecretPlugin.class, directory.resolve("missing")).plugins();
+
+            assertThat(plugins)
+                    .contains(TestableSecretPlugin.class.getName());
+        }
+
+        private void writeJar(String name, String provider, Map<String, String> aliases) throws IOException {
+            try (var jar = new JarOutputStream(Files.newOutputStream(directory.resolve(name)))) {
+                jar.putNextEntry(new JarEntry("META-INF/services/" + SecretPlugin.class.getName()));
+                jar.write(("# External plugins\n" + provider + "\n").getBytes(StandardCharsets.UTF_8));
+                jar.closeEntry();
+
+                jar.putNextEntry(new JarEntry(PluginLoader.ALIASES));
+                var properties = new StringBuilder();
+                aliases.forEach((alias, type) -> properties.append(alias).append('=').append(type).append('\n'));
+                jar.write(properties.toString().getBytes(StandardCharsets.UTF_8));
+                jar.closeEntry();
+            }
+        }
+
+    }
+
     interface InterfaceWithNoImplementations extends Plugin {}
 
 }
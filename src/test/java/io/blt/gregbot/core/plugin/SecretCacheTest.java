@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2024 Mike Cowan.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+
+package io.blt.gregbot.core.plugin;
+
+import io.blt.gregbot.plugin.secrets.LeasedSecrets;
+import io.blt.gregbot.plugin.secrets.SecretException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+class SecretCacheTest {
+
+    final AtomicLong clock = new AtomicLong();
+
+    final AtomicInteger loads = new AtomicInteger();
+
+    final SecretCache cache = new SecretCache(Duration.ofMinutes(1), 3, clock::get);
+
+    @Test
+    void getShouldLoadOnceAndThenReturnCachedSecrets() throws Exception {
+        var first = cache.get("path", this::load);
+        var second = cache.get("path", this::load);
+
+        assertThat(first).isEqualTo(second).containsEntry("key", "path/1");
+        assertThat(loads).hasValue(1);
+        assertThat(cache.stats())
+                .extracting(SecretCache.Stats::hits, SecretCache.Stats::misses)
+                .containsExactly(1L, 1L);
+    }
+
+    @Test
+    void getShouldLoadAgainOnceDefaultTtlHasPassed() throws Exception {
+        cache.get("path", this::load);
+
+        clock.set(Duration.ofSeconds(59).toNanos());
+        assertThat(cache.get("path", this::load)).containsEntry("key", "path/1");
+
+        clock.set(Duration.ofSeconds(60).toNanos());
+        assertThat(cache.get("path", this::load)).containsEntry("key", "path/2");
+    }
+
+    @Test
+    void getShouldPreferLeaseOverDefaultTtl() throws Exception {
+        SecretCache.Loader leased = path -> new LeasedSecrets(
+                Map.of("key", path + "/" + loads.incrementAndGet()), Duration.ofSeconds(5));
+
+        cache.get("path", leased);
+
+        clock.set(Duration.ofSeconds(5).toNanos());
+        assertThat(cache.get("path", leased)).containsEntry("key", "path/2");
+    }
+
+    @ParameterizedTest
+    @ValueSource(longs = {0, -1})
+    void getShouldUseDefaultTtlWhenLeaseIsNotPositive(long seconds) throws Exception {
+        SecretCache.Loader leased = path -> new LeasedSecrets(
+                Map.of("key", path + "/" + loads.incrementAndGet()), Duration.ofSeconds(seconds));
+
+        cache.get("path", leased);
+
+        clock.set(Duration.ofSeconds(30).toNanos());
+        assertThat(cache.get("path", leased)).containsEntry("key", "path/1");
+    }
+
+    @Test
+    void getShouldEvictLeastRecentlyUsedWhenFull() throws Exception {
+        cache.get("a", this::load);
+        clock.incrementAndGet();
+        cache.get("b", this::load);
+        clock.incrementAndGet();
+        cache.get("c", this::load);
+        clock.incrementAndGet();
+        cache.get("a", this::load);
+        clock.incrementAndGet();
+
+        cache.get("d", this::load);
+
+        assertThat(cache.size()).isEqualTo(3);
+        assertThat(cache.contains("a")).isTrue();
+        assertThat(cache.contains("b")).isFalse();
+        assertThat(cache.stats().evictions()).isEqualTo(1);
+    }
+
+    @Test
+    void getShouldNotCacheFailedLoads() throws Exception {
+        var exception = new SecretException("mock loader exception", null);
+
+        assertThatExceptionOfType(SecretException.class)
+                .isThrownBy(() -> cache.get("path", path -> {
+                    throw exception;
+                }))
+                .withMessage("mock loader exception");
+
+        assertThat(cache.contains("path")).isFalse();
+        assertThat(cache.get("path", this::load)).containsEntry("key", "path/1");
+        assertThat(cache.stats().loadFailures()).isEqualTo(1);
+    }
+
+    @Test
+    void getShouldReleaseConcurrentCallersAndNotCacheWhenLoadThrowsError() throws Exception {
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var error = new StackOverflowError("mock loader error");
+        var pool = Executors.newFixedThreadPool(2);
+
+        try {
+            var loading = pool.submit(() -> cache.get("path", path -> {
+                started.countDown();
+                awaitUninterruptibly(release);
+                throw error;
+            }));
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+            var waiting = pool.submit(() -> cache.get("path", this::load));
+            // A hit is counted as the caller starts waiting on the load in progress
+            for (var i = 0; i < 5000 && cache.stats().hits() == 0; i++) {
+                TimeUnit.MILLISECONDS.sleep(1);
+            }
+            release.countDown();
+
+            assertThatExceptionOfType(ExecutionException.class)
+                    .isThrownBy(() -> loading.get(5, TimeUnit.SECONDS))
+                    .withCause(error);
+            assertThatExceptionOfType(ExecutionException.class)
+                    .isThrownBy(() -> waiting.get(5, TimeUnit.SECONDS))
+                    .havingCause()
+                    .isInstanceOf(SecretException.class)
+                    .havingCause()
+                    .isSameAs(error);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertThat(cache.contains("path")).isFalse();
+        assertThat(cache.get("path", this::load)).containsEntry("key", "path/1");
+        assertThat(cache.stats().loadFailures()).isEqualTo(1);
+    }
+
+    @Test
+    void getShouldShareSingleLoadBetweenConcurrentCallers() throws Exception {
+        var cache = new SecretCache();
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var pool = Executors.newFixedThreadPool(8);
+
+        try {
+            var results = new ArrayList<Future<Map<String, String>>>();
+            results.add(pool.submit(() -> cache.get("path", path -> {
+                started.countDown();
+                awaitUninterruptibly(release);
+                return load(path);
+            })));
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+            for (var i = 0; i < 7; i++) {
+                results.add(pool.submit(() -> cache.get("path", this::load)));
+            }
+            release.countDown();
+
+            for (var result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS)).containsEntry("key", "path/1");
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertThat(loads).hasValue(1);
+        assertThat(cache.stats().misses()).isEqualTo(1);
+    }
+
+    @Test
+    void putShouldMakeSecretsAvailableWithoutLoading() throws Exception {
+        cache.put("path", new LeasedSecrets(Map.of("key", "put"), null));
+
+        assertThat(cache.contains("path")).isTrue();
+        assertThat(cache.get("path", this::load)).containsEntry("key", "put");
+        assertThat(loads).hasValue(0);
+    }
+
+    @Test
+    void invalidateShouldCauseNextGetToLoad() throws Exception {
+        cache.get("path", this::load);
+
+        cache.invalidate("path");
+
+        assertThat(cache.get("path", this::load)).containsEntry("key", "path/2");
+    }
+
+    @Test
+    void constructorShouldThrowWhenDefaultTtlIsNotPositive() {
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> new SecretCache(Duration.ZERO, 1));
+    }
+
+    @Test
+    void constructorShouldThrowWhenMaximumSizeIsLessThanOne() {
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> new SecretCache(Duration.ofMinutes(1), 0));
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private LeasedSecrets load(String path) {
+        return new LeasedSecrets(Map.of("key", path + "/" + loads.incrementAndGet()), null);
+    }
+
+}
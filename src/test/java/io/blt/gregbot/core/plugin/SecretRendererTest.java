@@ -8,10 +8,16 @@
 
 package io.blt.gregbot.core.plugin;
 
+import io.blt.gregbot.plugin.secrets.LeasedSecrets;
+import io.blt.gregbot.plugin.secrets.LeasingSecretPlugin;
 import io.blt.gregbot.plugin.secrets.SecretException;
 import io.blt.gregbot.plugin.secrets.SecretPlugin;
+import java.time.Duration;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
@@ -84,6 +90,77 @@ class SecretRendererTest {
         verifyNoMoreInteractions(plugin);
     }
 
+    @Test
+    void renderShouldFetchAgainOnceLeaseExpires() throws Exception {
+        var clock = new AtomicLong();
+        var plugin = spy(new LeasingSecretPlugin() {
+            @Override
+            public LeasedSecrets leasedSecretsForPath(String path) {
+                return new LeasedSecrets(secrets.get(path), Duration.ofSeconds(30));
+            }
+
+            @Override
+            public void load(Map<String, String> properties) {}
+        });
+        var renderer = new SecretRenderer(plugin, new SecretCache(Duration.ofHours(1), 10, clock::get));
+
+        renderer.render("[secret/watch/Greg]");
+        clock.set(Duration.ofSeconds(29).toNanos());
+        renderer.render("[secret/watch/Phil]");
+
+        verify(plugin, times(1)).leasedSecretsForPath("secret/watch");
+
+        clock.set(Duration.ofSeconds(30).toNanos());
+        renderer.render("[secret/watch/Louis]");
+
+        verify(plugin, times(2)).leasedSecretsForPath("secret/watch");
+        assertThat(renderer.cacheStats())
+                .extracting(SecretCache.Stats::hits, SecretCache.Stats::misses)
+                .containsExactly(1L, 2L);
+    }
+
+    @Test
+    void prefetchShouldFetchDistinctPathsTogether() throws Exception {
+        renderer.prefetch(List.of(
+                "[secret/birthday/Greg] [secret/watch/Greg]",
+                "[secret/birthday/Phil]",
+                "no secrets"));
+
+        verify(plugin, times(1)).secretsForPaths(Set.of("secret/birthday", "secret/watch"));
+    }
+
+    @Test
+    void prefetchShouldNotFetchPathsAlreadyCached() throws Exception {
+        renderer.render("[secret/birthday/Greg]");
+
+        renderer.prefetch(List.of("[secret/birthday/Phil] [secret/watch/Phil]"));
+
+        verify(plugin, times(1)).secretsForPaths(Set.of("secret/watch"));
+    }
+
+    @Test
+    void renderShouldUsePrefetchedSecrets() throws Exception {
+        renderer.prefetch(List.of("[secret/birthday/Greg]"));
+
+        var result = renderer.render("[secret/birthday/Louis]");
+
+        assertThat(result).isEqualTo("February");
+        verify(plugin, times(1)).secretsForPath("secret/birthday");
+    }
+
+    @Test
+    void prefetchShouldBubbleUpSecretExceptionAsSecretRenderException() throws SecretException {
+        var exception = new SecretException("mock plugin exception", null);
+
+        var plugin = mock(SecretPlugin.class);
+        when(plugin.secretsForPaths(any()))
+                .thenThrow(exception);
+
+        assertThatExceptionOfType(SecretRenderException.class)
+                .isThrownBy(() -> new SecretRenderer(plugin).prefetch(List.of("[path/key]")))
+                .withCause(exception);
+    }
+
     @ParameterizedTest
     @ValueSource(strings = {
             "plain old string",
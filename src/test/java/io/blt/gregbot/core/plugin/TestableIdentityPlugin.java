@@ -12,10 +12,11 @@ import io.blt.gregbot.plugin.identities.IdentityPlugin;
 import java.util.HashMap;
 import java.util.Map;
 
-public class TestableIdentityPlugin implements IdentityPlugin {
+public class TestableIdentityPlugin implements IdentityPlugin, AutoCloseable {
 
     private static Map<String, String> loadedProperties;
     private static int instanceCount = 0;
+    private static int closedCount = 0;
 
     public TestableIdentityPlugin() {
         instanceCount++;
@@ -32,6 +33,11 @@ public class TestableIdentityPlugin implements IdentityPlugin {
         return Map.of("identity-plugin-key", "identity-plugin-value");
     }
 
+    @Override
+    public void close() {
+        closedCount++;
+    }
+
     public static Map<String, String> loadedProperties() {
         return loadedProperties;
     }
@@ -40,7 +46,12 @@ public class TestableIdentityPlugin implements IdentityPlugin {
         return instanceCount;
     }
 
+    public static int closedCount() {
+        return closedCount;
+    }
+
     public static void resetInstanceCount() {
         instanceCount = 0;
+        closedCount = 0;
     }
 }
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2024 Mike Cowan.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+
+package io.blt.gregbot.core.project;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static io.blt.gregbot.core.project.Project.Collection;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatException;
+import static org.assertj.core.api.Assertions.assertThatIOException;
+import static org.assertj.core.api.Assertions.assertThatNoException;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+class ProjectLoaderTest {
+
+    final List<String> events = new ArrayList<>();
+
+    final ProjectLoader.Listener listener = new ProjectLoader.Listener() {
+        @Override
+        public void collectionLoaded(String name, Collection collection) {
+            events.add("collection " + name);
+        }
+
+        @Override
+        public void sectionLoaded(String section, Duration elapsed) {
+            events.add("section " + section);
+        }
+    };
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "minimal.json", "full.json"
+    })
+    void loadFromJsonShouldBeEqualToProjectLoadFromJson(String filename) throws IOException {
+        var expected = Project.loadFromJson(fileToStream(filename));
+
+        var result = ProjectLoader.loadFromJson(fileToStream(filename), listener);
+
+        assertThat(result.project()).isEqualTo(expected);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "doesnt.exist", "empty.txt", "empty.json"
+    })
+    void loadFromJsonShouldFailValidationFor(String filename) {
+        assertThatException().isThrownBy(() -> ProjectLoader.loadFromJson(fileToStream(filename), listener));
+    }
+
+    @Test
+    void prepareShouldLoadWarmUpProjectWithoutViolations() {
+        assertThatNoException()
+                .isThrownBy(ProjectLoader::prepare);
+    }
+
+    @Test
+    void loadFromJsonShouldCreateEmptyMaps() throws IOException {
+        var result = ProjectLoader.loadFromJson(fileToStream("minimal.json"), listener).project();
+
+        assertThat(result.secrets()).isNotNull().isEmpty();
+        assertThat(result.environments()).isNotNull().isEmpty();
+        assertThat(result.identities()).isNotNull().isEmpty();
+        assertThat(result.collections()).isNotNull().isEmpty();
+    }
+
+    @Test
+    void loadFromJsonShouldCreateUnmodifiableMaps() throws IOException {
+        var result = ProjectLoader.loadFromJson(fileToStream("full.json"), listener).project();
+
+        assertThat(result.environments()).isUnmodifiable();
+        assertThat(result.collections()).isUnmodifiable();
+        assertThat(result.collections().get("Skynet").requests()).isUnmodifiable();
+    }
+
+    @Test
+    void loadFromJsonShouldNotifyCollectionsBeforeSecondarySections() throws IOException {
+        ProjectLoader.loadFromJson(fileToStream("full.json"), listener);
+
+        assertThat(events).containsExactly(
+                "collection Skynet",
+                "section collections",
+                "section client",
+                "section secrets",
+                "section environments",
+                "section identities");
+    }
+
+    @Test
+    void loadFromJsonShouldReportSectionTimingsInFileOrder() throws IOException {
+        var result = ProjectLoader.loadFromJson(fileToStream("full.json"), listener);
+
+        assertThat(result.sections().keySet())
+                .containsExactly("client", "secrets", "environments", "identities", "collections");
+        assertThat(result.sections().values())
+                .allSatisfy(elapsed -> assertThat(elapsed).isPositive());
+        assertThat(result.elapsed()).isPositive();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            """
+            { "client": { "version": "HTTP_1_1", "redirect": "NORMAL", "connectionTimeout": 0, "requestTimeout": 1 } }
+            """,
+            """
+            { "client": { "version": "HTTP_1_1", "redirect": "NORMAL", "connectionTimeout": 1, "requestTimeout": 1 },
+              "secrets": { "Vault": { "plugin": { "type": "", "properties": {} } } } }
+            """,
+            """
+            { "client": { "version": "HTTP_1_1", "redirect": "NORMAL", "connectionTimeout": 1, "requestTimeout": 1 },
+              "collections": { "Skynet": {
+                "requests": { "Health Check": { "verb": "GET", "path": "" } },
+                "layout": { "requests": [ "Health Check" ] } } } }
+            """,
+            """
+            { "client": { "version": "HTTP_1_1", "redirect": "NORMAL", "connectionTimeout": 1, "requestTimeout": 1 },
+              "environments": { "": { "variables": {} } } }
+            """
+    })
+    void loadFromJsonShouldDescribeViolationsAsProjectLoadFromJson(String json) {
+        var expected = catchThrowable(() -> Project.loadFromJson(stringToStream(json)));
+
+        assertThat(expected).isInstanceOf(IOException.class);
+
+        assertThatIOException()
+                .isThrownBy(() -> ProjectLoader.loadFromJson(stringToStream(json), listener))
+                .withMessage(expected.getMessage());
+    }
+
+    @Test
+    void loadFromJsonShouldFailWithoutNotifyingInvalidCollection() {
+        var json = """
+                { "client": {"version": "HTTP_1_1", "redirect": "NORMAL", "connectionTimeout": 1, "requestTimeout": 1},
+                  "collections": {
+                    "Valid": { "requests": {}, "layout": {} },
+                    "Invalid": { "requests": { "Health Check": { "verb": "GET", "path": "" } }, "layout": {} },
+                    "Unreached": { "requests": {}, "layout": {} } } }
+                """;
+
+        assertThatIOException()
+                .isThrownBy(() -> ProjectLoader.loadFromJson(stringToStream(json), listener))
+                .withMessageContaining("'collections[Invalid].requests[Health Check].path' must not be empty");
+
+        assertThat(events).containsExactly("collection Valid");
+    }
+
+    private InputStream fileToStream(String filename) {
+        return Project.class.getResourceAsStream(filename);
+    }
+
+    private static InputStream stringToStream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
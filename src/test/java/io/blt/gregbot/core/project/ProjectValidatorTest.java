@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2024 Mike Cowan.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+
+package io.blt.gregbot.core.project;
+
+import java.io.IOException;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static io.blt.gregbot.core.project.Project.Client;
+import static io.blt.gregbot.core.project.Project.Collection.Request;
+import static io.blt.gregbot.core.project.ProjectValidator.ANNOTATIONS;
+import static io.blt.gregbot.core.project.ProjectValidator.MODE_PROPERTY;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+class ProjectValidatorTest {
+
+    @AfterEach
+    void afterEach() {
+        System.clearProperty(MODE_PROPERTY);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "minimal.json", "full.json"
+    })
+    void validateShouldPassFor(String filename) throws IOException {
+        var project = Project.MAPPER.readValue(Project.class.getResourceAsStream(filename), Project.class);
+
+        assertThat(ProjectValidator.validate("", project)).isEmpty();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            """
+            {}
+            """,
+            """
+            { "client": {} }
+            """,
+            """
+            { "client": { "version": "HTTP_2", "redirect": "NORMAL", "connectionTimeout": -1, "requestTimeout": 0,
+                          "maxConcurrentStreams": 0, "executorThreads": -4 } }
+            """,
+            """
+            { "client": { "version": "HTTP_2", "redirect": "NORMAL", "connectionTimeout": 1, "requestTimeout": 1 },
+              "secrets": { "": { "plugin": { "properties": { "": "value" } } }, "Missing": {} } }
+            """,
+            """
+            { "client": { "version": "HTTP_2", "redirect": "NORMAL", "connectionTimeout": 1, "requestTimeout": 1 },
+              "environments": { "Local": { "variables": { "": "value" } } },
+              "identities": { "Admin": { "variables": { "": "value" }, "plugin": { "type": "" } } } }
+            """,
+            """
+            { "client": { "version": "HTTP_2", "redirect": "NORMAL", "connectionTimeout": 1, "requestTimeout": 1 },
+              "collections": {
+                "Skynet": {
+                  "requests": { "": { "headers": { "": "value" }, "path": "" } },
+                  "layout": { "folders": { "": { "folders": { "Nested": { "folders": { "": {} } } } } } } },
+                "Missing": { "requests": {} } } }
+            """
+    })
+    void validateShouldDescribeViolationsAsAnnotations(String json) throws IOException {
+        var project = Project.MAPPER.readValue(json, Project.class);
+
+        System.setProperty(MODE_PROPERTY, ANNOTATIONS);
+        var expected = ProjectValidator.validate("", project);
+        System.clearProperty(MODE_PROPERTY);
+
+        var result = ProjectValidator.validate("", project);
+
+        assertThat(expected).isNotEmpty();
+        assertThat(result).containsExactlyInAnyOrderElementsOf(expected);
+    }
+
+    @Test
+    void validateShouldDescribeViolationsFromPath() {
+        var request = new Request(null, Request.Verb.GET, "");
+
+        assertThat(ProjectValidator.validate("collections[Skynet].requests[Health Check]", request))
+                .containsExactlyInAnyOrder(
+                        "'collections[Skynet].requests[Health Check].headers' must not be null",
+                        "'collections[Skynet].requests[Health Check].path' must not be empty");
+    }
+
+    @Test
+    void validateShouldUseAnnotationsWhenSwitchedOn() {
+        var client = new Client(null, Client.Redirect.NORMAL, 1, 1, null);
+
+        System.setProperty(MODE_PROPERTY, ANNOTATIONS);
+
+        assertThat(ProjectValidator.validate("client", client))
+                .isEqualTo(List.of("'client.version' must not be null"));
+    }
+
+    @Test
+    void validateShouldPassNull() {
+        assertThat(ProjectValidator.validate("secrets[Vault]", null)).isEmpty();
+    }
+
+    @Test
+    void validateShouldThrowForUnknownType() {
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> ProjectValidator.validate("", "not a record"));
+    }
+
+}
@@ -19,8 +19,15 @@ import io.blt.gregbot.core.project.Project.Plugin;
 import io.blt.gregbot.core.project.Project.Secret;
 import io.blt.gregbot.plugin.identities.IdentityPlugin;
 import io.blt.gregbot.plugin.secrets.SecretPlugin;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Stream;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
@@ -161,6 +168,33 @@ class IdentityServiceTest {
                             entry("identity-plugin-key", "identity-plugin-value"));
         }
 
+        @Test
+        void shouldLoadIdentityPluginWithPrefetchedSecrets() throws Exception {
+            var service = new IdentityService(
+                    Map.of("MockSecret",
+                            new Secret(new Plugin(TestableSecretPlugin.class.getName(), Map.of()))),
+                    Map.of("MockIdentity",
+                            new Identity(null, "MockSecret", Map.of(),
+                                    new Plugin(TestableIdentityPlugin.class.getName(),
+                                            Map.of("rendered-key", "rendered-[secret-path/secret-key]")))));
+
+            service.prefetchSecrets();
+            service.variablesFor("MockIdentity");
+
+            assertThat(TestableIdentityPlugin.loadedProperties())
+                    .containsOnly(
+                            entry("rendered-key", "rendered-secret-path/secret-value"));
+        }
+
+        @Test
+        void prefetchSecretsShouldThrowWhenIdentityIsUnknown() {
+            var service = new IdentityService(Map.of(), Map.of());
+
+            assertThatExceptionOfType(NoSuchElementException.class)
+                    .isThrownBy(() -> service.prefetchSecrets("UnknownIdentity"))
+                    .withMessage("Cannot find identity for 'UnknownIdentity'");
+        }
+
         @Nested
         class UncheckedException {
 
@@ -299,6 +333,21 @@ class IdentityServiceTest {
                         .isOne();
             }
 
+            @Test
+            void closeShouldCloseLoadedIdentityPlugins() throws Exception {
+                var service = new IdentityService(
+                        Map.of(),
+                        Map.of("MockIdentity1",
+                                new Identity(null, null, Map.of(),
+                                        new Plugin(TestableIdentityPlugin.class.getName(), Map.of()))));
+
+                service.variablesFor("MockIdentity1");
+                service.close();
+
+                assertThat(TestableIdentityPlugin.closedCount())
+                        .isOne();
+            }
+
             @Test
             void shouldUseSameInstancesOfIdentityPluginForIdenticalIdentityProperties() throws Exception {
                 var service = new IdentityService(
@@ -423,6 +472,139 @@ class IdentityServiceTest {
                         .isEqualTo(2);
             }
 
+            @Test
+            void shouldShareOneLoadOfPluginsBetweenConcurrentCalls() throws Exception {
+                var service = new IdentityService(
+                        Map.of("MockSecret",
+                                new Secret(new Plugin(TestableSecretPlugin.class.getName(), Map.of()))),
+                        Map.of("MockIdentity",
+                                new Identity(null, "MockSecret", Map.of(),
+                                        new Plugin(TestableIdentityPlugin.class.getName(),
+                                                Map.of("rendered-key", "[secret-path/secret-key]")))));
+
+                var start = new CountDownLatch(1);
+                var pool = Executors.newFixedThreadPool(16);
+                try {
+                    var futures = new ArrayList<Future<Map<String, String>>>();
+                    for (var i = 0; i < 16; i++) {
+                        futures.add(pool.submit(() -> {
+                            start.await();
+                            return service.variablesFor("MockIdentity");
+                        }));
+                    }
+                    start.countDown();
+
+                    for (var future : futures) {
+                        assertThat(future.get(5, TimeUnit.SECONDS))
+                                .containsEntry("identity-plugin-key", "identity-plugin-value");
+                    }
+                } finally {
+                    pool.shutdownNow();
+                }
+
+                assertThat(TestableIdentityPlugin.instanceCount())
+                        .isOne();
+                assertThat(TestableSecretPlugin.instanceCount())
+                        .isOne();
+            }
+
+        }
+
+    }
+
+    @Nested
+    class WarmUpIdentities {
+
+        final Map<String, Identity> identities = Map.of(
+                "Admin", new Identity("admin", null, Map.of(),
+                        new Plugin(TestableIdentityPlugin.class.getName(), Map.of())),
+                "Reader", new Identity("reader", "MockSecret", Map.of(),
+                        new Plugin(TestableIdentityPlugin.class.getName(),
+                                Map.of("rendered-key", "[secret-path/secret-key]"))),
+                "Plain", new Identity("reader", null, Map.of("plain-key", "plain-value"), null));
+
+        final IdentityService service = new IdentityService(
+                Map.of("MockSecret",
+                        new Secret(new Plugin(TestableSecretPlugin.class.getName(), Map.of()))),
+                identities);
+
+        final List<String> progress = new CopyOnWriteArrayList<>();
+
+        @Test
+        void shouldWarmUpEveryIdentityAndReportProgress() throws Exception {
+            var results = service.warmUp(null, (result, completed, total) -> progress.add(completed + "/" + total))
+                    .get(5, TimeUnit.SECONDS);
+
+            assertThat(results)
+                    .extracting(IdentityService.WarmUp::identity)
+                    .containsExactlyInAnyOrder("Admin", "Reader", "Plain");
+            assertThat(results)
+                    .allSatisfy(r -> {
+                        assertThat(r.succeeded()).isTrue();
+                        assertThat(r.elapsed().isNegative()).isFalse();
+                    });
+            assertThat(progress)
+                    .containsExactlyInAnyOrder("1/3", "2/3", "3/3");
+        }
+
+        @Test
+        void shouldOnlyWarmUpIdentitiesInCategory() throws Exception {
+            var results = service.warmUp("reader", (result, completed, total) -> progress.add(completed + "/" + total))
+                    .get(5, TimeUnit.SECONDS);
+
+            assertThat(results)
+                    .extracting(IdentityService.WarmUp::identity)
+                    .containsExactlyInAnyOrder("Reader", "Plain");
+            assertThat(progress)
+                    .containsExactlyInAnyOrder("1/2", "2/2");
+        }
+
+        @Test
+        void shouldWarmUpEveryIdentityWhenListenerThrows() throws Exception {
+            var results = service.warmUp(null, (result, completed, total) -> {
+                        throw new IllegalStateException("mock-failure");
+                    })
+                    .get(5, TimeUnit.SECONDS);
+
+            assertThat(results)
+                    .extracting(IdentityService.WarmUp::identity)
+                    .containsExactlyInAnyOrder("Admin", "Reader", "Plain");
+        }
+
+        @Test
+        void shouldReuseWarmedUpPlugins() throws Exception {
+            service.warmUp(null, (result, completed, total) -> {}).get(5, TimeUnit.SECONDS);
+            var instances = TestableIdentityPlugin.instanceCount();
+
+            service.variablesFor("Admin");
+            service.variablesFor("Reader");
+
+            assertThat(TestableIdentityPlugin.instanceCount())
+                    .isEqualTo(instances);
+        }
+
+        @Test
+        void shouldReportFailureWithoutFailingOtherIdentities() throws Exception {
+            var failing = new IdentityService(
+                    Map.of(),
+                    Map.of("Failing", new Identity(null, null, Map.of(),
+                                    new Plugin(ThrowOnLoadIdentityPlugin.class.getName(), Map.of())),
+                            "Plain", new Identity(null, null, Map.of("plain-key", "plain-value"), null)));
+
+            var results = failing.warmUp(null, (result, completed, total) -> {})
+                    .get(5, TimeUnit.SECONDS);
+
+            assertThat(results)
+                    .filteredOn(r -> !r.succeeded())
+                    .singleElement()
+                    .satisfies(r -> {
+                        assertThat(r.identity()).isEqualTo("Failing");
+                        assertThat(r.error()).isInstanceOf(IdentityServiceException.class);
+                    });
+            assertThat(results)
+                    .filteredOn(IdentityService.WarmUp::succeeded)
+                    .extracting(IdentityService.WarmUp::identity)
+                    .containsExactly("Plain");
         }
 
     }
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2024 Mike Cowan.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+
+package io.blt.gregbot.core.template;
+
+import io.blt.gregbot.core.template.Template.Token;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.EmptySource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+import static org.assertj.core.api.Assertions.assertThatNullPointerException;
+
+class TemplateTest {
+
+    final Map<String, String> values = Map.of(
+            "host", "https://skynet.cyberdyne.com",
+            "model", "T-800",
+            "secret/watch/Greg", "Seiko",
+            "secret/birthday/Greg", "November",
+            "dollar", "$1\\");
+
+    final Template.VariableResolver<RuntimeException> variables = values::get;
+
+    final Template.SecretResolver<RuntimeException> secrets = (path, key) -> values.get(path + "/" + key);
+
+    @ParameterizedTest
+    @CsvSource({
+            "{{host}},                          https://skynet.cyberdyne.com",
+            "{{host}}/terminators/{{model}},    https://skynet.cyberdyne.com/terminators/T-800",
+            "{{host}}/terminators/{model},      https://skynet.cyberdyne.com/terminators/{model}",
+            "{{dollar}},                        $1\\",
+            "[secret/watch/Greg],               [secret/watch/Greg]",
+    })
+    void renderShouldReplaceVariableTokens(String source, String expected) throws TemplateException {
+        var result = Template.compile(source, Token.VARIABLE)
+                .render(variables);
+
+        assertThat(result).isEqualTo(expected);
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "[secret/watch/Greg],                                 Seiko",
+            "Greg has a [secret/watch/Greg] watch,                Greg has a Seiko watch",
+            "[secret/watch/Greg] in [secret/birthday/Greg],       Seiko in November",
+            "{{model}},                                           {{model}}",
+    })
+    void renderShouldReplaceSecretTokens(String source, String expected) throws TemplateException {
+        var result = Template.compile(source, Token.SECRET)
+                .render(secrets);
+
+        assertThat(result).isEqualTo(expected);
+    }
+
+    @Test
+    void renderShouldReplaceVariableAndSecretTokensTogether() throws TemplateException {
+        var result = Template.compile("{{model}} wears [secret/watch/Greg]", Token.VARIABLE, Token.SECRET)
+                .render(variables, secrets);
+
+        assertThat(result).isEqualTo("T-800 wears Seiko");
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "plain old string",
+            "string with a [",
+            "string with a ]",
+            "string with []",
+            "string with {{",
+            "string with {{}}",
+            "[secret/split\nacross/lines]",
+    })
+    @EmptySource
+    void renderShouldReturnSourceWhenSourceContainsNoToken(String source) throws TemplateException {
+        var template = Template.compile(source, Token.VARIABLE, Token.SECRET);
+
+        assertThat(template.isLiteral()).isTrue();
+        assertThat(template.render(variables, secrets)).isSameAs(source);
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "[no path and no key], Missing '/'",
+            "[/no path],           Missing 'path/'",
+            "[no key/],            Missing '/key'",
+    })
+    void compileShouldThrowWhenSecretTokenIsMalformed(String source, String expected) {
+        assertThatExceptionOfType(TemplateException.class)
+                .isThrownBy(() -> Template.compile(source, Token.SECRET))
+                .withMessageContaining(expected);
+    }
+
+    @Test
+    void compileShouldThrowWhenSourceIsNull() {
+        assertThatNullPointerException()
+                .isThrownBy(() -> Template.compile(null, Token.VARIABLE));
+    }
+
+    @Test
+    void variablesShouldReturnDistinctNamesInOrder() throws TemplateException {
+        var template = Template.compile("{{host}}/{{model}}/{{host}}", Token.VARIABLE);
+
+        assertThat(template.variables())
+                .containsExactly("host", "model");
+    }
+
+    @Test
+    void secretPathsShouldReturnDistinctPathsInOrder() throws TemplateException {
+        var template = Template.compile("[b/x] [a/y] [b/z]", Token.SECRET);
+
+        assertThat(template.secretPaths())
+                .containsExactly("b", "a");
+    }
+
+    @Test
+    void renderShouldThrowWhenTemplateContainsTokenWithoutResolver() throws TemplateException {
+        var template = Template.compile("{{model}} wears [secret/watch/Greg]", Token.VARIABLE, Token.SECRET);
+
+        assertThatIllegalStateException()
+                .isThrownBy(() -> template.render(variables));
+        assertThatIllegalStateException()
+                .isThrownBy(() -> template.render(secrets));
+    }
+
+}
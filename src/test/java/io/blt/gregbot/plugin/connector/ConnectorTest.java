@@ -8,6 +8,7 @@
 
 package io.blt.gregbot.plugin.connector;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.github.tomakehurst.wiremock.client.MappingBuilder;
 import com.github.tomakehurst.wiremock.client.ResponseDefinitionBuilder;
 import com.github.tomakehurst.wiremock.junit5.WireMockTest;
@@ -15,7 +16,13 @@ import java.io.IOException;
 import java.net.URI;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Consumer;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
@@ -23,6 +30,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 import org.junit.jupiter.params.provider.MethodSource;
@@ -39,8 +47,13 @@ import static com.github.tomakehurst.wiremock.client.WireMock.post;
 import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatException;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
 import static org.assertj.core.api.Assertions.assertThatIOException;
-import static org.mockito.Mockito.when;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 @WireMockTest(proxyMode = true)
 @ExtendWith(MockitoExtension.class)
@@ -164,6 +177,139 @@ class ConnectorTest {
                 .isEqualTo(200);
     }
 
+    @Test
+    void sendStreamedShouldReturnResponseAndDataDecodedFromStream() throws IOException {
+        mockEndpointReturning(okJson("{ \"name\": \"Greg\" }"));
+
+        var request = HttpRequest.newBuilder()
+                .uri(URI.create("http://mock.domain/mock/path"))
+                .GET()
+                .build();
+
+        var result = new Connector("not-using-uri-builders")
+                .sendStreamed(request, User.class);
+
+        assertThat(result.getStatusCode())
+                .isEqualTo(200);
+
+        assertThat(result.getData())
+                .get()
+                .extracting(User::name)
+                .isEqualTo("Greg");
+    }
+
+    @Test
+    void sendStreamedShouldReturnEmptyDataForEndpointWithUnsupportedBody() throws IOException {
+        mockEndpointReturning(ok("raw text"));
+
+        var request = HttpRequest.newBuilder()
+                .uri(URI.create("http://mock.domain/mock/path"))
+                .GET()
+                .build();
+
+        var result = new Connector("not-using-uri-builders")
+                .sendStreamed(request, User.class);
+
+        assertThat(result.getData())
+                .isEmpty();
+    }
+
+    @Test
+    void sendToFileShouldWriteBodyToFileAndReturnDataDecodedFromIt(@TempDir Path directory) throws IOException {
+        mockEndpointReturning(okJson("{ \"name\": \"Greg\" }"));
+
+        var request = HttpRequest.newBuilder()
+                .uri(URI.create("http://mock.domain/mock/path"))
+                .GET()
+                .build();
+
+        var file = directory.resolve("body.json");
+
+        var result = new Connector("not-using-uri-builders")
+                .sendToFile(request, User.class, file);
+
+        assertThat(result.getBodyFile())
+                .contains(file);
+        assertThatIllegalStateException()
+                .isThrownBy(result::getResponse);
+
+        assertThat(file)
+                .hasContent("{ \"name\": \"Greg\" }");
+
+        assertThat(result.getData())
+                .get()
+                .extracting(User::name)
+                .isEqualTo("Greg");
+    }
+
+    @Test
+    void sendAsyncShouldCompleteWithResponseAndData() throws Exception {
+        mockEndpointReturning(okJson("{ \"name\": \"Greg\" }"));
+
+        var request = HttpRequest.newBuilder()
+                .uri(URI.create("http://mock.domain/mock/path"))
+                .GET()
+                .build();
+
+        var result = new Connector("not-using-uri-builders")
+                .sendAsync(request, User.class)
+                .get(5, TimeUnit.SECONDS);
+
+        assertThat(result.getResponse())
+                .extracting(HttpResponse::statusCode)
+                .isEqualTo(200);
+
+        assertThat(result.getData())
+                .get()
+                .extracting(User::name)
+                .isEqualTo("Greg");
+    }
+
+    @Test
+    void sendAsyncShouldCompleteExceptionallyWhenTimeoutElapses() {
+        mockEndpointReturning(ok().withFixedDelay(2_000));
+
+        var request = HttpRequest.newBuilder()
+                .uri(URI.create("http://mock.domain/mock/path"))
+                .GET()
+                .build();
+
+        var result = new Connector("not-using-uri-builders")
+                .sendAsync(request, User.class, Duration.ofMillis(100));
+
+        assertThatExceptionOfType(ExecutionException.class)
+                .isThrownBy(() -> result.get(5, TimeUnit.SECONDS))
+                .havingCause()
+                .isInstanceOf(TimeoutException.class);
+    }
+
+    @Test
+    void awaitShouldReturnResultOfFuture() throws IOException {
+        var result = Connector.await(CompletableFuture.completedFuture("mock-result"));
+
+        assertThat(result)
+                .isEqualTo("mock-result");
+    }
+
+    @Test
+    void awaitShouldRethrowIOExceptionFailingFuture() {
+        var exception = new IOException("mock exception");
+
+        assertThatIOException()
+                .isThrownBy(() -> Connector.await(CompletableFuture.failedFuture(exception)))
+                .withMessage("mock exception")
+                .withNoCause();
+    }
+
+    @Test
+    void awaitShouldWrapCheckedExceptionFailingFutureAsIOException() {
+        var exception = new TimeoutException("mock exception");
+
+        assertThatIOException()
+                .isThrownBy(() -> Connector.await(CompletableFuture.failedFuture(exception)))
+                .withCause(exception);
+    }
+
     @Nested
     class WhenInterrupted {
 
@@ -195,6 +341,21 @@ class ConnectorTest {
                     .isInstanceOf(InterruptedException.class);
         }
 
+        @Test
+        void awaitShouldCancelFutureAndBubbleUpInterruptedExceptionAsIOException() {
+            var future = new CompletableFuture<String>();
+
+            assertThatIOException()
+                    .isThrownBy(() -> Connector.await(future))
+                    .havingCause()
+                    .isInstanceOf(InterruptedException.class);
+
+            assertThat(future.isCancelled())
+                    .isTrue();
+            assertThat(Thread.interrupted())
+                    .isTrue();
+        }
+
     }
 
     @Nested
@@ -331,13 +492,54 @@ class ConnectorTest {
                     .isEmpty();
         }
 
+        @ParameterizedTest
+        @MethodSource({"status1xx", "status3xx", "status4xx", "status5xx"})
+        void successDataShouldNotDecodeBodyWhenStatusIsNot2xx(int status) {
+            buildResultWithBodyAndStatus("\"test\"", status)
+                    .successData();
+
+            verify(httpResponse, never()).body();
+        }
+
+        @Test
+        void getDataShouldDecodeBodyOnce() {
+            var result = buildResultWithBodyAndStatus("\"test\"", 200);
+
+            assertThat(result.getData())
+                    .contains("test");
+            assertThat(result.getData())
+                    .contains("test");
+
+            verify(httpResponse, times(1)).body();
+        }
+
+        @Test
+        void getDecodeErrorShouldReturnWhyBodyFailedToDecode() {
+            var result = buildResultWithBodyAndStatus("raw text", 200);
+
+            assertThat(result.getData())
+                    .isEmpty();
+            assertThat(result.getDecodeError())
+                    .get()
+                    .isInstanceOf(JsonProcessingException.class);
+        }
+
+        @Test
+        void getDecodeErrorShouldReturnEmptyWhenBodyDecodes() {
+            var result = buildResultWithBodyAndStatus("\"test\"", 200);
+
+            assertThat(result.getDecodeError())
+                    .isEmpty();
+        }
+
         Connector.Result<String> buildResultWithStatus(int status) {
             return buildResultWithBodyAndStatus("", status);
         }
 
         Connector.Result<String> buildResultWithBodyAndStatus(String body, int status) {
-            when(httpResponse.statusCode()).thenReturn(status);
-            when(httpResponse.body()).thenReturn(body.getBytes());
+            // Bodies are decoded lazily, so not every test reads both the status and the body
+            lenient().when(httpResponse.statusCode()).thenReturn(status);
+            lenient().when(httpResponse.body()).thenReturn(body.getBytes());
 
             return new Connector.Result<>(httpResponse, String.class);
         }
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2024 Mike Cowan.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+
+package io.blt.gregbot.plugin.connector;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ContentEncodingTest {
+
+    static final String BODY = "{ \"name\": \"Greg\" }".repeat(100);
+
+    final TransferMetrics metrics = new TransferMetrics();
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 7, 64 * 1024})
+    void decodingShouldInflateGzipBodyReceivedInChunks(int chunkBytes) throws Exception {
+        var compressed = gzip(BODY);
+
+        var result = receive("gzip", compressed, chunkBytes);
+
+        assertThat(result).isEqualTo(BODY);
+        assertThat(metrics.compressedResponses()).isOne();
+        assertThat(metrics.wireBytes()).isEqualTo(compressed.length);
+        assertThat(metrics.decodedBytes()).isEqualTo(BODY.length());
+    }
+
+    @Test
+    void decodingShouldInflateGzipBodyWithOptionalHeaderFields() throws Exception {
+        var compressed = gzip(BODY);
+        var header = new ByteArrayOutputStream();
+        header.write(compressed, 0, 3);
+        header.write(4 | 8 | 16);
+        header.write(compressed, 4, 6);
+        header.write(new byte[] {3, 0, 'x', 'y', 'z'});
+        header.write("body.json\0comment\0".getBytes(StandardCharsets.ISO_8859_1));
+        header.write(compressed, 10, compressed.length - 10);
+
+        var result = receive("gzip", header.toByteArray(), 1);
+
+        assertThat(result).isEqualTo(BODY);
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void decodingShouldInflateZlibWrappedOrRawDeflateBody(boolean nowrap) throws Exception {
+        var result = receive("deflate", deflate(BODY, nowrap), 5);
+
+        assertThat(result).isEqualTo(BODY);
+    }
+
+    @Test
+    void decodingShouldPassThroughBodyWithoutEncoding() throws Exception {
+        var result = receive(null, BODY.getBytes(StandardCharsets.UTF_8), 10);
+
+        assertThat(result).isEqualTo(BODY);
+        assertThat(metrics.compressedResponses()).isZero();
+        assertThat(metrics.compressionRatio()).isEqualTo(1.0);
+    }
+
+    @Test
+    void decodingShouldFailBodyThatIsNotCompressed() {
+        assertThatExceptionOfType(ExecutionException.class)
+                .isThrownBy(() -> receive("gzip", BODY.getBytes(StandardCharsets.UTF_8), 10))
+                .withCauseInstanceOf(ZipException.class);
+    }
+
+    @Test
+    void acceptingShouldAddAcceptEncodingHeader() {
+        var request = HttpRequest.newBuilder(URI.create("http://mock.domain/mock/path"))
+                .header("x-api-key", "mock-key")
+                .build();
+
+        var result = ContentEncoding.accepting(request);
+
+        assertThat(result.headers().map())
+                .containsEntry("Accept-Encoding", List.of("gzip, deflate"))
+                .containsEntry("x-api-key", List.of("mock-key"));
+    }
+
+    @Test
+    void acceptingShouldKeepExistingAcceptEncodingHeader() {
+        var request = HttpRequest.newBuilder(URI.create("http://mock.domain/mock/path"))
+                .header("Accept-Encoding", "identity")
+                .build();
+
+        assertThat(ContentEncoding.accepting(request))
+                .isSameAs(request);
+    }
+
+    private String receive(String encoding, byte[] body, int chunkBytes) throws Exception {
+        var info = mock(HttpResponse.ResponseInfo.class);
+        when(info.headers()).thenReturn(HttpHeaders.of(
+                encoding == null ? Map.of() : Map.of("Content-Encoding", List.of(encoding)),
+                (name, value) -> true));
+
+        var subscriber = ContentEncoding.decoding(HttpResponse.BodyHandlers.ofString(), metrics).apply(info);
+        subscriber.onSubscribe(mock(Flow.Subscription.class));
+
+        var chunks = new ArrayList<List<ByteBuffer>>();
+        for (var i = 0; i < body.length; i += chunkBytes) {
+            chunks.add(List.of(ByteBuffer.wrap(body, i, Math.min(chunkBytes, body.length - i))));
+        }
+        chunks.forEach(subscriber::onNext);
+        subscriber.onComplete();
+
+        return subscriber.getBody().toCompletableFuture().get(5, TimeUnit.SECONDS);
+    }
+
+    private static byte[] gzip(String body) throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        try (var gzip = new GZIPOutputStream(bytes)) {
+            gzip.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] deflate(String body, boolean nowrap) throws IOException {
+        var bytes = new ByteArrayOutputStream();
+        try (var deflate = new DeflaterOutputStream(bytes, new Deflater(Deflater.DEFAULT_COMPRESSION, nowrap))) {
+            deflate.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        return bytes.toByteArray();
+    }
+
+}
@@ -9,19 +9,49 @@
 package io.blt.gregbot.plugin.identities.adobe.connector;
 
 import com.github.tomakehurst.wiremock.client.MappingBuilder;
+import com.github.tomakehurst.wiremock.client.WireMock;
 import com.github.tomakehurst.wiremock.junit5.WireMockTest;
+import io.blt.gregbot.plugin.tokens.TokenStore;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
 
+import static com.github.tomakehurst.wiremock.client.WireMock.badRequest;
+import static com.github.tomakehurst.wiremock.client.WireMock.containing;
 import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
 import static com.github.tomakehurst.wiremock.client.WireMock.okJson;
 import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.serverError;
 import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.unauthorized;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.stubbing.Scenario.STARTED;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
 
 @WireMockTest(proxyMode = true)
 class ImsServiceConnectorTest {
 
+    final ScheduledExecutorService scheduler = mock(ScheduledExecutorService.class);
+
     @Test
     void tokenShouldReturnIssuedAccessToken() throws IOException {
         stubFor(issueAccessToken()
@@ -64,6 +94,291 @@ class ImsServiceConnectorTest {
                 .isEqualTo("mock-refreshed-access-token");
     }
 
+    @Test
+    void shouldScheduleRefreshAtFractionOfExpiry() throws IOException {
+        stubIssueAccessToken();
+
+        connector(0.5, TokenStore.disabled());
+
+        verify(scheduler).schedule(any(Runnable.class), eq(500L), eq(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void tokenShouldReturnAccessTokenRefreshedInBackground() throws IOException {
+        stubIssueAccessToken();
+        stubFor(refreshAccessToken("mock-refresh-token")
+                .willReturn(okJson("""
+                        {
+                          "access_token": "mock-refreshed-access-token",
+                          "expires_in": 1000
+                        }
+                        """)));
+
+        var connector = connector(0.8, TokenStore.disabled());
+
+        assertThat(connector.token()).isEqualTo("mock-access-token");
+
+        scheduledRefresh(1).run();
+
+        assertThat(connector.token()).isEqualTo("mock-refreshed-access-token");
+    }
+
+    @Test
+    void backgroundRefreshShouldKeepPreviousRefreshTokenWhenNoneIsReturned() throws IOException {
+        stubIssueAccessToken();
+        stubFor(refreshAccessToken("mock-refresh-token")
+                .willReturn(okJson("""
+                        {
+                          "access_token": "mock-refreshed-access-token",
+                          "expires_in": 1000
+                        }
+                        """)));
+
+        var connector = connector(0.8, TokenStore.disabled());
+
+        scheduledRefresh(1).run();
+        scheduledRefresh(2).run();
+
+        WireMock.verify(2, postRequestedFor(urlEqualTo("/ims/token/v1"))
+                .withRequestBody(containing("refresh_token=mock-refresh-token")));
+        assertThat(connector.token()).isEqualTo("mock-refreshed-access-token");
+    }
+
+    @Test
+    void backgroundRefreshShouldRetryWithJitterWhenItFails() throws IOException {
+        stubIssueAccessToken();
+        stubFor(refreshAccessToken("mock-refresh-token")
+                .willReturn(serverError()));
+
+        var connector = connector(0.8, TokenStore.disabled());
+
+        scheduledRefresh(1).run();
+
+        var delay = ArgumentCaptor.forClass(Long.class);
+        verify(scheduler, timeout(5_000).times(2))
+                .schedule(any(Runnable.class), delay.capture(), eq(TimeUnit.MILLISECONDS));
+        assertThat(delay.getAllValues().get(1)).isBetween(500L, 1_000L);
+        assertThat(connector.token()).isEqualTo("mock-access-token");
+    }
+
+    @Test
+    void backgroundRefreshShouldIssueNewTokenWhenImsRejectsRefreshToken(@TempDir Path directory) throws IOException {
+        stubFor(issueAccessToken()
+                .inScenario("issue").whenScenarioStateIs(STARTED).willSetStateTo("issued")
+                .willReturn(okJson("""
+                        {
+                          "access_token": "mock-access-token",
+                          "refresh_token": "mock-refresh-token",
+                          "expires_in": 1000
+                        }
+                        """)));
+        stubFor(issueAccessToken()
+                .inScenario("issue").whenScenarioStateIs("issued")
+                .willReturn(okJson("""
+                        {
+                          "access_token": "mock-reissued-access-token",
+                          "refresh_token": "mock-reissued-refresh-token",
+                          "expires_in": 1000
+                        }
+                        """)));
+        stubFor(refreshAccessToken("mock-refresh-token")
+                .willReturn(unauthorized()));
+
+        var tokens = new TokenStore(directory);
+        var connector = connector(0.8, tokens);
+
+        scheduledRefresh(1).run();
+        scheduledRefresh(2);
+
+        assertThat(connector.token()).isEqualTo("mock-reissued-access-token");
+        assertThat(tokens.get("ims", "mock-id@http://mock.ims")).contains("mock-reissued-refresh-token");
+        WireMock.verify(1, postRequestedFor(urlEqualTo("/ims/token/v1"))
+                .withRequestBody(containing("grant_type=refresh_token")));
+    }
+
+    @Test
+    void backgroundRefreshShouldNotRetryWhenImsRejectsIssuingToo() throws IOException {
+        stubFor(issueAccessToken()
+                .inScenario("issue").whenScenarioStateIs(STARTED).willSetStateTo("rejected")
+                .willReturn(okJson("""
+                        {
+                          "access_token": "mock-access-token",
+                          "refresh_token": "mock-refresh-token",
+                          "expires_in": 1000
+                        }
+                        """)));
+        stubFor(issueAccessToken()
+                .inScenario("issue").whenScenarioStateIs("rejected")
+                .willReturn(badRequest()));
+        stubFor(refreshAccessToken("mock-refresh-token")
+                .willReturn(unauthorized()));
+
+        var connector = connector(0.8, TokenStore.disabled());
+
+        scheduledRefresh(1).run();
+
+        verify(scheduler, after(500).times(1)).schedule(any(Runnable.class), anyLong(), eq(TimeUnit.MILLISECONDS));
+        WireMock.verify(1, postRequestedFor(urlEqualTo("/ims/token/v1"))
+                .withRequestBody(containing("grant_type=refresh_token")));
+        WireMock.verify(2, postRequestedFor(urlEqualTo("/ims/token/v1"))
+                .withRequestBody(containing("grant_type=authorization_code")));
+        assertThat(connector.token()).isEqualTo("mock-access-token");
+    }
+
+    @Test
+    void backgroundRefreshShouldNotBlockScheduler() throws IOException {
+        stubIssueAccessToken();
+        stubFor(refreshAccessToken("mock-refresh-token")
+                .willReturn(okJson("""
+                        {
+                          "access_token": "mock-refreshed-access-token",
+                          "expires_in": 1000
+                        }
+                        """).withFixedDelay(5_000)));
+
+        connector(0.8, TokenStore.disabled());
+
+        assertTimeoutPreemptively(Duration.ofSeconds(1), () -> scheduledRefresh(1).run());
+    }
+
+    @Test
+    void closeShouldCancelScheduledRefreshAndStopScheduling() throws IOException {
+        var scheduled = mock(ScheduledFuture.class);
+        doReturn(scheduled).when(scheduler).schedule(any(Runnable.class), anyLong(), eq(TimeUnit.MILLISECONDS));
+        stubIssueAccessToken();
+        stubFor(refreshAccessToken("mock-refresh-token")
+                .willReturn(serverError()));
+
+        var connector = connector(0.8, TokenStore.disabled());
+        var refresh = scheduledRefresh(1);
+
+        connector.close();
+        refresh.run();
+
+        verify(scheduled).cancel(false);
+        verify(scheduler, after(500).times(1)).schedule(any(Runnable.class), anyLong(), eq(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void constructorShouldRefreshUsingStoredRefreshTokenInsteadOfIssuing(@TempDir Path directory) throws IOException {
+        stubFor(refreshAccessToken("mock-stored-refresh-token")
+                .willReturn(okJson("""
+                        {
+                          "access_token": "mock-refreshed-access-token",
+                          "refresh_token": "mock-new-refresh-token",
+                          "expires_in": 1000
+                        }
+                        """)));
+
+        var tokens = new TokenStore(directory);
+        tokens.put("ims", "mock-id@http://mock.ims", "mock-stored-refresh-token");
+
+        var connector = connector(0.8, tokens);
+
+        assertThat(connector.token()).isEqualTo("mock-refreshed-access-token");
+        assertThat(tokens.get("ims", "mock-id@http://mock.ims")).contains("mock-new-refresh-token");
+    }
+
+    @Test
+    void constructorShouldIssueWhenStoredRefreshTokenIsRejected(@TempDir Path directory) throws IOException {
+        stubIssueAccessToken();
+        stubFor(refreshAccessToken("mock-stale-refresh-token")
+                .willReturn(badRequest()));
+
+        var tokens = new TokenStore(directory);
+        tokens.put("ims", "mock-id@http://mock.ims", "mock-stale-refresh-token");
+
+        var connector = connector(0.8, tokens);
+
+        assertThat(connector.token()).isEqualTo("mock-access-token");
+        assertThat(tokens.get("ims", "mock-id@http://mock.ims")).contains("mock-refresh-token");
+    }
+
+    @Test
+    void tokenAsyncShouldShareSingleRefreshOfExpiredToken() throws Exception {
+        stubFor(issueAccessToken()
+                .willReturn(okJson("""
+                        {
+                          "refresh_token": "mock-refresh-token",
+                          "expires_in": 0
+                        }
+                        """)));
+        stubFor(refreshAccessToken("mock-refresh-token")
+                .willReturn(okJson("""
+                        {
+                          "access_token": "mock-refreshed-access-token",
+                          "expires_in": 1000
+                        }
+                        """)));
+
+        var connector = connector(0.8, TokenStore.disabled());
+
+        var first = connector.tokenAsync();
+        var second = connector.tokenAsync();
+
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("mock-refreshed-access-token");
+        assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo("mock-refreshed-access-token");
+        WireMock.verify(1, postRequestedFor(urlEqualTo("/ims/token/v1"))
+                .withRequestBody(containing("grant_type=refresh_token")));
+    }
+
+    @Test
+    void connectAsyncShouldCompleteWithConnectorHoldingIssuedAccessToken() throws Exception {
+        stubIssueAccessToken();
+
+        var connector = ImsServiceConnector.connectAsync(
+                        "http://mock.ims", "mock-id", "mock-secret", "mock-code", "mock-scope", 0.8,
+                        TokenStore.disabled())
+                .get(5, TimeUnit.SECONDS);
+
+        assertThat(connector.token()).isEqualTo("mock-access-token");
+    }
+
+    @Test
+    void connectAsyncShouldCompleteExceptionallyWhenTokenCannotBeIssued() {
+        stubFor(issueAccessToken()
+                .willReturn(badRequest()));
+
+        var result = ImsServiceConnector.connectAsync(
+                "http://mock.ims", "mock-id", "mock-secret", "mock-code", "mock-scope", 0.8, TokenStore.disabled());
+
+        assertThatExceptionOfType(ExecutionException.class)
+                .isThrownBy(() -> result.get(5, TimeUnit.SECONDS))
+                .havingCause()
+                .isInstanceOf(IOException.class)
+                .withMessage("Failed to issue auth token");
+    }
+
+    @Test
+    void constructorShouldThrowWhenRefreshAtIsOutOfRange() {
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> connector(1.5, TokenStore.disabled()));
+    }
+
+    private void stubIssueAccessToken() {
+        stubFor(issueAccessToken()
+                .willReturn(okJson("""
+                        {
+                          "access_token": "mock-access-token",
+                          "refresh_token": "mock-refresh-token",
+                          "expires_in": 1000
+                        }
+                        """)));
+    }
+
+    private ImsServiceConnector connector(double refreshAt, TokenStore tokens) throws IOException {
+        return new ImsServiceConnector(
+                "http://mock.ims", "mock-id", "mock-secret", "mock-code", "mock-scope", refreshAt, tokens, scheduler);
+    }
+
+    private Runnable scheduledRefresh(int count) {
+        var runnable = ArgumentCaptor.forClass(Runnable.class);
+        // Background refreshes complete asynchronously, scheduling the next once they do
+        verify(scheduler, timeout(5_000).times(count))
+                .schedule(runnable.capture(), anyLong(), eq(TimeUnit.MILLISECONDS));
+        return runnable.getValue();
+    }
+
     private MappingBuilder issueAccessToken() {
         return post("/ims/token/v1")
                 .withHost(equalTo("mock.ims"))
@@ -11,13 +11,16 @@ package io.blt.gregbot.plugin.secrets.vault;
 import com.bettercloud.vault.VaultException;
 import com.github.tomakehurst.wiremock.junit5.WireMockTest;
 import io.blt.gregbot.plugin.secrets.SecretException;
+import io.blt.gregbot.plugin.tokens.TokenStore;
 import java.io.IOException;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 import org.assertj.core.api.SoftAssertionsProvider;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -54,6 +57,11 @@ class VaultOidcTest {
             "host", "http://mock-host"
     );
 
+    final Map<String, String> persistedProperties = Map.of(
+            "host", "http://mock-host",
+            "persistToken", "true"
+    );
+
     @ParameterizedTest
     @CsvSource({"host"})
     void loadShouldThrowWhenPropertiesIsMissingKey(String key) {
@@ -82,6 +90,18 @@ class VaultOidcTest {
                 .withMessageContaining(value);
     }
 
+    @ParameterizedTest
+    @CsvSource({"0", "-1"})
+    void loadShouldThrowWhenConcurrencyIsNotPositive(String concurrency) {
+        var properties = requiredPropertiesWith("concurrency", concurrency);
+
+        assertThatExceptionOfType(SecretException.class)
+                .isThrownBy(() -> new VaultOidc().load(properties))
+                .havingCause()
+                .isInstanceOf(IllegalArgumentException.class)
+                .withMessage("'concurrency' must be positive but was " + concurrency);
+    }
+
     @Test
     void loadShouldUsePropertiesWhenConfiguringOidc() {
         mockVault();
@@ -145,6 +165,138 @@ class VaultOidcTest {
                 );
     }
 
+    @Test
+    void loadShouldReuseStoredTokenWithoutLoggingIn() throws Exception {
+        mockVault();
+        stubFor(get("/v1/auth/token/lookup-self")
+                .withHost(equalTo("mock-host"))
+                .withHeader("X-Vault-Token", equalTo("mock-stored-token"))
+                .willReturn(okJson("""
+                            {
+                              "data": {
+                                "ttl": 3600,
+                                "renewable": true
+                              }
+                            }
+                            """)));
+
+        var tokens = TokenStore.defaultStore();
+        tokens.put("vault", "oidc/@http://mock-host", "mock-stored-token");
+        try {
+            var plugin = new VaultOidc();
+            plugin.load(persistedProperties);
+
+            assertThat(plugin.secretsForPath("mock/path"))
+                    .containsEntry("mock-secret-key1", "mock-secret-value1");
+            assertThat(plugin.tokenMetrics().reauthentications()).isZero();
+        } finally {
+            tokens.remove("vault", "oidc/@http://mock-host");
+        }
+    }
+
+    @Test
+    void loadShouldLogInWhenStoredTokenIsNoLongerValid() throws Exception {
+        mockVault();
+
+        var tokens = TokenStore.defaultStore();
+        tokens.put("vault", "oidc/@http://mock-host", "mock-revoked-token");
+        try {
+            doWithMockedDesktop(() -> new VaultOidc().load(persistedProperties));
+
+            assertThat(tokens.get("vault", "oidc/@http://mock-host")).contains("mock-token");
+        } finally {
+            tokens.remove("vault", "oidc/@http://mock-host");
+        }
+    }
+
+    @Test
+    void loadShouldNotReuseTokenStoredForAnotherRole() throws Exception {
+        mockVault();
+        var properties = new HashMap<>(persistedProperties);
+        properties.put("role", "mock-role");
+
+        var tokens = TokenStore.defaultStore();
+        tokens.put("vault", "oidc/@http://mock-host", "mock-stored-token");
+        try {
+            doWithMockedDesktop(() -> new VaultOidc().load(properties));
+
+            assertThat(tokens.get("vault", "oidc/mock-role@http://mock-host")).contains("mock-token");
+            assertThat(tokens.get("vault", "oidc/@http://mock-host")).contains("mock-stored-token");
+        } finally {
+            tokens.remove("vault", "oidc/@http://mock-host");
+            tokens.remove("vault", "oidc/mock-role@http://mock-host");
+        }
+    }
+
+    @Test
+    void leasedSecretsForPathShouldReportLeaseDurationFromVault() throws Exception {
+        mockVault(true);
+        stubFor(get("/v1/mock/leased")
+                .withHost(equalTo("mock-host"))
+                .willReturn(okJson("""
+                            {
+                              "lease_id": "mock/leased/mock-lease-id",
+                              "lease_duration": 300,
+                              "renewable": true,
+                              "data": {
+                                "mock-secret-key1": "mock-secret-value1"
+                              }
+                            }
+                            """)));
+
+        var properties = requiredPropertiesWith("engine", "1");
+
+        var plugin = new VaultOidc();
+        doWithMockedDesktop(() -> plugin.load(properties));
+
+        var result = plugin.leasedSecretsForPath("mock/leased");
+
+        assertThat(result.lease()).isEqualTo(Duration.ofMinutes(5));
+        assertThat(result.secrets()).containsOnly(entry("mock-secret-key1", "mock-secret-value1"));
+    }
+
+    @Test
+    void leasedSecretsForPathShouldNotReportLeaseWhenVaultDoesNot() throws Exception {
+        mockVault();
+
+        var plugin = new VaultOidc();
+        doWithMockedDesktop(() -> plugin.load(requiredProperties));
+
+        var result = plugin.leasedSecretsForPath("mock/path");
+
+        assertThat(result.lease()).isNull();
+    }
+
+    @Test
+    void leasedSecretsForPathsShouldReadPathsOnPoolSharedByEveryCall() throws Exception {
+        mockVault(true);
+
+        var properties = requiredPropertiesWith("engine", "1");
+        properties.put("concurrency", "1");
+
+        var plugin = new VaultOidc();
+        doWithMockedDesktop(() -> plugin.load(properties));
+
+        assertThat(plugin.leasedSecretsForPaths(Set.of("mock/path")))
+                .containsOnlyKeys("mock/path");
+        assertThat(plugin.leasedSecretsForPaths(Set.of("mock/path")).get("mock/path").secrets())
+                .containsEntry("mock-secret-key1", "mock-secret-value1");
+    }
+
+    @Test
+    void leasedSecretsForPathsShouldReadPathsAfterReload() throws Exception {
+        mockVault(true);
+
+        var properties = requiredPropertiesWith("engine", "1");
+
+        var plugin = new VaultOidc();
+        doWithMockedDesktop(() -> plugin.load(properties));
+        doWithMockedDesktop(() -> plugin.load(properties));
+
+        assertThat(plugin.leasedSecretsForPaths(Set.of("mock/path")).get("mock/path").secrets())
+                .containsEntry("mock-secret-key1", "mock-secret-value1");
+    }
+
     @ParameterizedTest
     @CsvSource({"1", "2"})
     void secretsForPathShouldBubbleUpVaultExceptionAsSecretException(String engine) throws Exception {
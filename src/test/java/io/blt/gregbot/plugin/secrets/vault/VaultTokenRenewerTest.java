@@ -0,0 +1,313 @@
+/*
+ * Copyright (c) 2024 Mike Cowan.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+
+package io.blt.gregbot.plugin.secrets.vault;
+
+import com.bettercloud.vault.Vault;
+import com.bettercloud.vault.VaultException;
+import com.bettercloud.vault.api.Auth;
+import com.bettercloud.vault.response.AuthResponse;
+import com.bettercloud.vault.response.LookupResponse;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class VaultTokenRenewerTest {
+
+    @Mock
+    ScheduledExecutorService scheduler;
+
+    @Mock
+    Vault vault;
+
+    @Mock
+    Auth auth;
+
+    @Mock
+    AuthResponse renewable;
+
+    @Mock
+    LookupResponse lookup;
+
+    final AtomicInteger logins = new AtomicInteger();
+    final Queue<Runnable> loginTasks = new ArrayDeque<>();
+
+    VaultTokenRenewer renewer;
+
+    @BeforeEach
+    void beforeEach() {
+        lenient().when(vault.auth()).thenReturn(auth);
+
+        renewer = new VaultTokenRenewer(
+                () -> "mock-token-" + logins.incrementAndGet(),
+                token -> vault,
+                0.75,
+                scheduler,
+                loginTasks::add);
+    }
+
+    @Test
+    void startShouldAuthenticateAndScheduleRenewalAheadOfExpiry() throws Exception {
+        mockRenewable(3600);
+        when(auth.renewSelf()).thenReturn(renewable);
+
+        renewer.start();
+
+        assertThat(logins).hasValue(1);
+        assertThat(renewer.vault()).isSameAs(vault);
+        verify(scheduler).schedule(any(Runnable.class), eq(2_700_000L), eq(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void backgroundRenewalShouldRenewWithoutAuthenticating() throws Exception {
+        mockRenewable(3600);
+        when(auth.renewSelf()).thenReturn(renewable);
+
+        renewer.start();
+        scheduled(1).run();
+
+        assertThat(logins).hasValue(1);
+        assertThat(renewer.metrics())
+                .extracting(VaultTokenRenewer.Metrics::renewals, VaultTokenRenewer.Metrics::reauthentications)
+                .containsExactly(2L, 0L);
+    }
+
+    @Test
+    void backgroundRenewalShouldAuthenticateWhenTokenIsNotRenewable() throws Exception {
+        when(renewable.getAuthLeaseDuration()).thenReturn(3600L);
+        when(renewable.isAuthRenewable()).thenReturn(false);
+        when(auth.renewSelf()).thenReturn(renewable);
+
+        renewer.start();
+        scheduled(1).run();
+        loginTasks.remove().run();
+
+        assertThat(logins).hasValue(2);
+        assertThat(renewer.metrics().reauthentications()).isOne();
+    }
+
+    @Test
+    void backgroundRenewalShouldNotAuthenticateOnScheduler() throws Exception {
+        when(renewable.getAuthLeaseDuration()).thenReturn(3600L);
+        when(renewable.isAuthRenewable()).thenReturn(false);
+        when(auth.renewSelf()).thenReturn(renewable);
+
+        renewer.start();
+        scheduled(1).run();
+
+        assertThat(logins).hasValue(1);
+        assertThat(loginTasks).hasSize(1);
+    }
+
+    @Test
+    void backgroundRenewalShouldAuthenticateWhenTokenIsNearMaximumTtl() throws Exception {
+        mockRenewable(30);
+        when(auth.renewSelf()).thenReturn(renewable);
+
+        renewer.start();
+        scheduled(1).run();
+        loginTasks.remove().run();
+
+        assertThat(logins).hasValue(2);
+    }
+
+    @Test
+    void backgroundRenewalShouldAuthenticateWhenRenewalIsDenied() throws Exception {
+        mockRenewable(3600);
+        when(auth.renewSelf())
+                .thenReturn(renewable)
+                .thenThrow(new VaultException("permission denied", 403))
+                .thenReturn(renewable);
+
+        renewer.start();
+        scheduled(1).run();
+        loginTasks.remove().run();
+
+        assertThat(logins).hasValue(2);
+        assertThat(renewer.metrics())
+                .extracting(VaultTokenRenewer.Metrics::renewalFailures, VaultTokenRenewer.Metrics::reauthentications)
+                .containsExactly(1L, 1L);
+    }
+
+    @Test
+    void backgroundRenewalShouldRetryWithJitterWhenRenewalFails() throws Exception {
+        mockRenewable(3600);
+        when(auth.renewSelf())
+                .thenReturn(renewable)
+                .thenThrow(new VaultException("server error", 500));
+
+        renewer.start();
+        scheduled(1).run();
+
+        var delay = ArgumentCaptor.forClass(Long.class);
+        verify(scheduler, times(2)).schedule(any(Runnable.class), delay.capture(), eq(TimeUnit.MILLISECONDS));
+        assertThat(delay.getAllValues().get(1)).isBetween(500L, 1_000L);
+        assertThat(logins).hasValue(1);
+    }
+
+    @Test
+    void backgroundRenewalShouldRetryWithJitterWhenRenewalThrowsUnexpectedly() throws Exception {
+        mockRenewable(3600);
+        when(auth.renewSelf())
+                .thenReturn(renewable)
+                .thenThrow(new IllegalStateException("mock-failure"));
+
+        renewer.start();
+        scheduled(1).run();
+
+        var delay = ArgumentCaptor.forClass(Long.class);
+        verify(scheduler, times(2)).schedule(any(Runnable.class), delay.capture(), eq(TimeUnit.MILLISECONDS));
+        assertThat(delay.getAllValues().get(1)).isBetween(500L, 1_000L);
+        assertThat(renewer.metrics().renewalFailures()).isOne();
+    }
+
+    @Test
+    void backgroundAuthenticationShouldNotRetryWhenItFails() throws Exception {
+        when(renewable.getAuthLeaseDuration()).thenReturn(3600L);
+        when(renewable.isAuthRenewable()).thenReturn(false);
+        when(auth.renewSelf()).thenReturn(renewable);
+
+        var renewer = rejectingSecondLogin();
+
+        renewer.start();
+        scheduled(1).run();
+        loginTasks.remove().run();
+
+        assertThat(logins).hasValue(2);
+        assertThat(loginTasks).isEmpty();
+        verify(scheduler, times(1)).schedule(any(Runnable.class), anyLong(), eq(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void vaultShouldAuthenticateOnDemandWhenBackgroundAuthenticationFailed() throws Exception {
+        when(renewable.getAuthLeaseDuration()).thenReturn(3600L);
+        when(renewable.isAuthRenewable()).thenReturn(false);
+        when(auth.renewSelf()).thenReturn(renewable);
+
+        var renewer = rejectingSecondLogin();
+
+        renewer.start();
+        scheduled(1).run();
+        loginTasks.remove().run();
+
+        assertThat(renewer.vault()).isSameAs(vault);
+        assertThat(renewer.vault()).isSameAs(vault);
+
+        assertThat(logins).hasValue(3);
+        assertThat(renewer.metrics().reauthentications()).isEqualTo(2);
+    }
+
+    @Test
+    void resumeShouldKeepNonRenewableTokenWithTtlLeft() throws Exception {
+        when(auth.lookupSelf()).thenReturn(lookup);
+        when(lookup.getTTL()).thenReturn(3600L);
+        when(lookup.isRenewable()).thenReturn(false);
+
+        renewer.resume("mock-stored-token");
+
+        assertThat(logins).hasValue(0);
+        assertThat(renewer.vault()).isSameAs(vault);
+        verify(scheduler).schedule(any(Runnable.class), eq(2_700_000L), eq(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void resumeShouldAuthenticateWhenNonRenewableTokenIsAboutToExpire() throws Exception {
+        when(auth.lookupSelf()).thenReturn(lookup);
+        when(lookup.getTTL()).thenReturn(30L);
+        when(lookup.isRenewable()).thenReturn(false);
+        mockRenewable(3600);
+        when(auth.renewSelf()).thenReturn(renewable);
+
+        renewer.resume("mock-stored-token");
+
+        assertThat(logins).hasValue(1);
+    }
+
+    @Test
+    void closeShouldCancelScheduledRenewalAndStopRenewing() throws Exception {
+        var future = mock(ScheduledFuture.class);
+        doReturn(future).when(scheduler).schedule(any(Runnable.class), anyLong(), eq(TimeUnit.MILLISECONDS));
+        mockRenewable(3600);
+        when(auth.renewSelf()).thenReturn(renewable);
+
+        renewer.start();
+        renewer.close();
+        scheduled(1).run();
+
+        verify(future).cancel(false);
+        verify(auth, times(1)).renewSelf();
+        assertThat(renewer.metrics().renewals()).isOne();
+    }
+
+    @Test
+    void startShouldNotScheduleRenewalWhenTokenDoesNotExpire() throws Exception {
+        when(renewable.getAuthLeaseDuration()).thenReturn(0L);
+        when(auth.renewSelf()).thenReturn(renewable);
+
+        renewer.start();
+
+        verify(scheduler, never()).schedule(any(Runnable.class), anyLong(), any());
+        assertThat(renewer.metrics().expiresAt()).isNull();
+    }
+
+    @Test
+    void constructorShouldThrowWhenRenewAtIsOutOfRange() {
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> new VaultTokenRenewer(() -> "mock-token", token -> vault, 1, scheduler, Runnable::run));
+    }
+
+    private VaultTokenRenewer rejectingSecondLogin() {
+        return new VaultTokenRenewer(
+                () -> {
+                    if (logins.incrementAndGet() == 2) {
+                        throw new IOException("mock-failure");
+                    }
+                    return "mock-token";
+                },
+                token -> vault,
+                0.75,
+                scheduler,
+                loginTasks::add);
+    }
+
+    private void mockRenewable(long leaseSeconds) {
+        when(renewable.getAuthLeaseDuration()).thenReturn(leaseSeconds);
+        when(renewable.isAuthRenewable()).thenReturn(true);
+    }
+
+    private Runnable scheduled(int count) {
+        var runnable = ArgumentCaptor.forClass(Runnable.class);
+        verify(scheduler, times(count)).schedule(runnable.capture(), anyLong(), eq(TimeUnit.MILLISECONDS));
+        return runnable.getValue();
+    }
+
+}
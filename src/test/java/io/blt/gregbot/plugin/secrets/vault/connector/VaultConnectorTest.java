@@ -15,6 +15,7 @@ import io.blt.gregbot.plugin.secrets.vault.connector.dto.CallbackRequest;
 import io.blt.gregbot.plugin.secrets.vault.connector.dto.CallbackResponse;
 import java.io.IOException;
 import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.Test;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
@@ -109,4 +110,62 @@ class VaultConnectorTest {
                 .isEqualTo("mock-client-token");
     }
 
+    @Test
+    void fetchAuthUrlAsyncShouldCompleteWithAuthUrlResponse() throws Exception {
+        stubFor(post("/v1/auth/mock-mount/oidc/auth_url")
+                .withHost(equalTo("mock.vault"))
+                .withFormParam("role", equalTo("mock-role"))
+                .willReturn(okJson("""
+                        {
+                          "data": {
+                            "auth_url": "mock-auth-url"
+                          }
+                        }
+                        """)));
+
+        var result = new VaultConnector("http://mock.vault")
+                .fetchAuthUrlAsync(new AuthUrlRequest(
+                        "mock-mount",
+                        "mock-role",
+                        "mock-redirect-url",
+                        "mock-client-nonce"))
+                .get(5, TimeUnit.SECONDS);
+
+        assertThat(result.getData())
+                .get()
+                .extracting(r -> r.data().authUrl())
+                .isEqualTo("mock-auth-url");
+    }
+
+    @Test
+    void fetchCallbackAsyncShouldCompleteWithCallbackResponse() throws Exception {
+        stubFor(get("/v1/auth/mock-mount/oidc/callback" +
+                    "?state=mock-state" +
+                    "&code=mock-code" +
+                    "&id_token=mock-id-token" +
+                    "&client_nonce=mock-client-nonce")
+                .withHost(equalTo("mock.vault"))
+                .willReturn(okJson("""
+                        {
+                          "auth": {
+                            "client_token": "mock-client-token"
+                          }
+                        }
+                        """)));
+
+        var result = new VaultConnector("http://mock.vault")
+                .fetchCallbackAsync(new CallbackRequest(
+                        "mock-mount",
+                        "mock-state",
+                        "mock-code",
+                        "mock-id-token",
+                        "mock-client-nonce"))
+                .get(5, TimeUnit.SECONDS);
+
+        assertThat(result.getData())
+                .get()
+                .extracting(r -> r.auth().clientToken())
+                .isEqualTo("mock-client-token");
+    }
+
 }
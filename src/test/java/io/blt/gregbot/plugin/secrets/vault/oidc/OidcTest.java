@@ -21,6 +21,8 @@ import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicReference;
 import org.junit.jupiter.api.BeforeEach;
@@ -127,6 +129,27 @@ class OidcTest {
                 .isEqualTo("mock-token");
     }
 
+    @Test
+    void fetchAuthTokenShouldTakeTurnsWhenLoginsShareListenPort() throws Exception {
+        var other = new Oidc(config, connector);
+
+        var first = CompletableFuture.supplyAsync(() -> fetchAuthTokenUnchecked(oidc));
+        var second = CompletableFuture.supplyAsync(() -> fetchAuthTokenUnchecked(other));
+
+        assertThat(first.get(5, TimeUnit.SECONDS))
+                .isEqualTo("mock-token");
+        assertThat(second.get(5, TimeUnit.SECONDS))
+                .isEqualTo("mock-token");
+    }
+
+    private String fetchAuthTokenUnchecked(Oidc oidc) {
+        try {
+            return oidc.fetchAuthToken(this::makeHttpCall);
+        } catch (IOException | InterruptedException | TimeoutException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     private void makeHttpCall(URI uri) {
         var request = HttpRequest.newBuilder()
                 .uri(uri)
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2024 Mike Cowan.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+
+package io.blt.gregbot.plugin.tokens;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class TokenStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void getShouldReturnTokenPutByAnotherInstance() {
+        new TokenStore(directory).put("vault", "http://mock-host", "mock-token");
+
+        assertThat(new TokenStore(directory).get("vault", "http://mock-host"))
+                .contains("mock-token");
+    }
+
+    @Test
+    void getShouldKeyTokensByTypeAndKey() {
+        var store = new TokenStore(directory);
+        store.put("vault", "http://mock-host", "mock-vault-token");
+        store.put("ims", "http://mock-host", "mock-ims-token");
+
+        assertThat(store.get("vault", "http://mock-host")).contains("mock-vault-token");
+        assertThat(store.get("ims", "http://mock-host")).contains("mock-ims-token");
+        assertThat(store.get("vault", "http://other-host")).isEmpty();
+    }
+
+    @Test
+    void putShouldWriteFileReadableOnlyByOwner() throws IOException {
+        assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+
+        new TokenStore(directory).put("vault", "http://mock-host", "mock-token");
+
+        assertThat(Files.getPosixFilePermissions(directory.resolve("tokens.json")))
+                .isEqualTo(PosixFilePermissions.fromString("rw-------"));
+    }
+
+    @Test
+    void removeShouldForgetToken() {
+        var store = new TokenStore(directory);
+        store.put("vault", "http://mock-host", "mock-token");
+
+        store.remove("vault", "http://mock-host");
+
+        assertThat(new TokenStore(directory).get("vault", "http://mock-host")).isEmpty();
+    }
+
+    @Test
+    void getShouldReturnEmptyWhenStoreIsUnreadable() throws IOException {
+        var store = new TokenStore(directory);
+        store.put("vault", "http://mock-host", "mock-token");
+
+        Files.write(directory.resolve("tokens.json"), new byte[]{1, 2, 3});
+
+        assertThat(store.get("vault", "http://mock-host")).isEmpty();
+    }
+
+    @Test
+    void disabledStoreShouldRememberNothing() {
+        TokenStore.disabled().put("vault", "http://mock-host", "mock-token");
+
+        assertThat(TokenStore.disabled().get("vault", "http://mock-host")).isEmpty();
+    }
+
+    @Test
+    void forPropertiesShouldReturnDisabledStoreWhenPersistTokenIsFalse() {
+        assertThat(TokenStore.forProperties(Map.of("persistToken", "false")))
+                .isSameAs(TokenStore.disabled());
+    }
+
+    @Test
+    void forPropertiesShouldReturnDisabledStoreUnlessPersistTokenIsSet() {
+        assertThat(TokenStore.forProperties(Map.of()))
+                .isSameAs(TokenStore.disabled());
+    }
+
+    @Test
+    void forPropertiesShouldReturnDefaultStoreWhenPersistTokenIsTrue() {
+        assertThat(TokenStore.forProperties(Map.of("persistToken", "true")))
+                .isSameAs(TokenStore.defaultStore());
+    }
+
+}
@@ -9,6 +9,10 @@
 package io.blt.gregbot.ui.logging;
 
 import ch.qos.logback.classic.Logger;
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.IntStream;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
@@ -20,6 +24,9 @@ import org.slf4j.Slf4jUtils;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Fail.fail;
 
+import javax.swing.SwingUtilities;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.text.BadLocationException;
 import javax.swing.text.Document;
 
@@ -68,6 +75,7 @@ class DocumentAppenderTest {
         logger.info("test-message-before-register");
         var document = DocumentAppender.document("test", "TEST");
         logger.info("test-message-after-register");
+        flush();
 
         assertThat(asText(document))
                 .isEqualTo("test-pattern test-message-before-register%ntest-pattern test-message-after-register%n"
@@ -81,6 +89,7 @@ class DocumentAppenderTest {
         var logger = LoggerFactory.getLogger("test");
         IntStream.rangeClosed(1, 10)
                 .forEach(i -> logger.info("log {}", i));
+        flush();
 
         assertThat(asText(document))
                 .asString()
@@ -88,6 +97,63 @@ class DocumentAppenderTest {
                         .formatted());
     }
 
+    @Test
+    void shouldUpdateDocumentOnEventDispatchThreadWithoutFlush() throws InterruptedException {
+        var document = DocumentAppender.document("test", "TEST");
+        var updated = new CountDownLatch(1);
+        var onEventDispatchThread = new AtomicBoolean();
+        document.addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                onEventDispatchThread.set(SwingUtilities.isEventDispatchThread());
+                updated.countDown();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {}
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {}
+        });
+
+        LoggerFactory.getLogger("test").info("test-message");
+
+        assertThat(updated.await(5, TimeUnit.SECONDS))
+                .isTrue();
+        assertThat(onEventDispatchThread)
+                .isTrue();
+    }
+
+    @Test
+    void shouldKeepMostRecentEventsWhenLoggingFasterThanFlushing() throws Exception {
+        var document = DocumentAppender.document("test", "TEST");
+
+        var logger = LoggerFactory.getLogger("test");
+        var threads = IntStream.range(0, 4)
+                .mapToObj(t -> new Thread(() -> IntStream.range(0, 1000).forEach(i -> logger.info("log {}", i))))
+                .toList();
+        threads.forEach(Thread::start);
+        for (var thread : threads) {
+            thread.join();
+        }
+        logger.info("last");
+        flush();
+
+        var text = asText(document);
+        assertThat(countLines(text))
+                .isEqualTo(3);
+        assertThat(text)
+                .endsWith("test-pattern last%n".formatted());
+    }
+
+    private void flush() {
+        try {
+            SwingUtilities.invokeAndWait(findDocumentAppender()::flush);
+        } catch (InterruptedException | InvocationTargetException e) {
+            fail(e);
+        }
+    }
+
     private String asText(Document document) {
         assertThat(document)
                 .isNotNull();
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2024 Mike Cowan.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+
+package io.blt.gregbot.ui.logging;
+
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LogIndexTest {
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "Failed to reach Skynet   | 4",
+            "user=T-800, attempt=2    | 3",
+            "a b c                    | 0",
+            "'  '                     | 0",
+            "Gr\u00F6\u00DFe 42      | 2"
+    })
+    void wordsShouldHashEachWordOfAtLeastTwoLettersOrDigits(String text, int expected) {
+        assertThat(LogIndex.words(text))
+                .hasSize(expected);
+    }
+
+    @Test
+    void wordsShouldIgnoreCase() {
+        assertThat(LogIndex.words("Skynet SKYNET skynet"))
+                .containsOnly(hash("skynet"));
+    }
+
+    @Test
+    void rowsShouldReturnRowsContainingWordMostRecentFirst() {
+        var index = new LogIndex(100);
+        index.add(0, "Started Skynet");
+        index.add(3, "Failed to reach Skynet");
+        index.add(5, "Skynet is slow, Skynet is slow");
+
+        assertThat(index.rows(hash("skynet"), 0, 10))
+                .containsExactly(5, 3, 0);
+        assertThat(index.rows(hash("slow"), 0, 10))
+                .containsExactly(5);
+        assertThat(index.rows(hash("unknown"), 0, 10))
+                .isEmpty();
+    }
+
+    @Test
+    void rowsShouldOnlyReturnRowsFromRow() {
+        var index = new LogIndex(100);
+        IntStream.range(0, 10).forEach(i -> index.add(i, "Skynet"));
+
+        assertThat(index.rows(hash("skynet"), 7, 10))
+                .containsExactly(9, 8, 7);
+    }
+
+    @Test
+    void rowsShouldNotReturnRowsWhosePostingsWereOverwritten() {
+        var index = new LogIndex(4);
+        index.add(0, "Skynet");
+        index.add(1, "Skynet");
+        index.add(2, "T-800 T-1000");
+        index.add(3, "Skynet");
+
+        assertThat(index.rows(hash("skynet"), 0, 10))
+                .containsExactly(3, 1);
+        assertThat(index.rows(hash("800"), 0, 10))
+                .containsExactly(2);
+    }
+
+    @Test
+    void rowsShouldFindEveryWordAfterTableGrows() {
+        var index = new LogIndex(10_000);
+        IntStream.range(0, 5000).forEach(i -> index.add(i, "word" + i));
+
+        assertThat(IntStream.range(0, 5000))
+                .allSatisfy(i -> assertThat(index.rows(hash("word" + i), 0, 5000)).containsExactly(i));
+    }
+
+    @Test
+    void rowsShouldReturnNothingAfterClear() {
+        var index = new LogIndex(100);
+        index.add(0, "Skynet");
+
+        index.clear();
+
+        assertThat(index.rows(hash("skynet"), 0, 10))
+                .isEmpty();
+    }
+
+    private static long hash(String word) {
+        return LogIndex.words(word)[0];
+    }
+
+}
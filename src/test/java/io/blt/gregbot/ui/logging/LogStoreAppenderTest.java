@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2024 Mike Cowan.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+
+package io.blt.gregbot.ui.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.slf4j.LoggerFactory;
+import org.slf4j.Slf4jUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LogStoreAppenderTest {
+
+    @AfterEach
+    void afterEach() {
+        Slf4jUtils.reset();
+    }
+
+    @Test
+    void shouldLoadAppenderProperties() {
+        var appender = findLogStoreAppender();
+
+        assertThat(appender)
+                .extracting(
+                        LogStoreAppender::getCapacity,
+                        LogStoreAppender::getTextCapacity,
+                        LogStoreAppender::getIndexCapacity,
+                        LogStoreAppender::getLayout)
+                .map(Object::toString)
+                .containsExactly(
+                        "5",
+                        "1024",
+                        "100",
+                        "ch.qos.logback.classic.PatternLayout(\"%-5level %msg%n\")");
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "unknown, STORE",
+            "test, UNKNOWN",
+            "test, TEST"
+    })
+    void storeShouldReturnNullOnUnknownLoggerOrAppenderOrWrongAppenderType(String loggerName, String appenderName) {
+        assertThat(LogStoreAppender.store(loggerName, appenderName))
+                .isNull();
+    }
+
+    @Test
+    void shouldAppendEachLineOfEventToStore() {
+        var store = LogStoreAppender.store("test", "STORE");
+
+        var logger = LoggerFactory.getLogger("test");
+        logger.warn("first line\nsecond line");
+        logger.error("third line");
+
+        assertThat(rows(store))
+                .containsExactly(
+                        new LogStore.Row(0, Level.WARN, "WARN  first line"),
+                        new LogStore.Row(1, Level.WARN, "second line"),
+                        new LogStore.Row(2, Level.ERROR, "ERROR third line"));
+    }
+
+    @Test
+    void shouldCaptureLoggerAndThreadOfEvent() {
+        var store = LogStoreAppender.store("test", "STORE");
+
+        LoggerFactory.getLogger("test").info("test-message");
+        LoggerFactory.getLogger("test.child").info("test-message");
+
+        assertThat(store.loggers())
+                .containsExactly("test", "test.child");
+        assertThat(store.threads())
+                .containsExactly(Thread.currentThread().getName());
+        assertThat(store.find(new LogStore.Filter(null, "test.child", Thread.currentThread().getName(), null), 0)
+                .rows())
+                .containsExactly(1);
+    }
+
+    @Test
+    void shouldIndexMessageAndKeyValuePairsOfEvent() {
+        var store = LogStoreAppender.store("test", "STORE");
+
+        LoggerFactory.getLogger("test").atInfo().addKeyValue("user", "T-800").log("Connected to Skynet");
+
+        assertThat(store.find(new LogStore.Filter(null, null, null, "skynet user 800"), 0).rows())
+                .containsExactly(0);
+        assertThat(store.find(new LogStore.Filter(null, null, null, "info"), 0).rows())
+                .isEmpty();
+    }
+
+    @Test
+    void shouldIndexExceptionOfEventAndMatchItsStackTrace() {
+        var store = LogStoreAppender.store("test", "STORE");
+        var exception = new IllegalStateException("Skynet unreachable");
+        exception.setStackTrace(new StackTraceElement[0]);
+
+        LoggerFactory.getLogger("test").error("Failed", exception);
+
+        assertThat(store.find(new LogStore.Filter(null, null, null, "IllegalStateException unreachable"), 0).rows())
+                .containsExactly(0, 1);
+    }
+
+    @Test
+    void shouldKeepMostRecentLinesWhenLoggingFromManyThreads() throws InterruptedException {
+        var store = LogStoreAppender.store("test", "STORE");
+
+        var logger = LoggerFactory.getLogger("test");
+        var threads = IntStream.range(0, 4)
+                .mapToObj(t -> new Thread(() -> IntStream.range(0, 1000).forEach(i -> logger.info("log {}", i))))
+                .toList();
+        threads.forEach(Thread::start);
+        for (var thread : threads) {
+            thread.join();
+        }
+        logger.info("last");
+
+        assertThat(store.range())
+                .isEqualTo(new LogStore.Range(3996, 4001));
+        assertThat(store.row(4000).text())
+                .isEqualTo("INFO  last");
+    }
+
+    private LogStoreAppender findLogStoreAppender() {
+        if (LoggerFactory.getLogger("test") instanceof Logger logger) {
+            return (LogStoreAppender) logger.getAppender("STORE");
+        }
+        throw new IllegalStateException("Cannot find LogStoreAppender instance");
+    }
+
+    private static List<LogStore.Row> rows(LogStore store) {
+        var range = store.range();
+        return LongStream.range(range.first(), range.end())
+                .mapToObj(store::row)
+                .toList();
+    }
+
+}
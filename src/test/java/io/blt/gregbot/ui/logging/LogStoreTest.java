@@ -0,0 +1,293 @@
+/*
+ * Copyright (c) 2024 Mike Cowan.
+ *
+ * This source code is subject to the terms of the GNU General Public
+ * License, version 3. If a copy of the GPL was not distributed with this
+ * file, You can obtain one at: https://www.gnu.org/licenses/gpl-3.0.txt
+ */
+
+package io.blt.gregbot.ui.logging;
+
+import ch.qos.logback.classic.Level;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+class LogStoreTest {
+
+    @Test
+    void appendShouldStoreEachLineAsRow() {
+        var store = new LogStore(10, 1024);
+
+        store.append(Level.ERROR, "failed\r\n\tat Skynet.run()\n\n");
+        store.append(Level.INFO, "started");
+
+        assertThat(store.range())
+                .isEqualTo(new LogStore.Range(0, 4));
+        assertThat(rows(store))
+                .containsExactly(
+                        new LogStore.Row(0, Level.ERROR, "failed"),
+                        new LogStore.Row(1, Level.ERROR, "    at Skynet.run()"),
+                        new LogStore.Row(2, Level.ERROR, ""),
+                        new LogStore.Row(3, Level.INFO, "started"));
+    }
+
+    @Test
+    void appendShouldStoreNonAsciiText() {
+        var store = new LogStore(10, 1024);
+
+        store.append(Level.WARN, "Gr\u00F6\u00DFe \u2713 \uD83E\uDD16");
+
+        assertThat(store.row(0).text())
+                .isEqualTo("Gr\u00F6\u00DFe \u2713 \uD83E\uDD16");
+    }
+
+    @Test
+    void appendShouldEvictOldestRowsWhenCapacityIsReached() {
+        var store = new LogStore(3, 1024);
+
+        IntStream.rangeClosed(1, 10).forEach(i -> store.append(Level.INFO, "log " + i));
+
+        assertThat(store.range())
+                .isEqualTo(new LogStore.Range(7, 10));
+        assertThat(rows(store))
+                .extracting(LogStore.Row::text)
+                .containsExactly("log 8", "log 9", "log 10");
+    }
+
+    @Test
+    void appendShouldEvictOldestRowsWhenTextCapacityIsReached() {
+        var store = new LogStore(1000, 64, 1000, 32);
+
+        IntStream.range(0, 100).forEach(i -> store.append(Level.INFO, "log %03d".formatted(i)));
+
+        // Each chunk holds four lines of 7 bytes, so two chunks hold the last eight lines
+        assertThat(rows(store))
+                .extracting(LogStore.Row::text)
+                .containsExactly("log 092", "log 093", "log 094", "log 095", "log 096", "log 097", "log 098",
+                        "log 099");
+    }
+
+    @Test
+    void appendShouldTruncateLinesLongerThanChunk() {
+        var store = new LogStore(10, 64, 10, 16);
+
+        store.append(Level.INFO, "x".repeat(100));
+
+        assertThat(store.row(0).text())
+                .isEqualTo("xxxxx");
+    }
+
+    @Test
+    void longestLineShouldBeLengthOfLongestLineAppended() {
+        var store = new LogStore(10, 1024);
+
+        store.append(Level.INFO, "short\nmuch longer\nmid");
+
+        assertThat(store.longestLine())
+                .isEqualTo(11);
+    }
+
+    @Test
+    void clearShouldEvictAllRowsAndKeepNumbering() {
+        var store = new LogStore(10, 1024);
+        store.append(Level.INFO, "one\ntwo");
+
+        store.clear();
+        store.append(Level.INFO, "three");
+
+        assertThat(store.range())
+                .isEqualTo(new LogStore.Range(2, 3));
+        assertThat(store.row(1))
+                .isNull();
+        assertThat(store.row(2).text())
+                .isEqualTo("three");
+        assertThat(store.longestLine())
+                .isEqualTo(5);
+    }
+
+    @ParameterizedTest
+    @CsvSource(nullValues = "null", value = {
+            "null, null, null, null, 0 1 2 3 4",
+            "WARN, null, null, null, 1 2 3 4",
+            "ERROR, null, null, null, 1 2 3",
+            "null, io.blt.gregbot, null, null, 0 1 2 3 4",
+            "null, io.blt.gregbot.core, null, null, 1 2 3",
+            "null, io.blt.greg, null, null, ''",
+            "null, null, worker-1, null, 1 2 3 4",
+            "null, null, unknown, null, ''",
+            "null, null, null, skynet, 0 1 2 3 4",
+            "null, null, null, SKYNET timeout, 1 2 3",
+            "null, null, null, at, ''",
+            "null, null, null, ' ', 0 1 2 3 4",
+            "INFO, io.blt.gregbot, worker-1, skynet, 1 2 3 4"
+    })
+    void findShouldReturnRowsOfMatchingEvents(
+            String level, String logger, String thread, String text, String expected) {
+        var store = storeOfEvents();
+
+        var result = store.find(new LogStore.Filter(Level.toLevel(level, null), logger, thread, text), 0);
+
+        assertThat(result.rows())
+                .containsExactly(sequences(expected));
+        assertThat(result.end())
+                .isEqualTo(5);
+    }
+
+    @Test
+    void findShouldOnlyReturnRowsFromSequence() {
+        var store = storeOfEvents();
+
+        var result = store.find(new LogStore.Filter(null, null, null, "skynet"), 1);
+
+        assertThat(result.rows())
+                .containsExactly(1, 2, 3, 4);
+    }
+
+    @Test
+    void findShouldNotReturnEvictedRows() {
+        var store = new LogStore(3, 1024);
+        store.append(Level.INFO, "Skynet one");
+        store.append(Level.INFO, "Skynet two\nSkynet three");
+        store.append(Level.INFO, "Skynet four");
+
+        assertThat(store.find(new LogStore.Filter(null, null, null, "skynet"), 0).rows())
+                .containsExactly(1, 2, 3);
+        assertThat(store.find(new LogStore.Filter(Level.INFO, null, null, null), 0).rows())
+                .containsExactly(1, 2, 3);
+    }
+
+    @Test
+    void findShouldNotReturnRowsBeforeClear() {
+        var store = storeOfEvents();
+
+        store.clear();
+        store.append(Level.INFO, "io.blt.gregbot", "main", "Skynet is back", "Skynet is back");
+
+        assertThat(store.find(new LogStore.Filter(null, null, null, "skynet"), 0).rows())
+                .containsExactly(5);
+    }
+
+    @Test
+    void findShouldScanRowsInBatches() {
+        var store = new LogStore(LogStore.SCAN_BATCH * 2 + 10, 1024 * 1024);
+        IntStream.range(0, LogStore.SCAN_BATCH * 2 + 10)
+                .forEach(i -> store.append(i % 1000 == 0 ? Level.WARN : Level.INFO, "log"));
+
+        assertThat(store.find(new LogStore.Filter(Level.WARN, null, null, null), 0).rows())
+                .hasSize((LogStore.SCAN_BATCH * 2 + 10 + 999) / 1000)
+                .startsWith(0, 1000, 2000);
+    }
+
+    @Test
+    void loggersAndThreadsShouldReturnNamesLoggedSorted() {
+        var store = storeOfEvents();
+
+        assertThat(store.loggers())
+                .containsExactly("io.blt.gregbot", "io.blt.gregbot.core.Skynet", "io.blt.gregbot.ui.MainFrame");
+        assertThat(store.threads())
+                .containsExactly("main", "worker-1");
+    }
+
+    @Test
+    void clearShouldForgetLoggerAndThreadNames() {
+        var store = storeOfEvents();
+
+        store.clear();
+        store.append(Level.INFO, "io.blt.gregbot", "main", "Skynet is back", "Skynet is back");
+
+        assertThat(store.loggers())
+                .containsExactly("io.blt.gregbot");
+        assertThat(store.threads())
+                .containsExactly("main");
+    }
+
+    @Test
+    void appendShouldDropNamesOnlyUsedByEvictedRows() {
+        var store = new LogStore(3, 1024);
+        IntStream.range(0, LogStore.MIN_NAMES_LIMIT + 1)
+                .forEach(i -> store.append(Level.INFO, "io.blt.gregbot", "worker-" + i, "log", "log"));
+
+        assertThat(store.threads())
+                .hasSizeLessThan(LogStore.MIN_NAMES_LIMIT)
+                .contains("worker-" + LogStore.MIN_NAMES_LIMIT);
+        assertThat(store.find(new LogStore.Filter(null, null, "worker-" + (LogStore.MIN_NAMES_LIMIT - 1), null), 0)
+                .rows())
+                .containsExactly(LogStore.MIN_NAMES_LIMIT - 1L);
+    }
+
+    @Test
+    void filterShouldBeNoneWhenEveryCriterionMatchesEverything() {
+        assertThat(LogStore.Filter.NONE.isNone())
+                .isTrue();
+        assertThat(new LogStore.Filter(Level.TRACE, " ", "", null).isNone())
+                .isTrue();
+        assertThat(new LogStore.Filter(Level.DEBUG, null, null, null).isNone())
+                .isFalse();
+        assertThat(new LogStore.Filter(null, null, null, "skynet").isNone())
+                .isFalse();
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "-1, 0",
+            "0, 1",
+            "3, 0"
+    })
+    void rowShouldReturnNullWhenOutsideRange(long sequence, int evicted) {
+        var store = new LogStore(3, 1024);
+        IntStream.range(0, 3 + evicted).forEach(i -> store.append(Level.INFO, "log " + i));
+
+        assertThat(store.row(sequence))
+                .isNull();
+    }
+
+    @Test
+    void constructorShouldThrowWhenCapacityIsNotPositive() {
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> new LogStore(0, 1024));
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> new LogStore(10, 0));
+    }
+
+    @Test
+    void constructorShouldRoundTextCapacityUpToWholeChunks() {
+        var store = new LogStore(10, 1);
+
+        assertThat(store.getTextCapacity())
+                .isEqualTo(LogStore.DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Rows 1 to 3 are an error and its stack trace, which only the message and exception are indexed for.
+     */
+    private static LogStore storeOfEvents() {
+        var store = new LogStore(10, 1024);
+        store.append(Level.INFO, "io.blt.gregbot", "main", "Started Skynet", "Started Skynet");
+        store.append(Level.ERROR, "io.blt.gregbot.core.Skynet", "worker-1",
+                "Failed to reach Skynet\n\tat Skynet.run()\n\tat Thread.run()",
+                "Failed to reach Skynet java.net.SocketTimeoutException: timeout");
+        store.append(Level.WARN, "io.blt.gregbot.ui.MainFrame", "worker-1", "Skynet is slow", "Skynet is slow");
+        return store;
+    }
+
+    private static long[] sequences(String sequences) {
+        return sequences.isEmpty() ? new long[0] : Arrays.stream(sequences.split(" ")).mapToLong(Long::parseLong)
+                .toArray();
+    }
+
+    private static List<LogStore.Row> rows(LogStore store) {
+        var range = store.range();
+        return LongStream.range(range.first(), range.end())
+                .mapToObj(store::row)
+                .toList();
+    }
+
+}